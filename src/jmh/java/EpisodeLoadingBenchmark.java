@@ -0,0 +1,48 @@
+import groovy.json.JsonSlurper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * Reading an episode file: the streaming {@link EpisodeReader} against the JsonSlurper tree the
+ * scripts used before, including the soft-break pass the DOCX path applies to it.
+ */
+@State(Scope.Thread)
+public class EpisodeLoadingBenchmark {
+
+    @Param({"small", "medium", "large", "long-verses"})
+    public String size;
+
+    private final JsonToDocxScript docx = new JsonToDocxScript();
+    private String json;
+
+    @Setup
+    public void setUp() {
+        json = SyntheticEpisodes.preset(size).json();
+    }
+
+    @Benchmark
+    public Episode episodeReader() throws IOException {
+        return EpisodeReader.read(new StringReader(json), false);
+    }
+
+    @Benchmark
+    public Episode episodeReaderSoftBreaks() throws IOException {
+        return EpisodeReader.read(new StringReader(json), true);
+    }
+
+    @Benchmark
+    public Object jsonSlurper() {
+        return new JsonSlurper().parseText(json);
+    }
+
+    @Benchmark
+    public Object jsonSlurperSoftBreaks() {
+        return docx.preprocessJsonContent(new JsonSlurper().parseText(json));
+    }
+}
@@ -0,0 +1,82 @@
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Inline markup helpers of both renderers, run over every inline text of a synthetic episode
+ * (callouts, verses and note contents), so one operation is one episode's worth of text.
+ */
+@State(Scope.Thread)
+public class InlineMarkupBenchmark {
+
+    @Param({"0.0", "0.15", "0.5"})
+    public double markupDensity;
+
+    private final JsonToHtmlScript html = new JsonToHtmlScript();
+    private final JsonToDocxScript docx = new JsonToDocxScript();
+    private List<String> texts;
+    private List<String> lines;
+    private List<String> htmlTexts;
+    private XWPFDocument doc;
+
+    @Setup
+    public void setUp() {
+        Episode episode = new SyntheticEpisodes().markupDensity(markupDensity).episode(true);
+        texts = new ArrayList<>();
+        for (Episode.Spread spread : episode.bundle.spreads) {
+            texts.add(spread.callout);
+            if (spread.scripture != null) texts.add(spread.scripture.verse);
+            for (Episode.Note note : spread.notes) texts.add(note.content);
+        }
+        lines = new ArrayList<>();
+        for (String text : texts) {
+            for (String line : text.split("\n", -1)) lines.add(line);
+        }
+        htmlTexts = new ArrayList<>();
+        for (String text : texts) htmlTexts.add(html.applyInlineMarkers(text));
+    }
+
+    // A fresh document per iteration keeps the paragraph count, and so the heap, bounded
+    @Setup(Level.Iteration)
+    public void newDocument() {
+        doc = new XWPFDocument();
+    }
+
+    @Benchmark
+    public void applyInlineMarkers(Blackhole bh) {
+        for (String text : texts) bh.consume(html.applyInlineMarkers(text));
+    }
+
+    @Benchmark
+    public void formatTicksPreservingText(Blackhole bh) {
+        for (String text : texts) bh.consume(html.formatTicksPreservingText(text));
+    }
+
+    @Benchmark
+    public void unescapeSpecificHtml(Blackhole bh) {
+        for (String text : htmlTexts) bh.consume(html.unescapeSpecificHtml(text));
+    }
+
+    @Benchmark
+    public void parseLineToStyledSpans(Blackhole bh) {
+        for (String line : lines) bh.consume(docx.parseLineToStyledSpans(line));
+    }
+
+    @Benchmark
+    public void addInlineToParagraph(Blackhole bh) {
+        for (String text : texts) {
+            XWPFParagraph p = doc.createParagraph();
+            docx.addInlineToParagraph(p, text, false);
+            bh.consume(p);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Full renders of an already parsed episode, written to a sink that only counts bytes so that
+ * disk speed does not enter the numbers. Parsing is measured by {@link EpisodeLoadingBenchmark}.
+ */
+@State(Scope.Thread)
+public class RenderBenchmark {
+
+    @Param({"small", "medium", "large", "long-verses"})
+    public String size;
+
+    /**
+     * Only for {@link #buildDocx}: open documents from the cached styled skeleton, or style each one. A state of
+     * its own, so that JMH does not run the other benchmarks once per value.
+     */
+    @State(Scope.Thread)
+    public static class Skeleton {
+        @Param({"true", "false"})
+        public boolean skeleton;
+
+        @Setup
+        public void setUp() {
+            JsonToDocxScript.setUseSkeletons(skeleton);
+        }
+    }
+
+    private final JsonToHtmlScript html = new JsonToHtmlScript();
+    private final JsonToDocxScript docx = new JsonToDocxScript();
+    private final Converter htmlConverter = Converters.forFormat("html");
+    private final JsonToHtmlScript cachedHtml = new JsonToHtmlScript();
+    private final Map<String, String> strings = new HashMap<>();
+    private Episode htmlEpisode;
+    private Episode docxEpisode;
+    private int edits;
+
+    @Setup
+    public void setUp() {
+        SyntheticEpisodes generator = SyntheticEpisodes.preset(size);
+        htmlEpisode = generator.episode(false);
+        docxEpisode = generator.episode(true);
+        strings.put("episodeEpisodeId", "Episode {episodeId}");
+        cachedHtml.setFragments(new FragmentCache(64L * 1024 * 1024, null));
+        cachedHtml.setFragmentContext(FragmentCache.context(JsonToHtmlScript.class, null, "inline"));
+    }
+
+    @Benchmark
+    public long buildHtml() throws IOException {
+        CountingWriter out = new CountingWriter();
+        html.writeHtml(htmlEpisode, strings, false, out);
+        return out.count;
+    }
+
+    @Benchmark
+    public long buildHtmlString() {
+        return html.buildHtml(htmlEpisode, strings, false).length();
+    }
+
+    /**
+     * The same HTML render through the {@link Converter} entry point used by the batch, CLI and service.
+     * After the first call every section comes from the shared {@link FragmentCache}, as when an
+     * unchanged episode is converted again; run with {@code -Dw121.fragmentCache=off} to render in full.
+     */
+    @Benchmark
+    public long converterHtml() throws Exception {
+        CountingOutputStream out = new CountingOutputStream();
+        htmlConverter.convert(ConversionRequest.of(htmlEpisode).writeTo(out));
+        return out.count;
+    }
+
+    /** Re-render after one spread was edited: only that spread misses the fragment cache. */
+    @Benchmark
+    public long htmlOneSpreadChanged() throws IOException {
+        Episode.Spread spread = htmlEpisode.bundle.spreads.get(edits % htmlEpisode.bundle.spreads.size());
+        spread.callout = "Edited *callout* " + edits++;
+        CountingWriter out = new CountingWriter();
+        cachedHtml.writeHtml(htmlEpisode, strings, false, out);
+        return out.count;
+    }
+
+    @Benchmark
+    public long buildDocx(Skeleton skeleton) throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        docx.writeDocx(docxEpisode, strings, out, "en-GB");
+        return out.count;
+    }
+
+    /** The same document through {@link DocxStreamWriter}, without the POI object model. */
+    @Benchmark
+    public long streamDocx() {
+        CountingOutputStream out = new CountingOutputStream();
+        docx.streamDocx(docxEpisode, strings, out, "en-GB");
+        return out.count;
+    }
+
+    static final class CountingWriter extends Writer {
+        long count;
+
+        @Override
+        public void write(char[] buf, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
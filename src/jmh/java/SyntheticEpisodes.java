@@ -0,0 +1,198 @@
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic generator of episode JSON for the benchmarks. The same settings and seed always
+ * produce the same file, so results stay comparable between runs and machines.
+ */
+public final class SyntheticEpisodes {
+
+    private static final String[] WORDS = {
+            "shepherd", "door", "sheep", "voice", "truly", "enters", "gate", "life", "abundantly", "thief",
+            "stranger", "follow", "know", "name", "fold", "flock", "lay", "down", "good", "hired",
+            "wolf", "scatters", "Father", "authority", "receive", "command", "word", "light", "way", "world"
+    };
+    private static final String[] NOTE_TYPES = {"definition", "keyPoint", "cue", "comment", "reflection", "stopAndThink", null};
+
+    private int spreads = 8;
+    private int notesPerSpread = 6;
+    private double markupDensity = 0.15;
+    private int versesPerScripture = 4;
+    private int wordsPerVerse = 24;
+    private long seed = 121L;
+
+    public SyntheticEpisodes spreads(int spreads) {
+        this.spreads = spreads;
+        return this;
+    }
+
+    public SyntheticEpisodes notesPerSpread(int notesPerSpread) {
+        this.notesPerSpread = notesPerSpread;
+        return this;
+    }
+
+    /** Share of words, from 0 to 1, wrapped in bold, italic or tick markup. */
+    public SyntheticEpisodes markupDensity(double markupDensity) {
+        this.markupDensity = markupDensity;
+        return this;
+    }
+
+    public SyntheticEpisodes verses(int versesPerScripture, int wordsPerVerse) {
+        this.versesPerScripture = versesPerScripture;
+        this.wordsPerVerse = wordsPerVerse;
+        return this;
+    }
+
+    public SyntheticEpisodes seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /** Presets used as benchmark parameters: small, medium, large and long-verses. */
+    public static SyntheticEpisodes preset(String name) {
+        switch (name) {
+            case "small":
+                return new SyntheticEpisodes().spreads(2).notesPerSpread(3);
+            case "medium":
+                return new SyntheticEpisodes();
+            case "large":
+                return new SyntheticEpisodes().spreads(40).notesPerSpread(10).markupDensity(0.3);
+            case "long-verses":
+                return new SyntheticEpisodes().spreads(8).notesPerSpread(2).verses(30, 80);
+            default:
+                throw new IllegalArgumentException("Unknown preset: " + name);
+        }
+    }
+
+    public String json() {
+        SplittableRandom random = new SplittableRandom(seed);
+        StringWriter out = new StringWriter();
+        try (JsonWriter w = new JsonWriter(out)) {
+            w.setIndent("  ");
+            w.beginObject();
+            w.name("number").value(1 + random.nextInt(999));
+            w.name("bundle").beginObject();
+            w.name("title").value(sentence(random, 5, 0));
+            w.name("intro").value(paragraph(random, 3));
+            w.name("imageUrl").value("https://example.org/episode.svg");
+            w.name("spreads").beginArray();
+            for (int s = 0; s < spreads; s++) {
+                w.beginObject();
+                w.name("type").value(s % 5 == 4 ? "stopAndThink" : "normal");
+                w.name("subtitle").value(sentence(random, 3, 0));
+                w.name("callout").value(sentence(random, 12, markupDensity));
+                w.name("scripture");
+                passage(w, random);
+                w.name("notes").beginArray();
+                for (int n = 0; n < notesPerSpread; n++) {
+                    String type = NOTE_TYPES[random.nextInt(NOTE_TYPES.length)];
+                    w.beginObject();
+                    if (type != null) w.name("type").value(type);
+                    w.name("content").value(noteContent(random));
+                    w.endObject();
+                }
+                w.endArray();
+                w.endObject();
+            }
+            w.endArray();
+            w.name("summaryIntro").value(paragraph(random, 2));
+            w.name("conclusions").beginArray();
+            for (int c = 0; c < Math.max(1, spreads / 2); c++) {
+                w.beginObject();
+                w.name("statement").value(sentence(random, 8, markupDensity));
+                w.name("excerpt").value(verses(random, 1));
+                w.endObject();
+            }
+            w.endArray();
+            w.name("reflection").value(paragraph(random, 2));
+            w.name("passage");
+            passage(w, random);
+            w.name("recap").value(paragraph(random, 3));
+            w.name("recapToThinkAbout").value(paragraph(random, 1));
+            w.name("nextUp").value(sentence(random, 10, markupDensity));
+            w.endObject();
+            w.endObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    public Episode episode(boolean softBreaks) {
+        try {
+            return EpisodeReader.read(new StringReader(json()), softBreaks);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void passage(JsonWriter w, SplittableRandom random) throws IOException {
+        w.beginObject();
+        w.name("reference").value("John " + (1 + random.nextInt(21)) + ":1-" + versesPerScripture);
+        w.name("verse").value(verses(random, versesPerScripture));
+        w.endObject();
+    }
+
+    private String noteContent(SplittableRandom random) {
+        StringBuilder sb = new StringBuilder();
+        if (random.nextInt(4) == 0) sb.append("### ").append(sentence(random, 3, 0)).append('\n');
+        sb.append(paragraph(random, 2));
+        if (random.nextInt(3) == 0) {
+            // A split italic line, which the DOCX path joins with a soft break
+            sb.append("\n*").append(sentence(random, 5, 0)).append('\n').append(sentence(random, 5, 0)).append('*');
+        }
+        if (random.nextInt(3) == 0) sb.append("\n\n").append(paragraph(random, 1));
+        return sb.toString();
+    }
+
+    private String verses(SplittableRandom random, int count) {
+        StringBuilder sb = new StringBuilder();
+        int first = 1 + random.nextInt(20);
+        for (int v = 0; v < count; v++) {
+            if (v > 0) sb.append('\n');
+            sb.append('`').append(first + v).append('`').append(sentence(random, wordsPerVerse, markupDensity / 2));
+        }
+        return sb.toString();
+    }
+
+    private String paragraph(SplittableRandom random, int sentences) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < sentences; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(sentence(random, 8 + random.nextInt(12), markupDensity));
+        }
+        return sb.toString();
+    }
+
+    private static String sentence(SplittableRandom random, int words, double density) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) sb.append(' ');
+            String word = WORDS[random.nextInt(WORDS.length)];
+            if (i == 0) word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+            if (random.nextDouble() < density) {
+                switch (random.nextInt(4)) {
+                    case 0:
+                        sb.append("**").append(word).append("**");
+                        break;
+                    case 1:
+                        sb.append('*').append(word).append('*');
+                        break;
+                    case 2:
+                        sb.append('`').append(word).append('`');
+                        break;
+                    default:
+                        sb.append(word).append(" & ").append("<i>").append(word).append("</i>");
+                }
+            } else {
+                sb.append(word);
+            }
+        }
+        return sb.append('.').toString();
+    }
+}
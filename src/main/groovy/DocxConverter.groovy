@@ -0,0 +1,27 @@
+/** Word documents through {@link JsonToDocxScript}. Holds no state, so one instance serves every thread. */
+class DocxConverter implements Converter {
+
+    String format() { 'docx' }
+
+    String fileExtension() { '.docx' }
+
+    String contentType() { 'application/vnd.openxmlformats-officedocument.wordprocessingml.document' }
+
+    ConversionResult convert(ConversionRequest request) {
+        long started = System.nanoTime()
+        def script = new JsonToDocxScript()
+        script.metrics = request.metrics
+        script.fragments = FragmentCache.shared()
+        script.fragmentContext = FragmentCache.context(JsonToDocxScript, request.strings?.contentHash, 'docx')
+        Episode data = request.episode != null ? request.episode : script.readEpisode(request.inputFile)
+        Map strings = request.strings != null ? request.strings.docx : [:]
+        String lang = request.lang ?: Locale.default.toLanguageTag() ?: 'en-GB'
+
+        if (request.outputFile != null) {
+            script.buildDocx(data, strings, request.outputFile, lang)
+        } else {
+            script.writeDocx(data, strings, request.output, lang)
+        }
+        return new ConversionResult(request.outputFile, (System.nanoTime() - started).intdiv(1_000_000L) as long, script.warnings)
+    }
+}
@@ -0,0 +1,49 @@
+import java.nio.charset.StandardCharsets
+
+/** HTML pages through {@link JsonToHtmlScript}. Holds no state, so one instance serves every thread. */
+class HtmlConverter implements Converter {
+
+    String format() { 'html' }
+
+    String fileExtension() { '.html' }
+
+    String contentType() { 'text/html; charset=utf-8' }
+
+    ConversionResult convert(ConversionRequest request) {
+        long started = System.nanoTime()
+        def script = new JsonToHtmlScript()
+        script.metrics = request.metrics
+        // A page streamed elsewhere has no folder to put assets in, so it stays self-contained
+        script.sharedAssets = request.sharedAssets && request.outputFile != null
+        script.fragments = FragmentCache.shared()
+        script.fragmentContext = FragmentCache.context(JsonToHtmlScript, request.strings?.contentHash,
+                script.sharedAssets ? 'shared-assets' : 'inline')
+        Episode data = request.episode != null ? request.episode : script.readEpisode(request.inputFile)
+        Map strings = request.strings != null ? request.strings.raw : [:]
+
+        if (request.outputFile != null && request.darkOutputFile != null) {
+            script.renderToFiles(data, strings, request.outputFile.toPath(), request.darkOutputFile.toPath())
+        } else if (request.outputFile != null) {
+            script.renderToFile(data, strings, request.darkMode, request.outputFile.toPath())
+        } else {
+            long t = request.metrics.start()
+            writeToStreams(script, data, strings, request)
+            request.metrics.end(ConversionMetrics.Phase.RENDER, t)
+        }
+        return new ConversionResult(request.outputFile, (System.nanoTime() - started).intdiv(1_000_000L) as long)
+    }
+
+    private static void writeToStreams(JsonToHtmlScript script, Episode data, Map strings, ConversionRequest request) {
+        if (request.darkOutput != null) {
+            Writer light = new BufferedWriter(new OutputStreamWriter(request.output, StandardCharsets.UTF_8))
+            Writer dark = new BufferedWriter(new OutputStreamWriter(request.darkOutput, StandardCharsets.UTF_8))
+            script.writePages(data, strings, light, dark)
+            light.flush()
+            dark.flush()
+        } else {
+            Writer out = new BufferedWriter(new OutputStreamWriter(request.output, StandardCharsets.UTF_8))
+            script.writeHtml(data, strings, request.darkMode, out)
+            out.flush()
+        }
+    }
+}
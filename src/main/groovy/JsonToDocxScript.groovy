@@ -1,27 +1,55 @@
 import groovy.json.JsonSlurper
+import groovy.transform.CompileDynamic
+import groovy.transform.CompileStatic
 import org.apache.commons.io.FilenameUtils
 import org.apache.poi.xwpf.usermodel.*
 import org.apache.poi.util.Units
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.*
 import java.awt.Color
-import java.util.regex.Pattern
 import org.apache.poi.xwpf.usermodel.Document as PICTURE_DOC
-import org.apache.batik.transcoder.image.PNGTranscoder
-import org.apache.batik.transcoder.TranscoderInput
-import org.apache.batik.transcoder.TranscoderOutput
 import java.io.ByteArrayInputStream
 import java.io.ByteArrayOutputStream
-import javax.imageio.ImageIO
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.util.concurrent.ConcurrentHashMap
 import org.apache.poi.xwpf.usermodel.BreakType
 
+// Statically compiled: the render methods run per paragraph and per run. The one-off style setup
+// (cached in the skeletons) and the strings preprocessing stay dynamic.
+@CompileStatic
 class JsonToDocxScript {
 
+    // Styled empty documents, serialized once per language; new documents are opened from these bytes
+    private static final Map<String, byte[]> SKELETONS = new ConcurrentHashMap<>()
+    static boolean useSkeletons = !Boolean.getBoolean('w121.docx.noSkeleton')
+    // Write through DocxStreamWriter instead of building the POI document (-Dw121.docx.writer=stream)
+    static boolean useStreamingWriter = DocxStreamWriter.selected()
+
     String inputPath
     String outputPath
     String stringsPath
+    // Parsed strings shared across a batch, already soft-break normalised; when set, stringsPath is not read
+    Map strings
     String lang
+    // Phase timings of this conversion; the disabled instance records nothing
+    ConversionMetrics.FileMetrics metrics = ConversionMetrics.FileMetrics.DISABLED
+    // Problems that left the document usable, for the caller to report; nothing is printed while rendering
+    final List<String> warnings = []
+    // Tokenized runs of each section, shared between conversions; when null, every line is tokenized
+    FragmentCache fragments
+    // Strings and options the cached sections were tokenized with (see FragmentCache.context)
+    String fragmentContext
+
+    // Runs of the section being rendered: from the fragment cache, or collected for it until endSection
+    private Map<String, List<InlineMarkup.Span>> sectionTokens
+    private String sectionKey
 
-    private boolean haveBatik = true
+    // A4 less the 2 cm margins: the width the artwork is drawn at
+    private static final double PAGE_CONTENT_WIDTH_CM = 17.0d
+    // Batik is optional at run time; without it the artwork is left out
+    private static final boolean BATIK_AVAILABLE = batikAvailable()
+    private boolean haveBatik = BATIK_AVAILABLE
     private final Color NOTES_BG = new Color(0xB0, 0xC7, 0xFF)
     private final Color NOTES_TEXT = new Color(0xFF, 0xFF, 0xFF)
     private final Color NOTES_BORDER = new Color(0x8F, 0xB2, 0xFF)
@@ -41,31 +69,51 @@ class JsonToDocxScript {
         }
 
         def outDocx = new File(outputPath)
-        def stringsFile = (stringsPath != null && !stringsPath.isEmpty()) ? new File(stringsPath) : null
+        File stringsFile = (stringsPath != null && !stringsPath.isEmpty()) ? new File(stringsPath) : null
         def targetLanguage = lang ?: Locale.default.toLanguageTag() ?: 'en-GB'
 
-        try { Class.forName('org.apache.batik.transcoder.image.PNGTranscoder') } catch (Throwable t) { haveBatik = false }
-
-        def slurper = new JsonSlurper()
-        
-        // Parse raw data and then preprocess it (for {soft_break})
-        def rawData = slurper.parse(curFile)
-        def data = preprocessJsonContent(rawData)
+        Episode data = readEpisode(curFile)
 
+        long t = metrics.start()
         def stringsData = [:]
-        if (stringsFile?.exists()) {
-            def rawStrings = slurper.parse(stringsFile)
+        if (strings != null) {
+            stringsData = strings
+        } else if (stringsFile?.exists()) {
+            def rawStrings = new JsonSlurper().parse(stringsFile)
             stringsData = preprocessJsonContent(rawStrings)
         } else if (stringsPath) {
             println "Warning: Strings file not found at '${stringsFile.absolutePath}'"
         }
+        metrics.end(ConversionMetrics.Phase.STRINGS, t)
 
         println "Generating DOCX for '${curFile.name}'..."
-        buildDocx(data as Map, stringsData as Map, outDocx, targetLanguage)
+        buildDocx(data, stringsData as Map, outDocx, targetLanguage)
+        warnings.each { println "Warning: ${it}" }
         println "Wrote: ${outDocx.absolutePath}"
     }
     
-    // Recursively traverse JSON and replace a single newline inside *...* with {soft_break}
+    // Only looks the class up: initialising it would pull in the Batik stack before any artwork is drawn
+    private static boolean batikAvailable() {
+        try {
+            Class.forName('org.apache.batik.transcoder.image.PNGTranscoder', false, JsonToDocxScript.classLoader)
+            return true
+        } catch (Throwable t) {
+            return false
+        }
+    }
+
+    // Soft breaks are applied to the inline text fields while parsing
+    Episode readEpisode(File inputFile) {
+        long t = metrics.start()
+        Episode data = EpisodeReader.read(inputFile, true)
+        metrics.end(ConversionMetrics.Phase.PARSE, t)
+        metrics.bytesRead(inputFile.length())
+        metrics.episode(data)
+        return data
+    }
+
+    // Recursively traverse a strings file and replace a single newline inside *...* with {soft_break}
+    @CompileDynamic
     def preprocessJsonContent(obj) {
         if (obj instanceof Map) {
             obj.each { k, v -> obj[k] = preprocessJsonContent(v) }
@@ -77,98 +125,57 @@ class JsonToDocxScript {
         return obj
     }
     
-    List parseLineToStyledSpans(String line) {
-        def PAIR_BOLD_RE = Pattern.compile(/\*\*(.+?)\*\*/)
-        def parts = []
-        if (line == null) return parts
-        def mb = PAIR_BOLD_RE.matcher(line)
-        int cursor = 0
-        while (mb.find()) {
-            if (mb.start() > cursor) parts << [cursor, mb.start(), false]
-            parts << [mb.start(1), mb.end(1), true]
-            cursor = mb.end()
-        }
-        if (cursor < line.length()) parts << [cursor, line.length(), false]
-
-        def chars = line.toCharArray()
-        def singleIdx = []
-        for (int i = 0; i < chars.length; i++) {
-            if (chars[i] == '*') {
-                if (!(i + 1 < chars.length && chars[i + 1] == '*') && !(i - 1 >= 0 && chars[i - 1] == '*')) {
-                    singleIdx.add(i)
-                }
-            }
-        }
-        
-        int firstNonWs = -1
-        for (int i = 0; i < line.length(); i++) {
-            if (!Character.isWhitespace(line.charAt(i))) { firstNonWs = i; break }
+    // One span per Word run: bold/italic pieces, split at ticks and {soft_break} markers
+    List<InlineMarkup.Span> parseLineToStyledSpans(String line) {
+        if (sectionTokens == null) return InlineMarkup.tokenizeLine(line)
+        List<InlineMarkup.Span> spans = sectionTokens.get(line)
+        if (spans == null) {
+            spans = InlineMarkup.tokenizeLine(line)
+            // Only a section being collected gets here; a cached one holds every line it renders
+            if (sectionKey != null) sectionTokens.put(line, spans)
         }
-        
-        int bulletPos = -1
-        if (!singleIdx.isEmpty() && singleIdx.size() % 2 == 1 && firstNonWs != -1 && singleIdx[0] == firstNonWs) {
-            bulletPos = singleIdx.remove(0)
-        }
-
-        def italPairs = []
-        for (int k = singleIdx.size() - 2; k >= 0; k -= 2) italPairs.add([singleIdx[k], singleIdx[k+1]])
-        def startSet = new HashSet(italPairs.collect { it[0] })
-        def endSet = new HashSet(italPairs.collect { it[1] })
-
-        def out = []
-        def append = { String t, boolean b, boolean i ->
-            if (t.isEmpty()) return
-            if (!out.isEmpty() && out.last()[1] == b && out.last()[2] == i) out.last()[0] += t
-            else out << [t, b, i]
-        }
-
-        parts.each { seg ->
-            int a = seg[0], b = seg[1]
-            boolean isBold = seg[2]
-            def currentText = new StringBuilder()
-            boolean inItalic = false
-            for (int i = a; i < b; ++i) {
-                if (bulletPos == i) {
-                    append(currentText.toString(), isBold, inItalic)
-                    currentText.delete(0, currentText.length())
-                    append("•", isBold, false)
-                } else if (startSet.contains(i)) {
-                    append(currentText.toString(), isBold, inItalic)
-                    currentText.delete(0, currentText.length())
-                    inItalic = true
-                } else if (endSet.contains(i)) {
-                    append(currentText.toString(), isBold, inItalic)
-                    currentText.delete(0, currentText.length())
-                    inItalic = false
-                } else {
-                    currentText.append(line[i])
-                }
-            }
-            append(currentText.toString(), isBold, inItalic)
+        return spans
+    }
+
+    // Looks the section up in the fragment cache; parts identify its content
+    void beginSection(String kind, Closure<FragmentCache.Key> parts) {
+        if (fragments == null) return
+        String key = parts.call(FragmentCache.key(kind, fragmentContext)).build()
+        sectionTokens = fragments.tokens(key)
+        if (sectionTokens == null) {
+            sectionTokens = new HashMap<String, List<InlineMarkup.Span>>()
+            sectionKey = key
+        } else {
+            sectionKey = null
         }
-        return out
+    }
+
+    // Stores the runs collected since beginSection, unless they came from the cache
+    void endSection() {
+        if (sectionKey != null) fragments.putTokens(sectionKey, sectionTokens)
+        sectionTokens = null
+        sectionKey = null
     }
     
     String rgbHex(Color c) { String.format("%02X%02X%02X", c.red, c.green, c.blue) }
-    int cm(double v) { (int) Math.round(v * 567.0) }
-    int pt(double v) { (int) Math.round(v * 20.0) }
+    int cm(double v) { (int) Math.round(v * 567.0d) }
+    int pt(double v) { (int) Math.round(v * 20.0d) }
 
     void setParagraphShading(XWPFParagraph p, Color fillOrNull) {
         if (fillOrNull == null) return
-        def ctp = p.getCTP()
-        def pPr = ctp.isSetPPr() ? ctp.getPPr() : ctp.addNewPPr()
-        def shd = pPr.isSetShd() ? pPr.getShd() : pPr.addNewShd()
+        CTP ctp = p.getCTP()
+        CTPPr pPr = ctp.isSetPPr() ? ctp.getPPr() : ctp.addNewPPr()
+        CTShd shd = pPr.isSetShd() ? pPr.getShd() : pPr.addNewShd()
         shd.setVal(STShd.CLEAR)
         shd.setColor("auto")
         shd.setFill(rgbHex(fillOrNull))
     }
 
     void setParagraphBorderAll(XWPFParagraph p, String colorHex, int szTwip, int space) {
-        def ctp = p.getCTP()
-        def pPr = ctp.isSetPPr() ? ctp.getPPr() : ctp.addNewPPr()
-        def pBdr = pPr.isSetPBdr() ? pPr.getPBdr() : pPr.addNewPBdr()
-        ['top', 'left', 'bottom', 'right'].each { borderName ->
-            def border = pBdr."addNew${borderName.capitalize()}"()
+        CTP ctp = p.getCTP()
+        CTPPr pPr = ctp.isSetPPr() ? ctp.getPPr() : ctp.addNewPPr()
+        CTPBdr pBdr = pPr.isSetPBdr() ? pPr.getPBdr() : pPr.addNewPBdr()
+        for (CTBorder border : [pBdr.addNewTop(), pBdr.addNewLeft(), pBdr.addNewBottom(), pBdr.addNewRight()]) {
             border.setVal(STBorder.SINGLE)
             border.setSz(BigInteger.valueOf(szTwip))
             border.setColor(colorHex)
@@ -178,20 +185,21 @@ class JsonToDocxScript {
     
     void setPara(XWPFParagraph p, ParagraphAlignment a = null, Integer beforePt = null, Integer afterPt = null, Double leftCm = null, Double rightCm = null) {
         if (a) p.setAlignment(a)
-        def ctp = p.getCTP()
-        def ppr = ctp.isSetPPr() ? ctp.getPPr() : ctp.addNewPPr()
+        CTP ctp = p.getCTP()
+        CTPPr ppr = ctp.isSetPPr() ? ctp.getPPr() : ctp.addNewPPr()
         if (beforePt != null || afterPt != null) {
-            def sp = ppr.isSetSpacing() ? ppr.getSpacing() : ppr.addNewSpacing()
+            CTSpacing sp = ppr.isSetSpacing() ? ppr.getSpacing() : ppr.addNewSpacing()
             if (beforePt != null) sp.setBefore(BigInteger.valueOf(pt(beforePt)))
             if (afterPt != null) sp.setAfter(BigInteger.valueOf(pt(afterPt)))
         }
         if (leftCm != null || rightCm != null) {
-            def ind = ppr.isSetInd() ? ppr.getInd() : ppr.addNewInd()
+            CTInd ind = ppr.isSetInd() ? ppr.getInd() : ppr.addNewInd()
             if (leftCm != null) ind.setLeft(BigInteger.valueOf(cm(leftCm)))
             if (rightCm != null) ind.setRight(BigInteger.valueOf(cm(rightCm)))
         }
     }
 
+    @CompileDynamic
     void ensureSectPr(XWPFDocument doc) {
         def body = doc.document.body
         def sectPr = body.isSetSectPr() ? body.getSectPr() : body.addNewSectPr()
@@ -202,6 +210,7 @@ class JsonToDocxScript {
         pgMar.setRight(BigInteger.valueOf(cm(2.0)))
     }
     
+    @CompileDynamic
     XWPFStyles ensureStyles(XWPFDocument doc) {
         def styles = doc.getStyles()
         if (styles == null) {
@@ -211,6 +220,7 @@ class JsonToDocxScript {
         return styles
     }
 
+    @CompileDynamic
     XWPFStyle ensureParagraphStyle(XWPFDocument doc, String styleId, Closure cfg = null) {
         def styles = ensureStyles(doc)
         def xs = styles.getStyle(styleId)
@@ -225,6 +235,7 @@ class JsonToDocxScript {
         return x
     }
 
+    @CompileDynamic
     XWPFStyle ensureCharacterStyle(XWPFDocument doc, String styleId, Closure cfg = null) {
         def styles = ensureStyles(doc)
         def xs = styles.getStyle(styleId)
@@ -239,6 +250,7 @@ class JsonToDocxScript {
         return x
     }
 
+    @CompileDynamic
     void setThemeFonts(XWPFDocument doc, String langCode) {
         ensureParagraphStyle(doc, "Normal") { ct ->
             def rpr = ct.isSetRPr() ? ct.getRPr() : ct.addNewRPr()
@@ -283,92 +295,73 @@ class JsonToDocxScript {
         ensureCharacterStyle(doc, "EmChar") { ct -> ct.addNewRPr().addNewI().setVal(true) }
     }
     
-    List makeBlockTable(XWPFDocument doc, Color fill, Color border) {
-        def tbl = doc.createTable(1, 1)
+    // A centred one-cell table with the given fill and border; returns its cell
+    XWPFTableCell makeBlockTable(XWPFDocument doc, Color fill, Color border) {
+        XWPFTable tbl = doc.createTable(1, 1)
         tbl.setTableAlignment(TableRowAlign.CENTER)
-        def cell = tbl.getRow(0).getCell(0)
-        def cttc = cell.getCTTc()
-        def tcPr = cttc.isSetTcPr() ? cttc.getTcPr() : cttc.addNewTcPr()
-        def shd = tcPr.isSetShd() ? tcPr.getShd() : tcPr.addNewShd()
+        XWPFTableCell cell = tbl.getRow(0).getCell(0)
+        CTTc cttc = cell.getCTTc()
+        CTTcPr tcPr = cttc.isSetTcPr() ? cttc.getTcPr() : cttc.addNewTcPr()
+        CTShd shd = tcPr.isSetShd() ? tcPr.getShd() : tcPr.addNewShd()
         shd.setFill(rgbHex(fill))
-        def tcBorders = tcPr.isSetTcBorders() ? tcPr.getTcBorders() : tcPr.addNewTcBorders()
-        ['Top', 'Left', 'Bottom', 'Right'].each { side ->
-            def b = tcBorders."addNew${side}"()
+        CTTcBorders tcBorders = tcPr.isSetTcBorders() ? tcPr.getTcBorders() : tcPr.addNewTcBorders()
+        for (CTBorder b : [tcBorders.addNewTop(), tcBorders.addNewLeft(), tcBorders.addNewBottom(), tcBorders.addNewRight()]) {
             b.setVal(STBorder.SINGLE)
             b.setSz(BigInteger.valueOf(12))
             b.setColor(rgbHex(border))
         }
-        def tcMar = tcPr.isSetTcMar() ? tcPr.getTcMar() : tcPr.addNewTcMar()
-        tcMar.addNewTop().with { it.setW(BigInteger.valueOf(cm(0.15))); it.setType(STTblWidth.DXA) }
-        tcMar.addNewBottom().with { it.setW(BigInteger.valueOf(cm(0.15))); it.setType(STTblWidth.DXA) }
-        tcMar.addNewLeft().with { it.setW(BigInteger.valueOf(cm(0.2))); it.setType(STTblWidth.DXA) }
-        tcMar.addNewRight().with { it.setW(BigInteger.valueOf(cm(0.2))); it.setType(STTblWidth.DXA) }
-        return [tbl, cell]
+        CTTcMar tcMar = tcPr.isSetTcMar() ? tcPr.getTcMar() : tcPr.addNewTcMar()
+        setMargin(tcMar.addNewTop(), cm(0.15d))
+        setMargin(tcMar.addNewBottom(), cm(0.15d))
+        setMargin(tcMar.addNewLeft(), cm(0.2d))
+        setMargin(tcMar.addNewRight(), cm(0.2d))
+        return cell
     }
 
-    boolean isPureNumber(String s) { s?.trim() ==~ /\d{1,3}/ }
-
-    List splitTicks(String text) {
-        def TICK_RE = ~/`([^`]+)`/
-        def out = []
-        if (text == null) return out
-        def m = TICK_RE.matcher(text)
-        int last = 0
-        while (m.find()) {
-            if (m.start() > last) out << ["text", text.substring(last, m.start())]
-            def inner = m.group(1)
-            out << [isPureNumber(inner) ? "tick-num" : "tick-text", inner]
-            last = m.end()
-        }
-        if (last < text.length()) out << ["text", text.substring(last)]
-        return out
+    private static void setMargin(CTTblWidth margin, int twips) {
+        margin.setW(BigInteger.valueOf(twips))
+        margin.setType(STTblWidth.DXA)
     }
-    
+
     // Proper soft break handling via BreakType.TEXT_WRAPPING
     void addInlineToParagraph(XWPFParagraph p, String text, boolean isNotes) {
         if (text == null) return
-        text.split('\n', -1).eachWithIndex { line, idx ->
+        String style = p.getStyle()
+        String[] lines = text.split('\n', -1)
+        for (int idx = 0; idx < lines.length; idx++) {
             if (idx > 0) p.createRun().addBreak() // paragraph line break between input lines
 
-            parseLineToStyledSpans(line).each { span ->
-                def (spanText, isBold, isItalic) = span
-                
-                splitTicks(spanText).each { tup ->
-                    def (kind, content) = tup
-                    def parts = content.split('\\{soft_break\\}', -1)
-                    parts.eachWithIndex { part, i ->
-                        def r = p.createRun()
-                        r.setText(part)
-                        
-                        // Apply styles
-                        if (p.getStyle() == "ReflectionPara" || p.getStyle() == "KeyPointPara") {
-                            r.setFontFamily(HAND_FONT)
-                            r.setItalic(true)
-                        } else if (p.getStyle() == "Scripture") {
-                            r.setFontFamily(SERIF)
-                            r.setFontSize(12)
-                        } else {
-                            r.setFontFamily(SANS)
-                            r.setFontSize(12)
-                        }
-
-                        if (isBold) r.setBold(true)
-                        if (isItalic) r.setItalic(true)
-                        
-                        if (kind == "tick-num") {
-                            r.setFontSize(9)
-                            r.setSubscript(VerticalAlign.SUPERSCRIPT)
-                            if (isNotes) r.setColor(rgbHex(NOTES_TEXT))
-                        } else if (kind == "tick-text") {
-                            r.setColor(rgbHex(TICK_BLUE))
-                        } else {
-                            if (isNotes) r.setColor(rgbHex(NOTES_TEXT))
-                        }
-
-                        if (i < parts.size() - 1) {
-                            r.addBreak(BreakType.TEXT_WRAPPING)
-                        }
-                    }
+            for (InlineMarkup.Span span : parseLineToStyledSpans(lines[idx])) {
+                XWPFRun r = p.createRun()
+                r.setText(span.text)
+
+                // Apply styles
+                if (style == "ReflectionPara" || style == "KeyPointPara") {
+                    r.setFontFamily(HAND_FONT)
+                    r.setItalic(true)
+                } else if (style == "Scripture") {
+                    r.setFontFamily(SERIF)
+                    r.setFontSize(12)
+                } else {
+                    r.setFontFamily(SANS)
+                    r.setFontSize(12)
+                }
+
+                if (span.bold) r.setBold(true)
+                if (span.italic) r.setItalic(true)
+
+                if (span.kind == InlineMarkup.TICK_NUMBER) {
+                    r.setFontSize(9)
+                    r.setSubscript(VerticalAlign.SUPERSCRIPT)
+                    if (isNotes) r.setColor(rgbHex(NOTES_TEXT))
+                } else if (span.kind == InlineMarkup.TICK_TEXT) {
+                    r.setColor(rgbHex(TICK_BLUE))
+                } else {
+                    if (isNotes) r.setColor(rgbHex(NOTES_TEXT))
+                }
+
+                if (span.breakAfter) {
+                    r.addBreak(BreakType.TEXT_WRAPPING)
                 }
             }
         }
@@ -385,17 +378,17 @@ class JsonToDocxScript {
         return cell.addParagraph()
     }
 
-    void addNotesBlock(XWPFDocument doc, List items, boolean isRecap) {
-        def cell = makeBlockTable(doc, NOTES_BG, NOTES_BORDER)[1]
-        def state = [removed: false]  // for lazy removal
+    void addNotesBlock(XWPFDocument doc, List<Episode.Note> items, boolean isRecap) {
+        XWPFTableCell cell = makeBlockTable(doc, NOTES_BG, NOTES_BORDER)
+        Map state = [removed: false]  // for lazy removal
         
         def h4style = isRecap ? "H4Recap" : "H4Notes"
-        items?.each { item ->
-            def kind = item?.type ?: ""
-            def content = (item?.content ?: "") as String
+        items?.each { Episode.Note item ->
+            String kind = item?.type ?: ""
+            String content = item?.content ?: ""
             
-            content.split('\n', -1).each { line ->
-                 if (line == null || line.isEmpty()) return
+            for (String line : content.split('\n', -1)) {
+                 if (line == null || line.isEmpty()) continue
                  
                  if (line.trim().startsWith("###")) {
                      def p = addCellParagraphLazy(cell, state)
@@ -438,40 +431,104 @@ class JsonToDocxScript {
     
     void embedSvg(XWPFDocument doc, String svgUrl) {
         if (!haveBatik || !svgUrl) return
-        println "Embedding SVG from: $svgUrl"
+        long t = metrics.start()
         try {
-            byte[] svgBytes = new URL(svgUrl).bytes
-            ByteArrayOutputStream baos = new ByteArrayOutputStream()
-            TranscoderInput input = new TranscoderInput(new ByteArrayInputStream(svgBytes))
-            TranscoderOutput output = new TranscoderOutput(baos)
-            PNGTranscoder transcoder = new PNGTranscoder()
-            
-            transcoder.transcode(input, output)
-            byte[] pngBytes = baos.toByteArray()
-
-            def img = ImageIO.read(new ByteArrayInputStream(pngBytes))
-            double aspect = (img.width > 0) ? (img.height / (double)img.width) : 0.75
-            double pageContentWidthCm = 17.0
-            
-            int widthEmu = (int)(pageContentWidthCm * Units.EMU_PER_CENTIMETER)
-            int heightEmu = (int)(widthEmu * aspect)
+            // Artwork is shared by many episodes: fetch, Batik and the size lookup only run on a cache miss
+            def raster = SvgRasterCache.shared().rasterize(svgUrl, 0)
+            int widthEmu = artworkWidthEmu()
+            int heightEmu = artworkHeightEmu(raster, widthEmu)
 
             def p = doc.createParagraph()
             p.setAlignment(ParagraphAlignment.CENTER)
             def r = p.createRun()
-            r.addPicture(new ByteArrayInputStream(pngBytes), PICTURE_DOC.PICTURE_TYPE_PNG, "image.png", widthEmu, heightEmu)
+            r.addPicture(new ByteArrayInputStream(raster.png), PICTURE_DOC.PICTURE_TYPE_PNG, "image.png", widthEmu, heightEmu)
         } catch (Exception e) {
-            System.err.println "Error embedding SVG: ${e.message}"
+            warnings.add("Could not embed SVG from ${svgUrl}: ${e.message}".toString())
+        } finally {
+            metrics.end(ConversionMetrics.Phase.IMAGE, t)
         }
     }
 
-    void buildDocx(Map data, Map strings, File outFile, String langCode) {
+    // The artwork spans the page's content width and keeps the aspect ratio of the SVG
+    private static int artworkWidthEmu() {
+        return (int)(PAGE_CONTENT_WIDTH_CM * Units.EMU_PER_CENTIMETER)
+    }
+
+    private static int artworkHeightEmu(SvgRasterCache.Raster raster, int widthEmu) {
+        double aspect = (raster.width > 0) ? (raster.height / (double)raster.width) : 0.75d
+        return (int)(widthEmu * aspect)
+    }
+
+    // Page setup and styles only depend on the language, so they are built once and reused
+    XWPFDocument newDocument(String langCode) {
+        if (!useSkeletons) return buildSkeleton(langCode)
+        byte[] skeleton = SKELETONS.computeIfAbsent(langCode ?: '') { key ->
+            def bos = new ByteArrayOutputStream()
+            buildSkeleton(langCode).write(bos)
+            bos.toByteArray()
+        }
+        return new XWPFDocument(new ByteArrayInputStream(skeleton))
+    }
+
+    XWPFDocument buildSkeleton(String langCode) {
         def doc = new XWPFDocument()
         doc.setTrackRevisions(true)
         ensureSectPr(doc)
         setThemeFonts(doc, langCode)
+        return doc
+    }
+
+    /** Compatibility entry point for callers holding a JsonSlurper tree. */
+    void buildDocx(Map data, Map strings, File outFile, String langCode) {
+        buildDocx(Episode.fromMap(data, true), strings, outFile, langCode)
+    }
+
+    void buildDocx(Episode data, Map strings, File outFile, String langCode) {
+        long t = metrics.start()
+        // The streaming writer renders while it writes, so its whole run counts as rendering
+        XWPFDocument doc = useStreamingWriter ? null : renderDocx(data, strings, langCode)
+        // The artwork is timed on its own, so it is left out of the render phase
+        if (doc != null) metrics.end(ConversionMetrics.Phase.RENDER, t + metrics.nanos(ConversionMetrics.Phase.IMAGE))
+
+        // Write next to the target and rename, so readers never see a half-written document
+        Path target = outFile.toPath().toAbsolutePath()
+        Path tmp = Files.createTempFile(target.parent, target.fileName.toString(), ".tmp")
+        try {
+            if (doc != null) {
+                t = metrics.start()
+                Files.newOutputStream(tmp).withCloseable { os -> doc.write(os) }
+            } else {
+                new BufferedOutputStream(Files.newOutputStream(tmp)).withCloseable { os -> streamDocx(data, strings, os, langCode) }
+                metrics.end(ConversionMetrics.Phase.RENDER, t + metrics.nanos(ConversionMetrics.Phase.IMAGE))
+                t = metrics.start()
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING)
+            metrics.end(ConversionMetrics.Phase.WRITE, t)
+            metrics.bytesWritten(Files.size(target))
+        } finally {
+            Files.deleteIfExists(tmp)
+        }
+    }
+
+    /** Renders the document into {@code out} without touching the file system; the stream is not closed. */
+    void writeDocx(Episode data, Map strings, OutputStream out, String langCode) {
+        long t = metrics.start()
+        if (useStreamingWriter) {
+            streamDocx(data, strings, out, langCode)
+            metrics.end(ConversionMetrics.Phase.RENDER, t + metrics.nanos(ConversionMetrics.Phase.IMAGE))
+            return
+        }
+        def doc = renderDocx(data, strings, langCode)
+        metrics.end(ConversionMetrics.Phase.RENDER, t + metrics.nanos(ConversionMetrics.Phase.IMAGE))
+        t = metrics.start()
+        doc.write(out)
+        metrics.end(ConversionMetrics.Phase.WRITE, t)
+    }
+
+    XWPFDocument renderDocx(Episode data, Map strings, String langCode) {
+        def doc = newDocument(langCode)
         
-        def bundle = data?.bundle ?: [:]
+        Episode.Bundle bundle = data.bundle
         
         if (bundle.imageUrl) {
             embedSvg(doc, bundle.imageUrl as String)
@@ -498,20 +555,23 @@ class JsonToDocxScript {
 
         // Intro block (data-driven)
         if (bundle?.intro) {
-            def introCell = makeBlockTable(doc, new Color(0xF7, 0xFA, 0xFC), new Color(0xE5, 0xE7, 0xEB))[1]
+            beginSection("docx-intro") { FragmentCache.Key k -> k.add(bundle.intro) }
+            def introCell = makeBlockTable(doc, new Color(0xF7, 0xFA, 0xFC), new Color(0xE5, 0xE7, 0xEB))
             def state = [removed: false]
             def ip = addCellParagraphLazy(introCell, state)
             ip.setStyle("NotesPara")
             addInlineToParagraph(ip, bundle.intro as String, false)
+            endSection()
         }
 
         // Spreads
         bundle?.spreads?.each { spread ->
+            beginSection("docx-spread") { FragmentCache.Key k -> k.add(spread) }
             doc.createParagraph()
-            def cell = makeBlockTable(doc, Color.WHITE, new Color(0xE5, 0xE7, 0xEB))[1]
+            def cell = makeBlockTable(doc, Color.WHITE, new Color(0xE5, 0xE7, 0xEB))
             def state = [removed: false]
             
-            def scripture = spread?.scripture ?: [:]
+            def scripture = spread?.scripture
             def stype = (spread?.type ?: "") as String
             def reference = (scripture?.reference ?: "") as String
 
@@ -548,14 +608,16 @@ class JsonToDocxScript {
                 def r = sp.createRun(); r.setText(spread.subtitle as String); r.setColor(rgbHex(ACCENT))
             }
             if (spread?.notes) {
-                addNotesBlock(doc, spread.notes as List, false)
+                addNotesBlock(doc, spread.notes, false)
             }
+            endSection()
         }
 
         // Conclusions / Summary
         if (bundle?.conclusions || bundle?.summaryIntro || strings?.summary) {
+            beginSection("docx-conclusions") { FragmentCache.Key k -> k.add(bundle?.summaryIntro).addConclusions(bundle?.conclusions) }
             doc.createParagraph()
-            def cell = makeBlockTable(doc, NOTES_BG, NOTES_BORDER)[1]
+            def cell = makeBlockTable(doc, NOTES_BG, NOTES_BORDER)
             def state = [removed: false]
             if (strings?.summary) {
                 def p = addCellParagraphLazy(cell, state)
@@ -581,12 +643,14 @@ class JsonToDocxScript {
                 }
             }
             // If nothing added, the default paragraph remains and the doc stays valid
+            endSection()
         }
         
         // Reflection band
         if (bundle?.reflection) {
+            beginSection("docx-reflection") { FragmentCache.Key k -> k.add(bundle.reflection) }
             doc.createParagraph()
-            def cell = makeBlockTable(doc, BAND_BG, BAND_BG)[1]
+            def cell = makeBlockTable(doc, BAND_BG, BAND_BG)
             def state = [removed: false]
             if (strings?.toThinkAbout) {
                 def p = addCellParagraphLazy(cell, state)
@@ -597,12 +661,14 @@ class JsonToDocxScript {
             p.setStyle("ReflectionPara")
             addInlineToParagraph(p, bundle.reflection as String, true)
             p.getRuns().each { it.setColor(rgbHex(BAND_TEXT)) }
+            endSection()
         }
 
         // Passage reread
         if (bundle?.passage && ((bundle.passage.reference ?: "") || (bundle.passage.verse ?: ""))) {
+            beginSection("docx-passage") { FragmentCache.Key k -> k.add(bundle.passage) }
             doc.createParagraph()
-            def cell = makeBlockTable(doc, Color.WHITE, new Color(0xE5,0xE7,0xEB))[1]
+            def cell = makeBlockTable(doc, Color.WHITE, new Color(0xE5,0xE7,0xEB))
             def state = [removed: false]
             if (strings?.readAgain) {
                  def p = addCellParagraphLazy(cell, state); p.setStyle("UniformTitle")
@@ -621,21 +687,25 @@ class JsonToDocxScript {
                  def p = addCellParagraphLazy(cell, state); p.setStyle("Scripture")
                  addInlineToParagraph(p, bundle.passage.verse as String, false)
             }
+            endSection()
         }
 
         // Recap/To think about (notes block)
         if (bundle?.recap || bundle?.recapToThinkAbout) {
+             beginSection("docx-recap") { FragmentCache.Key k -> k.add(bundle.recap).add(bundle.recapToThinkAbout) }
              doc.createParagraph()
-             def notes = []
-             if (bundle.recap) notes.add([content: bundle.recap])
-             if (bundle.recapToThinkAbout) notes.add([type: 'reflection', content: bundle.recapToThinkAbout])
+             List<Episode.Note> notes = []
+             if (bundle.recap) notes.add(new Episode.Note(null, bundle.recap))
+             if (bundle.recapToThinkAbout) notes.add(new Episode.Note('reflection', bundle.recapToThinkAbout))
              addNotesBlock(doc, notes, true)
+             endSection()
         }
         
         // Next up band
         if (bundle?.nextUp) {
+            beginSection("docx-next-up") { FragmentCache.Key k -> k.add(bundle.nextUp) }
             doc.createParagraph()
-            def cell = makeBlockTable(doc, BAND_BG, BAND_BG)[1]
+            def cell = makeBlockTable(doc, BAND_BG, BAND_BG)
             def state = [removed: false]
             if (strings?.nextUp) {
                  def p = addCellParagraphLazy(cell, state); p.setStyle("UniformTitle")
@@ -652,8 +722,360 @@ class JsonToDocxScript {
             p.setStyle("ReflectionPara")
             addInlineToParagraph(p, bundle.nextUp as String, true)
             p.getRuns().each { it.setColor(rgbHex(BAND_TEXT)) } // Typo guarded below
+            endSection()
         }
         
-        outFile.withOutputStream { os -> doc.write(os) }
+        return doc
+    }
+
+    // ---- Streaming writer: renderDocx paragraph by paragraph through DocxStreamWriter ----
+    // Keep the two in step; DocxEquivalence compares their documents.
+
+    void streamThemeFonts(DocxStreamWriter w, String langCode) {
+        w.paragraphStyle("Normal").props.with {
+            set("rFonts", "ascii", SANS, "hAnsi", SANS, "cs", SANS); set("sz", "val", "22"); set("szCs", "val", "22")
+            if (langCode) set("lang", "val", langCode)
+        }
+        w.paragraphStyle("Scripture").props.with {
+            set("rFonts", "ascii", SERIF, "hAnsi", SERIF, "cs", SERIF); set("sz", "val", "23"); set("szCs", "val", "23")
+            if (langCode) set("lang", "val", langCode)
+        }
+        w.paragraphStyle("UniformTitle").setAlignment("center").props.with {
+            set("b", "val", "true")
+            set("rFonts", "ascii", SANS, "hAnsi", SANS, "cs", SANS); set("sz", "val", "25"); set("szCs", "val", "25")
+            if (langCode) set("lang", "val", langCode)
+        }
+        // setThemeFonts also marks H4Notes/H4Recap bold after the styles are added, which never reaches
+        // styles.xml (XWPFStyles keeps a copy); the headings set bold on their runs instead
+        ["Subtitle","NotesPara","DefinitionPara","CuePara","KeyPointPara","CalloutPara","H4Notes","H4Recap","BandPara", "ReflectionPara"].each { name ->
+            w.paragraphStyle(name).props.with {
+                if (name == "ReflectionPara" || name == "KeyPointPara") {
+                    set("rFonts", "ascii", HAND_FONT, "hAnsi", HAND_FONT, "cs", HAND_FONT)
+                    set("i", "val", "true")
+                } else {
+                    set("rFonts", "ascii", SANS, "hAnsi", SANS, "cs", SANS)
+                }
+                if (langCode) set("lang", "val", langCode)
+            }
+        }
+        w.characterStyle("TickChar").props.set("color", "val", rgbHex(TICK_BLUE))
+        w.characterStyle("EmChar").props.set("i", "val", "true")
+    }
+
+    void startBlock(DocxStreamWriter w, Color fill, Color border) {
+        w.startBlock(rgbHex(fill), rgbHex(border), cm(0.15d), cm(0.2d))
+    }
+
+    DocxStreamWriter.Paragraph paragraph(String style = null) {
+        def p = new DocxStreamWriter.Paragraph()
+        if (style) p.setStyle(style)
+        return p
+    }
+
+    // Same runs and properties, in the same order, as addInlineToParagraph
+    void streamInline(DocxStreamWriter.Paragraph p, String text, boolean isNotes) {
+        if (text == null) return
+        String style = p.getStyle()
+        String[] lines = text.split('\n', -1)
+        for (int idx = 0; idx < lines.length; idx++) {
+            if (idx > 0) p.createRun().addBreak()
+
+            for (InlineMarkup.Span span : parseLineToStyledSpans(lines[idx])) {
+                DocxStreamWriter.Run r = p.createRun()
+                r.setText(span.text)
+
+                if (style == "ReflectionPara" || style == "KeyPointPara") {
+                    r.setFontFamily(HAND_FONT)
+                    r.setItalic(true)
+                } else if (style == "Scripture") {
+                    r.setFontFamily(SERIF)
+                    r.setFontSize(12)
+                } else {
+                    r.setFontFamily(SANS)
+                    r.setFontSize(12)
+                }
+
+                if (span.bold) r.setBold(true)
+                if (span.italic) r.setItalic(true)
+
+                if (span.kind == InlineMarkup.TICK_NUMBER) {
+                    r.setFontSize(9)
+                    r.setSuperscript()
+                    if (isNotes) r.setColor(rgbHex(NOTES_TEXT))
+                } else if (span.kind == InlineMarkup.TICK_TEXT) {
+                    r.setColor(rgbHex(TICK_BLUE))
+                } else {
+                    if (isNotes) r.setColor(rgbHex(NOTES_TEXT))
+                }
+
+                if (span.breakAfter) {
+                    r.addTextWrappingBreak()
+                }
+            }
+        }
+    }
+
+    void streamNotesBlock(DocxStreamWriter w, List<Episode.Note> items, boolean isRecap) {
+        startBlock(w, NOTES_BG, NOTES_BORDER)
+        def h4style = isRecap ? "H4Recap" : "H4Notes"
+        items?.each { Episode.Note item ->
+            String kind = item?.type ?: ""
+            String content = item?.content ?: ""
+
+            for (String line : content.split('\n', -1)) {
+                if (line == null || line.isEmpty()) continue
+
+                if (line.trim().startsWith("###")) {
+                    def p = paragraph(h4style)
+                    def r = p.createRun()
+                    r.setText(line.trim().substring(4).replaceAll(/\*\*(.*?)\*\*/, '$1'))
+                    r.setBold(true)
+                    r.setFontFamily(SANS)
+                    r.setFontSize(12)
+                    r.setColor(isRecap ? rgbHex(TICK_BLUE) : rgbHex(NOTES_TEXT))
+                    w.write(p)
+                } else {
+                    def style = kind == "reflection" ? "ReflectionPara"
+                            : kind == "keyPoint" ? "KeyPointPara"
+                            : kind == "definition" ? "DefinitionPara"
+                            : kind == "cue" ? "CuePara"
+                            : "NotesPara"
+                    def p = paragraph(style)
+                    streamInline(p, line, true)
+
+                    if (kind == "reflection" || kind == "keyPoint") {
+                        p.setShading(rgbHex(BAND_BG))
+                        p.getRuns().each { it.setColor(rgbHex(BAND_TEXT)) }
+                    } else if (kind == "definition") {
+                        p.setShading(rgbHex(DEFINITION_BG))
+                    } else if (kind == "cue") {
+                        p.setBorder("FFFFFF", 6, 4)
+                    }
+                    w.write(p)
+                }
+            }
+        }
+        w.endBlock()
+    }
+
+    void streamSvg(DocxStreamWriter w, String svgUrl) {
+        if (!haveBatik || !svgUrl) return
+        long t = metrics.start()
+        try {
+            def raster = SvgRasterCache.shared().rasterize(svgUrl, 0)
+            int widthEmu = artworkWidthEmu()
+            w.writePicture(raster.png, widthEmu, artworkHeightEmu(raster, widthEmu), "image.png")
+        } catch (Exception e) {
+            warnings.add("Could not embed SVG from ${svgUrl}: ${e.message}".toString())
+        } finally {
+            metrics.end(ConversionMetrics.Phase.IMAGE, t)
+        }
+    }
+
+    /**
+     * Writes the same document as {@link #renderDocx} straight into {@code out}, one paragraph at a
+     * time, so memory does not grow with the episode. The stream is not closed.
+     */
+    void streamDocx(Episode data, Map strings, OutputStream out, String langCode) {
+        def w = new DocxStreamWriter(out)
+        w.setTrackRevisions(true)
+        w.setPageMargins(cm(2.0d), cm(2.0d), cm(2.0d), cm(2.0d))
+        streamThemeFonts(w, langCode)
+
+        Episode.Bundle bundle = data.bundle
+
+        if (bundle.imageUrl) {
+            streamSvg(w, bundle.imageUrl as String)
+        }
+
+        def eyebrowTpl = (strings?.episodeEpisodeId ?: "Episode {episodeId}") as String
+        def eyebrowP = paragraph().setAlignment("center").setSpacing(null, pt(4))
+        eyebrowP.createRun().with {
+            setText(eyebrowTpl.replace("{episodeId}", String.valueOf(data?.number)))
+            setBold(true)
+            setFontSize(11)
+            setColor(rgbHex(NOTES_BG))
+        }
+        w.write(eyebrowP)
+
+        def titleP = paragraph().setAlignment("left").setSpacing(null, pt(6))
+        titleP.createRun().with {
+            setText((bundle?.title ?: "") as String)
+            setBold(true)
+            setFontSize(16)
+        }
+        w.write(titleP)
+
+        if (bundle?.intro) {
+            beginSection("docx-intro") { FragmentCache.Key k -> k.add(bundle.intro) }
+            startBlock(w, new Color(0xF7, 0xFA, 0xFC), new Color(0xE5, 0xE7, 0xEB))
+            def ip = paragraph("NotesPara")
+            streamInline(ip, bundle.intro as String, false)
+            w.write(ip)
+            w.endBlock()
+            endSection()
+        }
+
+        bundle?.spreads?.each { spread ->
+            beginSection("docx-spread") { FragmentCache.Key k -> k.add(spread) }
+            w.write(paragraph())
+            startBlock(w, Color.WHITE, new Color(0xE5, 0xE7, 0xEB))
+
+            def scripture = spread?.scripture
+            def stype = (spread?.type ?: "") as String
+            def reference = (scripture?.reference ?: "") as String
+
+            if (stype == "stopAndThink") {
+                if (strings?.stopAndThink) {
+                    def p = paragraph("UniformTitle")
+                    p.createRun().setText(strings.stopAndThink as String)
+                    w.write(p)
+                }
+                if (strings?.letsTakeAMomentToThink) {
+                    def p = paragraph()
+                    p.createRun().setText(strings.letsTakeAMomentToThink as String)
+                    w.write(p)
+                }
+            }
+            if (reference && stype != "stopAndThink") {
+                def p = paragraph("UniformTitle")
+                p.createRun().setText(reference).setColor(rgbHex(NOTES_BG))
+                w.write(p)
+            }
+            if (spread?.callout) {
+                def p = paragraph("CalloutPara")
+                streamInline(p, spread.callout as String, false)
+                p.setBorder("000000", 8, 4)
+                w.write(p)
+            }
+            if (scripture?.verse) {
+                def p = paragraph("Scripture")
+                streamInline(p, scripture.verse as String, false)
+                w.write(p)
+            }
+            if (spread?.subtitle) {
+                def p = paragraph("Subtitle")
+                p.createRun().setText(spread.subtitle as String).setColor(rgbHex(ACCENT))
+                w.write(p)
+            }
+            w.endBlock()
+            if (spread?.notes) {
+                streamNotesBlock(w, spread.notes, false)
+            }
+            endSection()
+        }
+
+        if (bundle?.conclusions || bundle?.summaryIntro || strings?.summary) {
+            beginSection("docx-conclusions") { FragmentCache.Key k -> k.add(bundle?.summaryIntro).addConclusions(bundle?.conclusions) }
+            w.write(paragraph())
+            startBlock(w, NOTES_BG, NOTES_BORDER)
+            if (strings?.summary) {
+                def p = paragraph("UniformTitle")
+                p.createRun().setText(strings.summary as String).setColor(rgbHex(NOTES_TEXT))
+                w.write(p)
+            }
+            if (bundle?.summaryIntro) {
+                def p = paragraph()
+                streamInline(p, bundle.summaryIntro as String, true)
+                p.getRuns().each { it.setBold(true) }
+                w.write(p)
+            }
+            bundle?.conclusions?.each { c ->
+                if (c?.statement) {
+                    def p = paragraph()
+                    streamInline(p, c.statement as String, true)
+                    w.write(p)
+                }
+                if (c?.excerpt) {
+                    def p = paragraph("Scripture")
+                    streamInline(p, c.excerpt as String, false)
+                    p.setShading("F5F5F5")
+                    p.setBorder("E5E7EB", 6, 8)
+                    w.write(p)
+                }
+            }
+            w.endBlock()
+            endSection()
+        }
+
+        if (bundle?.reflection) {
+            beginSection("docx-reflection") { FragmentCache.Key k -> k.add(bundle.reflection) }
+            w.write(paragraph())
+            startBlock(w, BAND_BG, BAND_BG)
+            if (strings?.toThinkAbout) {
+                def p = paragraph("UniformTitle")
+                p.createRun().setText(strings.toThinkAbout as String).setBold(true).setFontFamily(SANS).setColor(rgbHex(BAND_TEXT))
+                w.write(p)
+            }
+            def p = paragraph("ReflectionPara")
+            streamInline(p, bundle.reflection as String, true)
+            p.getRuns().each { it.setColor(rgbHex(BAND_TEXT)) }
+            w.write(p)
+            w.endBlock()
+            endSection()
+        }
+
+        if (bundle?.passage && ((bundle.passage.reference ?: "") || (bundle.passage.verse ?: ""))) {
+            beginSection("docx-passage") { FragmentCache.Key k -> k.add(bundle.passage) }
+            w.write(paragraph())
+            startBlock(w, Color.WHITE, new Color(0xE5,0xE7,0xEB))
+            if (strings?.readAgain) {
+                def p = paragraph("UniformTitle")
+                p.createRun().setText(strings.readAgain as String).setColor(rgbHex(NOTES_BG))
+                w.write(p)
+            }
+            if (bundle.passage.reference) {
+                def p = paragraph()
+                p.createRun().setText(bundle.passage.reference as String).setBold(true).setColor(rgbHex(ACCENT))
+                w.write(p)
+            }
+            if (strings?.takeAMomentToReRead) {
+                def p = paragraph()
+                p.createRun().setText(strings.takeAMomentToReRead as String)
+                w.write(p)
+            }
+            if (bundle.passage.verse) {
+                def p = paragraph("Scripture")
+                streamInline(p, bundle.passage.verse as String, false)
+                w.write(p)
+            }
+            w.endBlock()
+            endSection()
+        }
+
+        if (bundle?.recap || bundle?.recapToThinkAbout) {
+            beginSection("docx-recap") { FragmentCache.Key k -> k.add(bundle.recap).add(bundle.recapToThinkAbout) }
+            w.write(paragraph())
+            List<Episode.Note> notes = []
+            if (bundle.recap) notes.add(new Episode.Note(null, bundle.recap))
+            if (bundle.recapToThinkAbout) notes.add(new Episode.Note('reflection', bundle.recapToThinkAbout))
+            streamNotesBlock(w, notes, true)
+            endSection()
+        }
+
+        if (bundle?.nextUp) {
+            beginSection("docx-next-up") { FragmentCache.Key k -> k.add(bundle.nextUp) }
+            w.write(paragraph())
+            startBlock(w, BAND_BG, BAND_BG)
+            if (strings?.nextUp) {
+                def p = paragraph("UniformTitle")
+                p.createRun().setText(strings.nextUp as String).setColor(rgbHex(BAND_TEXT))
+                w.write(p)
+            }
+            if (strings?.episodeComplete) {
+                def p = paragraph("ReflectionPara").setAlignment("center")
+                streamInline(p, strings.episodeComplete as String, true)
+                p.getRuns().each { it.setColor(rgbHex(BAND_TEXT)) }
+                w.write(p)
+            }
+            def p = paragraph("ReflectionPara")
+            streamInline(p, bundle.nextUp as String, true)
+            p.getRuns().each { it.setColor(rgbHex(BAND_TEXT)) }
+            w.write(p)
+            w.endBlock()
+            endSection()
+        }
+
+        w.finish()
     }
 }
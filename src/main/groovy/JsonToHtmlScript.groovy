@@ -1,40 +1,108 @@
 import groovy.json.JsonSlurper
+import groovy.transform.CompileStatic
 import org.apache.commons.io.FilenameUtils
 import org.apache.commons.text.StringEscapeUtils
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.Path
 import java.nio.file.Paths
-import java.util.regex.Pattern
+import java.nio.file.StandardCopyOption
 
+@CompileStatic
 class JsonToHtmlScript {
 
     String inputPath
     String outputPath
     String stringsPath
+    // Parsed strings shared across a batch; when set, stringsPath is not read
+    Map strings
     boolean darkMode
+    // Phase timings of this conversion; the disabled instance records nothing
+    ConversionMetrics.FileMetrics metrics = ConversionMetrics.FileMetrics.DISABLED
+    // Link the stylesheet and scripts from assets/ next to the page instead of inlining them
+    boolean sharedAssets
+    // Rendered sections shared between conversions; when null, every section is rendered
+    FragmentCache fragments
+    // Strings and options the cached sections were rendered with (see FragmentCache.context)
+    String fragmentContext
 
     void run() {
-        def data
+        Episode data = readEpisode(new File(inputPath))
+
+        long t = metrics.start()
+        Map stringsData = strings != null ? strings : loadStrings(stringsPath)
+        metrics.end(ConversionMetrics.Phase.STRINGS, t)
+
+        renderToFile(data, stringsData, darkMode, Paths.get(outputPath))
+    }
+
+    Episode readEpisode(File inputFile) {
         try {
-            data = new JsonSlurper().parse(new File(inputPath).newReader("UTF-8"))
+            long t = metrics.start()
+            Episode data = EpisodeReader.read(inputFile, false)
+            metrics.end(ConversionMetrics.Phase.PARSE, t)
+            metrics.bytesRead(inputFile.length())
+            metrics.episode(data)
+            return data
         } catch (Exception e) {
             // Errors will be caught and logged by the Java GUI
             throw new RuntimeException("Error loading input JSON: ${e.message}", e)
         }
+    }
 
-        def strings = loadStrings(stringsPath)
-        String html = buildHtml(data, strings, darkMode)
+    /** Streams the page into a temp file next to the output, so a failed render never leaves half a page behind. */
+    void renderToFile(Episode data, Map stringsData, boolean dark, Path output) {
+        renderToFiles(data, stringsData, dark ? null : output, dark ? output : null)
+    }
 
+    /** Writes the light and/or the dark page (either path may be null) from a single render pass. */
+    void renderToFiles(Episode data, Map stringsData, Path lightOutput, Path darkOutput) {
+        Path lightTarget = lightOutput?.toAbsolutePath()
+        Path darkTarget = darkOutput?.toAbsolutePath()
+        Path lightTmp = null
+        Path darkTmp = null
         try {
-            new File(outputPath).write(html, 'UTF-8')
+            if (lightTarget != null) lightTmp = Files.createTempFile(lightTarget.parent, lightTarget.fileName.toString(), ".tmp")
+            if (darkTarget != null) darkTmp = Files.createTempFile(darkTarget.parent, darkTarget.fileName.toString(), ".tmp")
+            Writer light = lightTmp != null ? Files.newBufferedWriter(lightTmp, StandardCharsets.UTF_8) : null
+            Writer dark = null
+            long t = 0
+            try {
+                dark = darkTmp != null ? Files.newBufferedWriter(darkTmp, StandardCharsets.UTF_8) : null
+                t = metrics.start()
+                writePages(data, stringsData, light, dark)
+                metrics.end(ConversionMetrics.Phase.RENDER, t)
+                t = metrics.start()
+            } finally {
+                light?.close()
+                dark?.close()
+            }
+            // Assets go in before the pages that link to them
+            if (sharedAssets) {
+                if (lightTarget != null) metrics.bytesWritten(writeSharedAssets(lightTarget.parent, false))
+                if (darkTarget != null) metrics.bytesWritten(writeSharedAssets(darkTarget.parent, true))
+            }
+            if (lightTmp != null) {
+                Files.move(lightTmp, lightTarget, StandardCopyOption.REPLACE_EXISTING)
+                metrics.bytesWritten(Files.size(lightTarget))
+            }
+            if (darkTmp != null) {
+                Files.move(darkTmp, darkTarget, StandardCopyOption.REPLACE_EXISTING)
+                metrics.bytesWritten(Files.size(darkTarget))
+            }
+            metrics.end(ConversionMetrics.Phase.WRITE, t)
         } catch (Exception e) {
+            if (lightTmp != null) Files.deleteIfExists(lightTmp)
+            if (darkTmp != null) Files.deleteIfExists(darkTmp)
             throw new RuntimeException("Error writing output HTML: ${e.message}", e)
         }
     }
 
-    private def loadStrings(String path) {
+    private Map loadStrings(String path) {
         if (path == null || path.trim().isEmpty()) return [:]
         try {
             def file = new File(path)
-            return file.exists() ? new JsonSlurper().parse(file.newReader("UTF-8")) : [:]
+            return file.exists() ? new JsonSlurper().parse(file.newReader("UTF-8")) as Map : [:]
         } catch(Exception e) {
             println("Warning: Could not load strings file at ${path}. Proceeding without it.")
             return [:]
@@ -49,120 +117,27 @@ class JsonToHtmlScript {
     }
 
     boolean isPureVerseNumber(String s) {
-        return s?.trim() ==~ /\d{1,3}/
+        return InlineMarkup.isVerseNumber(s)
     }
 
     String unescapeSpecificHtml(String html) {
-        if (!html) return ""
-        return html.replaceAll("&lt;h4(.*?)&gt;", "<h4>")
-                   .replaceAll("&lt;/h4&gt;", "</h4>")
-                   .replaceAll("&amp;", "&")
-                   .replaceAll('&lt;em&gt;', '<em>').replaceAll('&lt;/em&gt;', '</em>')
-                   .replaceAll('&lt;strong&gt;', '<strong>').replaceAll('&lt;/strong&gt;', '</strong>')
-                   .replaceAll('&lt;br&gt;', '<br>')
-                   .replaceAll(/&lt;(p|span)\s+(class\=)&quot;(.*?)&quot;&gt;/, '<$1 $2\"$3\">')
-                   .replaceAll(/&lt;\/(p|span)&gt;/, '</$1>')
+        return InlineMarkup.unescapeSpecificHtml(html)
     }
 
     String formatTicksPreservingText(String text) {
-        if (text == null) return ""
-        def tickPattern = ~/`([^`]+)`/
-        def matcher = tickPattern.matcher(text)
-        def last = 0
-        def parts = []
-        while (matcher.find()) {
-            def before = text.substring(last, matcher.start())
-            parts << StringEscapeUtils.escapeHtml4(before)
-            def inner = matcher.group(1)
-            if (isPureVerseNumber(inner)) {
-                parts << "<sup>" + StringEscapeUtils.escapeHtml4(inner) + "</sup>"
-            } else {
-                parts << "<span class=\"tick-strong\">" + StringEscapeUtils.escapeHtml4(inner) + "</span>"
-            }
-            last = matcher.end()
-        }
-        parts << StringEscapeUtils.escapeHtml4(text.substring(last))
-        return parts.join("")
+        return InlineMarkup.ticksToHtml(text)
     }
 
     String applyInlineMarkers(String text) {
-        def lines = text.readLines()
-        def result = []
-        for (int i = 0; i < lines.size(); i++) {
-            String current = lines[i]
-            String trimmed = current.trim()
-    
-            // NEW RULE: Single trailing * that should merge with previous leading *
-            if (trimmed.endsWith('*') && trimmed.count('*') == 1 && i > 0) {
-                String prev = lines[i - 1]
-                String prevTrimmed = prev.trim()
-                // check if previous line starts with * and has no other *
-                if (prevTrimmed.startsWith('*') && prevTrimmed.count('*') == 1) {
-                    // combine both lines into one italicized block
-                    String inner = prevTrimmed.substring(1).trim() + "<br>" + trimmed.substring(0, trimmed.length() - 1).trim()
-                    result.remove(result.size() - 1) // remove the previous line's output
-                    result << "<em>${inner}</em>"
-                    continue
-                }
-            }
-    
-            current = current.replaceAll(/\*\*(.+?)\*\*/) { _, inner -> "<strong>${inner}</strong>" }
-    
-            def startsWithHyphen = trimmed.startsWith('-')
-            def singleAsteriskCount = current.count('*')
-            boolean hasOddAsterisks = (singleAsteriskCount > 0 && singleAsteriskCount % 2 != 0)
-    
-            if (startsWithHyphen) {
-                def lineContent = trimmed.substring(1).trim()
-                lineContent = lineContent.replaceAll(/\*(.+?)\*/) { _, inner -> "<em>${inner}</em>" }
-                lineContent = lineContent.replace('*', '•')
-                result << '<p class="bullet"><span class="b-mark">•</span><span class="b-text">' + lineContent + '</span></p>'
-    
-            } else if (hasOddAsterisks) {
-                def lineContent = current.replaceFirst('\\*', '').trim()
-                def contentBuilder = new StringBuilder()
-                boolean inItalics = false
-                lineContent.each { c ->
-                    if (c == '*') {
-                        contentBuilder.append(inItalics ? '</em>' : '<em>')
-                        inItalics = !inItalics
-                    } else {
-                        contentBuilder.append(c)
-                    }
-                }
-                if (inItalics) contentBuilder.append('</em>')
-                result << '<p class="bullet"><span class="b-mark">•</span><span class="b-text">' + contentBuilder.toString() + '</span></p>'
-    
-            } else {
-                current = current.replaceAll(/\*(.+?)\*/) { _, inner -> "<em>${inner}</em>" }
-                current = current.replace('*', '•')
-                result << current
-            }
-        }
-        return result.join("\n")
+        return InlineMarkup.markersToHtml(text)
     }
 
     String mdHeadingMinimal(String text, String h4Class = "h4-notes") {
-        if (text == null) return ""
-        text.readLines().collect { line ->
-            if (line ==~ /^\s*#{2,3}\s*.*/) {
-                return "<h4 class=\"${h4Class}\">" + StringEscapeUtils.escapeHtml4(line.substring(4)) + "</h4>"
-            } else {
-                return line
-            }
-        }.join("\n")
+        return InlineMarkup.headingsToHtml(text, h4Class)
     }
 
     String tightenHeadings(String html) {
-        if (html == null) return ""
-        Pattern pattern = Pattern.compile("(</h4>)(?:<br>\\s*){2,}", Pattern.CASE_INSENSITIVE)
-        def matcher = pattern.matcher(html)
-        StringBuffer sb = new StringBuffer()
-        while (matcher.find()) {
-            matcher.appendReplacement(sb, matcher.group(1) + "<br>")
-        }
-        matcher.appendTail(sb)
-        return sb.toString()
+        return InlineMarkup.tightenHeadings(html)
     }
 
     String titleBarHtml(String text) {
@@ -170,6 +145,14 @@ class JsonToHtmlScript {
         return "<div class=\"block-title uniform-title\">" + StringEscapeUtils.escapeHtml4(text) + "</div>"
     }
 
+    // The hand-drawn ring around callouts and cues. With shared assets the path is defined once per
+    // page and referenced; the script gives each ring its own copy before fitting it to the text.
+    String outlineSvg(String kind) {
+        String open = "    <svg class=\"${kind}-outline\" viewBox=\"0 0 600 330\" preserveAspectRatio=\"none\" aria-hidden=\"true\" focusable=\"false\">\n"
+        String shape = sharedAssets ? """<use href="#${OUTLINE_ID}"/>""" : """<path class="outline" d="${OUTLINE_D}"/>"""
+        return open + "      " + shape + "\n    </svg>"
+    }
+
     String renderCallout(String calloutText) {
         if (!calloutText) return ""
         def calloutMarked = applyInlineMarkers(calloutText)
@@ -178,33 +161,47 @@ class JsonToHtmlScript {
         return """
 <div class="callout-item">
   <div class="callout-wrap">
-    <svg class="callout-outline" viewBox="0 0 600 330" preserveAspectRatio="none" aria-hidden="true" focusable="false">
-      <path class="outline" d="M93,33 C181,13 210,15 555,30 C575,32 585,45 588,65 C595,140 595,210 585,285 C582,305 568,315 548,318 C420,325 280,325 60,312 C42,311 30,300 28,282 C22,210 32,76 31,42 C30,8 91,16 118,6"/>
-    </svg>
+${outlineSvg("callout")}
     <span class="callout-text-inner">${calloutHtml}</span>
   </div>
 </div>
 """.stripIndent().trim()
     }
 
-    String renderNotesGroup(List notes, Map strings) {
+    // The section's HTML from the fragment cache, rendered and stored on a miss
+    private String cached(String kind, Closure<FragmentCache.Key> parts, Closure<String> render) {
+        if (fragments == null) return render.call()
+        String key = parts.call(FragmentCache.key(kind, fragmentContext)).build()
+        String html = fragments.html(key)
+        if (html == null) {
+            html = render.call()
+            fragments.putHtml(key, html)
+        }
+        return html
+    }
+
+    String renderNotesGroup(List<Episode.Note> notes, Map strings) {
         if (!notes) return ""
+        return cached("html-notes", { FragmentCache.Key k -> k.addNotes(notes) }) { buildNotesGroup(notes, strings) }
+    }
+
+    private String buildNotesGroup(List<Episode.Note> notes, Map strings) {
         def itemsHtml = []
-        def satTitle = strings?.stopAndThink ?: ""
-        def satSub = strings?.letsTakeAMomentToThink ?: ""
-        notes.each { note ->
-            def kind = (note?.type ?: "").trim()
-            def raw = note?.content ?: ""
-            def rawMarked = applyInlineMarkers(raw)
-            def processedWithHeadings = mdHeadingMinimal(rawMarked, "h4-notes")
-            def processedWithTicks = formatTicksPreservingText(processedWithHeadings)
+        String satTitle = strings?.stopAndThink ?: ""
+        String satSub = strings?.letsTakeAMomentToThink ?: ""
+        for (Episode.Note note : notes) {
+            String kind = (note?.type ?: "").trim()
+            String raw = note?.content ?: ""
+            String rawMarked = applyInlineMarkers(raw)
+            String processedWithHeadings = mdHeadingMinimal(rawMarked, "h4-notes")
+            String processedWithTicks = formatTicksPreservingText(processedWithHeadings)
             
-            def processed = processedWithTicks
-            processed = processed.replaceAll(/(?<!<\/h4>)\n+/, "<br>")
+            String processed = processedWithTicks
+            processed = InlineMarkup.newlinesToBreaksAfterHeadings(processed)
             processed = tightenHeadings(processed)
             processed = unescapeSpecificHtml(processed)
             
-            def cls = "note-item"
+            String cls = "note-item"
             switch(kind) {
                 case "definition":
                     cls += " definition"
@@ -214,7 +211,7 @@ class JsonToHtmlScript {
 <div class="note-item keypoint">
   <div class="keypoint-highlight">${processed}</div>
 </div>""".stripIndent().trim()
-                    return
+                    continue
                 case "cue":
                     cls += " cue"
                     break
@@ -232,9 +229,7 @@ class JsonToHtmlScript {
                 itemsHtml << """
 <div class="note-item cue">
   <div class="cue-wrap">
-    <svg class="cue-outline" viewBox="0 0 600 330" preserveAspectRatio="none" aria-hidden="true" focusable="false">
-      <path class="outline" d="M93,33 C181,13 210,15 555,30 C575,32 585,45 588,65 C595,140 595,210 585,285 C582,305 568,315 548,318 C420,325 280,325 60,312 C42,311 30,300 28,282 C22,210 32,76 31,42 C30,8 91,16 118,6"/>
-    </svg>
+${outlineSvg("cue")}
     <span class="cue-text-inner">${processed}</span>
   </div>
 </div>""".stripIndent().trim()
@@ -258,11 +253,15 @@ class JsonToHtmlScript {
 </div>""".stripIndent().trim()
     }
 
-    String renderSpread(Map spread, Map strings) {
+    String renderSpread(Episode.Spread spread, Map strings) {
+        return cached("html-spread", { FragmentCache.Key k -> k.add(spread) }) { buildSpread(spread, strings) }
+    }
+
+    private String buildSpread(Episode.Spread spread, Map strings) {
         def spreadType = (spread?.type ?: "").trim()
         def subtitle = spread?.subtitle ?: ""
         def callout = spread?.callout ?: ""
-        def scripture = spread?.scripture ?: [:]
+        def scripture = spread?.scripture
         def verseText = scripture?.verse ?: ""
         def reference = scripture?.reference ?: ""
 
@@ -271,8 +270,8 @@ class JsonToHtmlScript {
             headerBits << titleBarHtml(reference)
         }
         if (spreadType == "stopAndThink") {
-            if (strings?.stopAndThink) headerBits.add(0, titleBarHtml(strings.stopAndThink))
-            if (strings?.letsTakeAMomentToThink) headerBits.add(1, "<div class=\"sat-sub\">" + StringEscapeUtils.escapeHtml4(strings.letsTakeAMomentToThink) + "</div>")
+            if (strings?.stopAndThink) headerBits.add(0, titleBarHtml(strings.stopAndThink as String))
+            if (strings?.letsTakeAMomentToThink) headerBits.add(1, "<div class=\"sat-sub\">" + StringEscapeUtils.escapeHtml4(strings.letsTakeAMomentToThink as String) + "</div>")
         }
         def headerHtml = headerBits.findAll { it } .join("\n  ")
 
@@ -291,7 +290,7 @@ class JsonToHtmlScript {
 
         def subtitleHtml = subtitle ? "<h3 class=\"subtitle\">" + StringEscapeUtils.escapeHtml4(subtitle) + "</h3>" : ""
 
-        def notesHtml = renderNotesGroup(spread?.notes ?: [], strings)
+        def notesHtml = renderNotesGroup(spread?.notes ?: Collections.<Episode.Note>emptyList(), strings)
 
         return """
 <section class="spread pill">
@@ -303,9 +302,15 @@ ${scriptureHtml}
 </section>""".stripIndent().trim()
     }
 
-    String renderConclusionsBlock(Map strings, String summaryIntro, List conclusions) {
+    String renderConclusionsBlock(Map strings, String summaryIntro, List<Episode.Conclusion> conclusions) {
         if (!summaryIntro && (conclusions == null || conclusions.isEmpty())) return ""
-        def titleHtml = titleBarHtml(strings?.summary)
+        return cached("html-conclusions", { FragmentCache.Key k -> k.add(summaryIntro).addConclusions(conclusions) }) {
+            buildConclusionsBlock(strings, summaryIntro, conclusions)
+        }
+    }
+
+    private String buildConclusionsBlock(Map strings, String summaryIntro, List<Episode.Conclusion> conclusions) {
+        def titleHtml = titleBarHtml(strings?.summary as String)
         def parts = []
         if (summaryIntro) {
             def siMarked = applyInlineMarkers(summaryIntro)
@@ -337,14 +342,18 @@ ${scriptureHtml}
 </section>""".stripIndent().trim()
     }
 
-    String renderPassageBlock(Map strings, Map passage) {
+    String renderPassageBlock(Map strings, Episode.Passage passage) {
         if (!passage) return ""
+        return cached("html-passage", { FragmentCache.Key k -> k.add(passage) }) { buildPassageBlock(strings, passage) }
+    }
+
+    private String buildPassageBlock(Map strings, Episode.Passage passage) {
         def ref = passage?.reference ?: ""
         def verse = passage?.verse ?: ""
         if (!ref.trim() && !verse.trim()) return ""
-        def titleHtml = titleBarHtml(strings?.readAgain)
+        def titleHtml = titleBarHtml(strings?.readAgain as String)
         def refHtml = StringEscapeUtils.escapeHtml4(ref)
-        def mid = strings?.takeAMomentToReRead ?: ""
+        String mid = strings?.takeAMomentToReRead ?: ""
         def readAgainHtml = mid ? "<div class=\"passage-read-again\">" + StringEscapeUtils.escapeHtml4(mid) + "</div>" : ""
         def verseMarked = applyInlineMarkers(verse)
         def verseHtml = formatTicksPreservingText(verseMarked).replace("\n", "<br>")
@@ -360,6 +369,12 @@ ${scriptureHtml}
 
     String renderRecapBlock(Map strings, String recap, String recapToThinkAbout) {
         if (!recap?.trim() && !recapToThinkAbout?.trim()) return ""
+        return cached("html-recap", { FragmentCache.Key k -> k.add(recap).add(recapToThinkAbout) }) {
+            buildRecapBlock(strings, recap, recapToThinkAbout)
+        }
+    }
+
+    private String buildRecapBlock(Map strings, String recap, String recapToThinkAbout) {
 
         def recapProcessed = ""
         if (recap?.trim()) {
@@ -367,9 +382,7 @@ ${scriptureHtml}
             temp = mdHeadingMinimal(temp, "h4-recap")
             temp = formatTicksPreservingText(temp)
 
-            temp = temp.replaceAll(/(\r\n|\n){2,}/, '[[PARA_BREAK]]')
-            temp = temp.replaceAll(/(\r\n|\n)/, '<br>')
-            temp = temp.replaceAll(/\[\[PARA_BREAK\]\]/, '<p class="para-spacer"></p>')
+            temp = InlineMarkup.paragraphBreaks(temp)
 
             recapProcessed = tightenHeadings(temp)
             recapProcessed = unescapeSpecificHtml(recapProcessed)
@@ -387,7 +400,7 @@ ${scriptureHtml}
             """.stripIndent()
         }
 
-        def mainTitleHtml = titleBarHtml(strings?.whatWeHaveSeenSoFar)
+        def mainTitleHtml = titleBarHtml(strings?.whatWeHaveSeenSoFar as String)
 
         return """
 <section class="recap-block pill">
@@ -399,38 +412,56 @@ ${scriptureHtml}
 </section>""".stripIndent().trim()
     }
 
+    /** Compatibility entry point for callers holding a JsonSlurper tree. */
     String buildHtml(Map data, Map strings, boolean dark) {
+        return buildHtml(Episode.fromMap(data, false), strings, dark)
+    }
+
+    String buildHtml(Episode data, Map strings, boolean dark) {
+        StringWriter out = new StringWriter(64 * 1024)
+        writeHtml(data, strings, dark, out)
+        return out.toString()
+    }
+
+    /** Renders the page block by block into {@code out}, without holding the whole document in memory. */
+    void writeHtml(Episode data, Map strings, boolean dark, Writer out) {
+        writePages(data, strings, dark ? null : out, dark ? out : null)
+    }
+
+    /**
+     * Renders the light and the dark page in one pass: every block is built once and written to both;
+     * only the theme attribute and the page chrome (scrollbar colours) differ. Either writer may be null.
+     */
+    void writePages(Episode data, Map strings, Writer light, Writer dark) {
         def topNumber = data.number
-        def bundle = data.bundle ?: [:]
+        Episode.Bundle bundle = data.bundle
         def title = bundle.title ?: ""
         def intro = bundle.intro ?: ""
         def nextUp = bundle.nextUp ?: ""
         def summaryIntro = bundle.summaryIntro ?: ""
         def imageUrl = bundle.imageUrl ?: ""
         def reflection = bundle.reflection ?: ""
-        def conclusions = bundle.conclusions ?: []
-        def passage = bundle.passage ?: [:]
-        def spreads = bundle.spreads ?: []
+        List<Episode.Conclusion> conclusions = bundle.conclusions ?: Collections.<Episode.Conclusion>emptyList()
+        def passage = bundle.passage
+        List<Episode.Spread> spreads = bundle.spreads ?: Collections.<Episode.Spread>emptyList()
         def recap = bundle.recap ?: ""
         def recapToThinkAbout = bundle.recapToThinkAbout ?: ""
 
         def topImageHtml = imageUrl ? """<div class="top-image pill"><img src="${StringEscapeUtils.escapeHtml4(imageUrl)}" alt=""/></div>""" : ""
 
-        def eyebrowTpl = strings.episodeEpisodeId
-        def eyebrowText = eyebrowTpl ? eyebrowTpl.replace("{episodeId}", topNumber?.toString() ?: "") : "Episode ${topNumber ?: ''}"
+        String eyebrowTpl = strings.episodeEpisodeId
+        String eyebrowText = eyebrowTpl ? eyebrowTpl.replace("{episodeId}", topNumber?.toString() ?: "") : "Episode ${topNumber ?: ''}"
 
         def introMarked = applyInlineMarkers(intro)
         def introHtml = formatTicksPreservingText(introMarked).replace("\n", "<br>")
         introHtml = unescapeSpecificHtml(introHtml)
 
-        def spreadsHtml = spreads.collect { s -> renderSpread(s, strings) }.join("\n")
-
         def reflectionHtml = ""
         if (reflection) {
             def reflMarked = applyInlineMarkers(reflection)
             def reflText = formatTicksPreservingText(reflMarked).replace("\n", "<br>")
             reflText = unescapeSpecificHtml(reflText)
-            def titleHtml = titleBarHtml(strings.toThinkAbout)
+            def titleHtml = titleBarHtml(strings.toThinkAbout as String)
             reflectionHtml = """
 <section class="band-block pill">
   <div class="band-inner">
@@ -440,18 +471,14 @@ ${scriptureHtml}
 </section>""".stripIndent().trim()
         }
 
-        def passageHtml = renderPassageBlock(strings, passage)
-        def conclusionsHtml = renderConclusionsBlock(strings, summaryIntro, conclusions)
-        def recapHtml = renderRecapBlock(strings, recap, recapToThinkAbout)
-
         def nextUpHtml = ""
         if (nextUp) {
             def nuMarked = applyInlineMarkers(nextUp)
             def nuText = formatTicksPreservingText(nuMarked).replace("\n", "<br>")
             nuText = unescapeSpecificHtml(nuText)
-            def prefixText = strings.episodeComplete ?: ""
+            String prefixText = strings.episodeComplete ?: ""
             def prefixHtml = prefixText ? "<div class=\"bigger2\">" + StringEscapeUtils.escapeHtml4(prefixText) + "</div>" : ""
-            def titleHtml = titleBarHtml(strings.nextUp)
+            def titleHtml = titleBarHtml(strings.nextUp as String)
             nextUpHtml = """
 <footer class="next-up pill">
   <div class="band-inner">
@@ -463,20 +490,148 @@ ${scriptureHtml}
         }
 
         def htmlTitle = topNumber ? "${topNumber} — ${title}" : title
-        def dataTheme = dark ? ' data-theme="dark"' : ""
-        def thumbHex = dark ? "#555" : "#aaa"
-        def trackHex = dark ? "#222" : "#eee"
-
-        return """<!doctype html>
-<html lang="en"${dataTheme}>
-<head>
-  <meta charset="utf-8">
-  <title>${htmlTitle}</title>
-  <meta name="viewport" content="width=device-width, initial-scale=1">
+
+        both(light, dark, '<!doctype html>\n<html lang="en"')
+        dark?.write(' data-theme="dark"')
+        both(light, dark, ">\n<head>\n  <meta charset=\"utf-8\">\n  <title>")
+        both(light, dark, htmlTitle.toString())
+        both(light, dark, "</title>\n")
+        light?.write(sharedAssets ? linkedChrome(false) : pageChrome(false))
+        dark?.write(sharedAssets ? linkedChrome(true) : pageChrome(true))
+        both(light, dark, "  " + topImageHtml + "\n")
+        both(light, dark, """  <div class="page">
+    <header class="page-header">
+      <div class="eyebrow">${StringEscapeUtils.escapeHtml4(eyebrowText)}</div>
+      <h1 class="title">${StringEscapeUtils.escapeHtml4(title)}</h1>
+    </header>
+    <section class="intro pill">
+      <p>${introHtml}</p>
+    </section>
+    """)
+        spreads.eachWithIndex { s, i ->
+            if (i > 0) both(light, dark, "\n")
+            both(light, dark, renderSpread(s, strings))
+        }
+        both(light, dark, "\n    ")
+        both(light, dark, renderConclusionsBlock(strings, summaryIntro, conclusions))
+        both(light, dark, "\n    ")
+        both(light, dark, reflectionHtml)
+        both(light, dark, "\n    ")
+        both(light, dark, renderPassageBlock(strings, passage))
+        both(light, dark, "\n    ")
+        both(light, dark, renderRecapBlock(strings, recap, recapToThinkAbout))
+        both(light, dark, "\n    ")
+        both(light, dark, nextUpHtml)
+        both(light, dark, "\n  </div>\n</body>\n</html>")
+    }
+
+    // Everything between <title> and the page body: fonts, CSS and scripts. Only the scrollbar
+    // colours depend on the theme, so the text is built once per theme and reused.
+    private static final String[] PAGE_CHROME = new String[2]
+
+    private static void both(Writer light, Writer dark, String s) {
+        if (light != null) light.write(s)
+        if (dark != null) dark.write(s)
+    }
+
+    static String pageChrome(boolean dark) {
+        int i = dark ? 1 : 0
+        String chrome = PAGE_CHROME[i]
+        if (chrome == null) {
+            chrome = buildPageChrome(dark ? "#555" : "#aaa", dark ? "#222" : "#eee")
+            PAGE_CHROME[i] = chrome
+        }
+        return chrome
+    }
+
+    // With shared assets: the theme's stylesheet and the scripts are linked from assets/, and the
+    // outline path is defined once at the top of the body
+    private static final String[] LINKED_CHROME = new String[2]
+    private static final List<SharedAsset>[] ASSETS = new List[2]
+
+    static final String ASSETS_DIR = "assets"
+    static final String OUTLINE_ID = "w121-outline"
+    static final String OUTLINE_D = "M93,33 C181,13 210,15 555,30 C575,32 585,45 588,65 C595,140 595,210 585,285 C582,305 568,315 548,318 C420,325 280,325 60,312 C42,311 30,300 28,282 C22,210 32,76 31,42 C30,8 91,16 118,6"
+
+    /** A stylesheet or script shared by the pages of an output folder, named after a hash of its content. */
+    static final class SharedAsset {
+        final String name
+        final byte[] bytes
+
+        SharedAsset(String extension, String text) {
+            bytes = text.getBytes(StandardCharsets.UTF_8)
+            name = "w121-" + ContentHash.sha256(bytes).substring(0, 12) + extension
+        }
+    }
+
+    /** The stylesheet and the script a page of the given theme links to. */
+    static List<SharedAsset> assetsFor(boolean dark) {
+        int i = dark ? 1 : 0
+        List<SharedAsset> assets = ASSETS[i]
+        if (assets == null) {
+            assets = [
+                    new SharedAsset(".css", stylesheet(dark ? "#555" : "#aaa", dark ? "#222" : "#eee")),
+                    new SharedAsset(".js", OUTLINE_USE_SCRIPT + OUTLINE_SCRIPT + RELOAD_SCRIPT)
+            ].asImmutable()
+            ASSETS[i] = assets
+        }
+        return assets
+    }
+
+    static String linkedChrome(boolean dark) {
+        int i = dark ? 1 : 0
+        String chrome = LINKED_CHROME[i]
+        if (chrome == null) {
+            List<SharedAsset> assets = assetsFor(dark)
+            chrome = HEAD_LINKS +
+                    "  <link rel=\"stylesheet\" href=\"${ASSETS_DIR}/${assets[0].name}\">\n</head>\n" +
+                    "<script src=\"${ASSETS_DIR}/${assets[1].name}\"></script>\n<body>\n" +
+                    "  <svg width=\"0\" height=\"0\" style=\"position:absolute\" aria-hidden=\"true\"><defs>" +
+                    "<path id=\"${OUTLINE_ID}\" class=\"outline\" d=\"${OUTLINE_D}\"/></defs></svg>\n" + RELOAD_BUTTON
+            LINKED_CHROME[i] = chrome
+        }
+        return chrome
+    }
+
+    /**
+     * Writes the theme's assets into {@code dir/assets} unless an earlier page already did, and returns
+     * the bytes written. Names change with the content, so an existing file never needs replacing.
+     */
+    static long writeSharedAssets(Path dir, boolean dark) {
+        Path folder = dir.resolve(ASSETS_DIR)
+        long written = 0
+        for (SharedAsset asset : assetsFor(dark)) {
+            Path target = folder.resolve(asset.name)
+            if (Files.isRegularFile(target)) continue
+            Files.createDirectories(folder)
+            Path tmp = Files.createTempFile(folder, asset.name, ".tmp")
+            try {
+                Files.write(tmp, asset.bytes)
+                // Another worker may have got there first; its file has the same content
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING)
+            } finally {
+                Files.deleteIfExists(tmp)
+            }
+            written += asset.bytes.length
+        }
+        return written
+    }
+
+    private static String buildPageChrome(String thumbHex, String trackHex) {
+        return HEAD_LINKS + "  <style>\n" + stylesheet(thumbHex, trackHex) + "  </style>\n</head>\n" +
+                "<script>\n" + OUTLINE_SCRIPT + "</script>\n<script>\n" + RELOAD_SCRIPT + "</script>\n<body>\n" + RELOAD_BUTTON
+    }
+
+    private static final String HEAD_LINKS = """  <meta name="viewport" content="width=device-width, initial-scale=1">
   <!-- Fonts -->
   <link href="https://fonts.googleapis.com/css2?family=Playpen+Sans:ital,wght@0,400;0,600;1,400;1,600&family=Caveat:wght@400;600&family=Noto+Serif:ital,wght@0,400;0,600;1,400;1,600&display=swap" rel="stylesheet">
-  <style>
-    :root {
+"""
+
+    private static final String RELOAD_BUTTON = """  <a id="reload-button" href="#" title="Reload page">&#x21bb;</a>
+"""
+
+    private static String stylesheet(String thumbHex, String trackHex) {
+        return """    :root {
       --bg: #fff;
       --fg: #111;
       --muted: #555;
@@ -658,10 +813,10 @@ ${scriptureHtml}
     ::-webkit-scrollbar-thumb { background-color: ${thumbHex}; border-radius: 6px; border: 2px solid ${trackHex}; }
     #reload-button { position: fixed; top: 0.75rem; right: 1rem; font-size: 1.5rem; font-weight: bold; color: inherit; text-decoration: none; opacity: 0.4; transition: opacity 0.2s ease-in-out; z-index: 1000; }
     #reload-button:hover { opacity: 1; }
-  </style>
-</head>
-<script>
-(function(){
+"""
+    }
+
+    private static final String OUTLINE_SCRIPT = """(function(){
   const BASE_W = 600, BASE_H = 330;
   function parsePathD(d) {
     const tokens = d.trim().replace(/([A-Za-z])/g, ' \$1 ').trim().split(/[\s,]+/);
@@ -797,9 +952,29 @@ ${scriptureHtml}
     initOutlineFitting();
   }
 })();
-</script>
-<script>
-document.addEventListener('DOMContentLoaded', () => {
+"""
+
+    // Pages with shared assets reference the outline with <use>, which the fitting below cannot reshape
+    // per ring, so each reference is swapped for its own copy of the path first
+    private static final String OUTLINE_USE_SCRIPT = """(function(){
+  function expandOutlines() {
+    document.querySelectorAll('svg.cue-outline > use, svg.callout-outline > use').forEach(use => {
+      const ref = document.getElementById((use.getAttribute('href') || '').replace(/^#/, ''));
+      if (!ref) return;
+      const path = ref.cloneNode(false);
+      path.removeAttribute('id');
+      use.replaceWith(path);
+    });
+  }
+  if (document.readyState === 'loading') {
+    document.addEventListener('DOMContentLoaded', expandOutlines);
+  } else {
+    expandOutlines();
+  }
+})();
+"""
+
+    private static final String RELOAD_SCRIPT = """document.addEventListener('DOMContentLoaded', () => {
   try {
     const reloadButton = document.getElementById('reload-button');
     if (reloadButton) {
@@ -812,26 +987,5 @@ document.addEventListener('DOMContentLoaded', () => {
     console.error("Reload button script failed:", e);
   }
 });
-</script>
-<body>
-  <a id="reload-button" href="#" title="Reload page">&#x21bb;</a>
-  ${topImageHtml}
-  <div class="page">
-    <header class="page-header">
-      <div class="eyebrow">${StringEscapeUtils.escapeHtml4(eyebrowText)}</div>
-      <h1 class="title">${StringEscapeUtils.escapeHtml4(title)}</h1>
-    </header>
-    <section class="intro pill">
-      <p>${introHtml}</p>
-    </section>
-    ${spreadsHtml}
-    ${conclusionsHtml}
-    ${reflectionHtml}
-    ${passageHtml}
-    ${recapHtml}
-    ${nextUpHtml}
-  </div>
-</body>
-</html>"""
-    }
+"""
 }
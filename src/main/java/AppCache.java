@@ -0,0 +1,29 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Location of the converter's persistent caches.
+ * Defaults to ~/.w121-json-converter/cache and can be moved with -Dw121.cacheDir=...
+ */
+public final class AppCache {
+
+    private AppCache() {
+    }
+
+    /** Returns the named cache folder, creating it if needed, or {@code null} if it cannot be created. */
+    public static Path dir(String name) {
+        String base = System.getProperty("w121.cacheDir");
+        Path root = base != null && !base.isEmpty()
+                ? Paths.get(base)
+                : Paths.get(System.getProperty("user.home"), ".w121-json-converter", "cache");
+        Path dir = root.resolve(name);
+        try {
+            Files.createDirectories(dir);
+            return dir;
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+    }
+}
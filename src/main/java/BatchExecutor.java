@@ -0,0 +1,385 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Runs a batch of file conversions on a bounded worker pool.
+ * Every file is converted in isolation: a failure is recorded in its result and never stops the batch.
+ * A list of files is reported in input order, as soon as all files before them have finished; files
+ * streamed from an {@link InputDiscovery} are numbered when a worker takes them and reported in that
+ * hand-out order, likewise once all files handed out before them have finished.
+ * <p>
+ * A batch can be cancelled from another thread: files already being converted are finished and written,
+ * files not started yet are left out of the results.
+ */
+public class BatchExecutor {
+
+    // Rough heap budget for one DOCX job: the whole POI document is held in memory until written.
+    private static final long DOCX_JOB_HEAP_BYTES = Long.getLong("w121.docxJobHeapMb", 128L) * 1024L * 1024L;
+
+    @FunctionalInterface
+    public interface FileTask {
+        /** Converts one file and returns the path of the written output. */
+        String convert(File file) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface UpToDateCheck {
+        /** Returns the existing output path if the file does not need converting, otherwise {@code null}. */
+        String upToDateOutput(File file) throws Exception;
+    }
+
+    public static class FileResult {
+        public final File file;
+        public final String output;
+        public final String error;
+        public final long millis;
+        /** True when the output was already up to date and the file was not converted. */
+        public final boolean skipped;
+
+        FileResult(File file, String output, String error, long millis) {
+            this(file, output, error, millis, false);
+        }
+
+        FileResult(File file, String output, String error, long millis, boolean skipped) {
+            this.file = file;
+            this.output = output;
+            this.error = error;
+            this.millis = millis;
+            this.skipped = skipped;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    /** Counts after a finished file, for progress displays. */
+    public static class Progress {
+        public final int done;
+        public final int failed;
+        /** Files known so far; final once {@link #allFound} is true. */
+        public final int total;
+        public final boolean allFound;
+        public final long elapsedMillis;
+
+        Progress(int done, int failed, int total, boolean allFound, long elapsedMillis) {
+            this.done = done;
+            this.failed = failed;
+            this.total = total;
+            this.allFound = allFound;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public int remaining() {
+            return Math.max(0, total - done);
+        }
+
+        /** Estimated time until the batch is done, from the average so far, or -1 while it cannot be told. */
+        public long etaMillis() {
+            if (!allFound || done == 0) return -1;
+            return elapsedMillis * remaining() / done;
+        }
+    }
+
+    public static class Summary {
+        public final List<FileResult> results;
+        public final int succeeded;
+        public final int failed;
+        /** Part of {@link #succeeded} that was up to date and not converted again. */
+        public final int skipped;
+        public final long wallMillis;
+        /** Time from the start of the batch until the first file was converted, or -1 if none was. */
+        public final long firstOutputMillis;
+        /** True when the batch was cancelled; {@link #results} then only holds the files that were started. */
+        public final boolean cancelled;
+
+        Summary(List<FileResult> results, long wallMillis, long firstOutputMillis, boolean cancelled) {
+            this.results = results;
+            this.wallMillis = wallMillis;
+            this.firstOutputMillis = firstOutputMillis;
+            this.cancelled = cancelled;
+            int ok = 0;
+            int unchanged = 0;
+            for (FileResult r : results) {
+                if (r.isSuccess()) ok++;
+                if (r.skipped) unchanged++;
+            }
+            this.succeeded = ok;
+            this.failed = results.size() - ok;
+            this.skipped = unchanged;
+        }
+
+        public double filesPerSecond() {
+            return wallMillis > 0 ? results.size() * 1000.0 / wallMillis : results.size();
+        }
+
+        @Override
+        public String toString() {
+            String first = firstOutputMillis >= 0 ? String.format(", first output after %.2f s", firstOutputMillis / 1000.0) : "";
+            String prefix = cancelled ? "Cancelled: " : "";
+            if (skipped > 0) {
+                return String.format("%s%d converted, %d unchanged, %d failed in %.2f s (%.1f files/s%s)",
+                        prefix, succeeded - skipped, skipped, failed, wallMillis / 1000.0, filesPerSecond(), first);
+            }
+            return String.format("%s%d converted, %d failed in %.2f s (%.1f files/s%s)",
+                    prefix, succeeded, failed, wallMillis / 1000.0, filesPerSecond(), first);
+        }
+    }
+
+    private final int workers;
+    private final Semaphore heavyJobs;
+    private final int heavyJobLimit;
+    private final Consumer<String> log;
+    private volatile Consumer<Progress> progress;
+    private volatile boolean cancelled;
+    private volatile InputDiscovery discovery;
+
+    /**
+     * @param workers   number of files converted concurrently
+     * @param heavyJobs whether each task holds a full DOCX document in memory; caps concurrency by heap size
+     * @param log       receives one line per finished file, in input order
+     */
+    public BatchExecutor(int workers, boolean heavyJobs, Consumer<String> log) {
+        this.workers = Math.max(1, workers);
+        this.heavyJobLimit = heavyJobs ? docxJobLimit(this.workers) : this.workers;
+        this.heavyJobs = heavyJobs ? new Semaphore(heavyJobLimit) : null;
+        this.log = log;
+    }
+
+    public static int defaultWorkers() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /** Number of DOCX jobs that fit into the heap at once, never more than the worker count. */
+    public static int docxJobLimit(int workers) {
+        long maxHeap = Runtime.getRuntime().maxMemory();
+        if (maxHeap == Long.MAX_VALUE) return workers;
+        long fit = (maxHeap * 3 / 4) / DOCX_JOB_HEAP_BYTES;
+        return (int) Math.max(1, Math.min(workers, fit));
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public int getHeavyJobLimit() {
+        return heavyJobLimit;
+    }
+
+    /** Receives the counts after every finished file, on the worker that finished it; may be {@code null}. */
+    public void setProgressListener(Consumer<Progress> progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Stops the running batch: no further file is started and discovery ends, while the files already
+     * being converted are finished. {@code run} then returns with {@link Summary#cancelled} set.
+     * Safe to call from any thread, also before or after the run.
+     */
+    public void cancel() {
+        cancelled = true;
+        InputDiscovery running = discovery;
+        if (running != null) running.close();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public Summary run(List<File> files, FileTask task) {
+        return run(files, task, null);
+    }
+
+    /**
+     * @param upToDate checked on the worker before converting each file; may be {@code null}
+     */
+    public Summary run(List<File> files, FileTask task, UpToDateCheck upToDate) {
+        long start = System.nanoTime();
+        AtomicLong firstOutput = new AtomicLong(-1);
+        List<FileResult> results = new ArrayList<>(files.size());
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(workers, Math.max(1, files.size())), new WorkerThreadFactory());
+        try {
+            List<Future<FileResult>> futures = new ArrayList<>(files.size());
+            for (File file : files) {
+                futures.add(pool.submit(() -> cancelled ? null : convertIsolated(file, task, upToDate, start, firstOutput)));
+            }
+            int failed = 0;
+            for (int i = 0; i < futures.size(); i++) {
+                FileResult result = await(futures.get(i), files.get(i));
+                if (result == null) continue; // cancelled before it started
+                results.add(result);
+                if (!result.isSuccess()) failed++;
+                report(results.size(), String.valueOf(files.size()), result.file.getName(), result);
+                reportProgress(results.size(), failed, files.size(), true, start);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return new Summary(results, (System.nanoTime() - start) / 1_000_000L, firstOutput.get(), cancelled);
+    }
+
+    /**
+     * Converts files as {@code discovery} finds them, the largest waiting file first. Like the list variant,
+     * the log follows the order in which files were handed to the workers, not the order they finish in; a
+     * line waits only for files that started before it. The total carries a {@code +} while discovery is
+     * still running. The discovery is started here if it has not been, and closed when the batch ends.
+     * Results are sorted by input path.
+     *
+     * @param upToDate checked on the worker before converting each file; may be {@code null}
+     */
+    public Summary run(InputDiscovery discovery, FileTask task, UpToDateCheck upToDate) {
+        long start = System.nanoTime();
+        AtomicLong firstOutput = new AtomicLong(-1);
+        List<FileResult> results = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger failed = new AtomicInteger();
+        // Finished files by hand-out number, logged once every file handed out before them has finished
+        Map<Integer, FileResult> unlogged = new HashMap<>();
+        int[] handedOut = {0};
+        int[] logged = {0};
+        ExecutorService pool = Executors.newFixedThreadPool(workers, new WorkerThreadFactory());
+        this.discovery = discovery;
+        try {
+            if (cancelled) return new Summary(new ArrayList<>(), 0, -1, true);
+            discovery.start();
+            List<Future<?>> loops = new ArrayList<>(workers);
+            for (int i = 0; i < workers; i++) {
+                loops.add(pool.submit(() -> {
+                    while (!cancelled) {
+                        File file;
+                        int number;
+                        synchronized (handedOut) {
+                            file = discovery.take();
+                            number = handedOut[0]++;
+                        }
+                        if (file == null || cancelled) break;
+                        FileResult result = convertIsolated(file, task, upToDate, start, firstOutput);
+                        synchronized (results) {
+                            results.add(result);
+                            if (!result.isSuccess()) failed.incrementAndGet();
+                            unlogged.put(number, result);
+                            for (FileResult next; (next = unlogged.remove(logged[0])) != null; logged[0]++) {
+                                report(logged[0] + 1, discovery.found() + (discovery.isFinished() ? "" : "+"),
+                                        discovery.relativePath(next.file), next);
+                            }
+                            reportProgress(results.size(), failed.get(), discovery.found(), discovery.isFinished(), start);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> loop : loops) {
+                try {
+                    loop.get();
+                } catch (ExecutionException e) {
+                    // convertIsolated catches everything; only an interrupted take() ends a loop early
+                }
+            }
+            // A file handed out as the batch was cancelled is never converted; log what waited behind it
+            for (FileResult next : new TreeMap<>(unlogged).values()) {
+                report(++logged[0], String.valueOf(discovery.found()), discovery.relativePath(next.file), next);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdownNow();
+            discovery.close();
+            this.discovery = null;
+        }
+        List<FileResult> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparing(r -> r.file.getPath()));
+        return new Summary(sorted, (System.nanoTime() - start) / 1_000_000L, firstOutput.get(), cancelled);
+    }
+
+    private FileResult convertIsolated(File file, FileTask task, UpToDateCheck upToDate, long batchStart, AtomicLong firstOutput) {
+        long t0 = System.nanoTime();
+        boolean acquired = false;
+        try {
+            // Checked before taking a DOCX slot: skipping needs no document in memory
+            String existing = upToDate != null ? upToDate.upToDateOutput(file) : null;
+            if (existing != null) {
+                return new FileResult(file, existing, null, (System.nanoTime() - t0) / 1_000_000L, true);
+            }
+            if (heavyJobs != null) {
+                heavyJobs.acquire();
+                acquired = true;
+            }
+            String output = task.convert(file);
+            long done = System.nanoTime();
+            firstOutput.compareAndSet(-1, (done - batchStart) / 1_000_000L);
+            return new FileResult(file, output, null, (done - t0) / 1_000_000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new FileResult(file, null, "Interrupted", (System.nanoTime() - t0) / 1_000_000L);
+        } catch (Throwable t) {
+            return new FileResult(file, null, describe(t), (System.nanoTime() - t0) / 1_000_000L);
+        } finally {
+            if (acquired) heavyJobs.release();
+        }
+    }
+
+    private void reportProgress(int done, int failed, int total, boolean allFound, long start) {
+        Consumer<Progress> listener = progress;
+        if (listener != null) {
+            listener.accept(new Progress(done, failed, total, allFound, (System.nanoTime() - start) / 1_000_000L));
+        }
+    }
+
+    private static FileResult await(Future<FileResult> future, File file) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new FileResult(file, null, "Interrupted", 0);
+        } catch (ExecutionException e) {
+            return new FileResult(file, null, describe(e.getCause()), 0);
+        }
+    }
+
+    private void report(int index, String total, String name, FileResult r) {
+        if (log == null) return;
+        String prefix = "[" + index + "/" + total + "] ";
+        if (r.skipped) {
+            log.accept(prefix + name + " unchanged, skipped");
+        } else if (r.isSuccess()) {
+            log.accept(prefix + name + " -> " + new File(r.output).getName() + " (" + r.millis + " ms)");
+        } else {
+            log.accept(prefix + "Failed to process " + name + ": " + r.error);
+        }
+    }
+
+    static String describe(Throwable t) {
+        // Work run through a Future arrives wrapped in ExecutionException; report the converter's own message
+        Throwable cause = t;
+        while (cause instanceof ExecutionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        String message = cause.getMessage();
+        return message != null ? message : cause.getClass().getSimpleName();
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "conversion-worker-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Records, per output file, everything the output was rendered from: a hash of the episode JSON and
+ * of the strings file, the format options and the converter version. Incremental runs skip a file
+ * whose record still matches and whose output still exists.
+ * One manifest ({@value #FILE_NAME}) is kept in each output folder.
+ */
+public final class BuildManifest {
+
+    public static final String FILE_NAME = ".w121-manifest.json";
+    private static final int FORMAT_VERSION = 1;
+
+    /** What one output was rendered from. Two fingerprints are equal when nothing relevant changed. */
+    public static final class Fingerprint {
+        final String input;
+        final String inputHash;
+        final String stringsHash;
+        final String options;
+        final String converter;
+
+        Fingerprint(String input, String inputHash, String stringsHash, String options, String converter) {
+            this.input = input;
+            this.inputHash = inputHash;
+            this.stringsHash = stringsHash;
+            this.options = options;
+            this.converter = converter;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Fingerprint)) return false;
+            Fingerprint f = (Fingerprint) o;
+            return Objects.equals(input, f.input) && Objects.equals(inputHash, f.inputHash)
+                    && Objects.equals(stringsHash, f.stringsHash) && Objects.equals(options, f.options)
+                    && Objects.equals(converter, f.converter);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(input, inputHash, stringsHash, options, converter);
+        }
+    }
+
+    // Serialized form
+    private static final class Data {
+        int version = FORMAT_VERSION;
+        Map<String, Fingerprint> entries = new TreeMap<>();
+    }
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+
+    private final Path file;
+    private final Map<String, Fingerprint> entries;
+    private boolean dirty;
+
+    private BuildManifest(Path file, Map<String, Fingerprint> entries) {
+        this.file = file;
+        this.entries = entries;
+    }
+
+    /** Loads the manifest of an output folder; a missing or unreadable manifest starts empty. */
+    public static BuildManifest load(Path dir) {
+        Path file = dir.resolve(FILE_NAME);
+        Map<String, Fingerprint> entries = new TreeMap<>();
+        if (Files.isRegularFile(file)) {
+            try {
+                Data data = GSON.fromJson(Files.readString(file, StandardCharsets.UTF_8), Data.class);
+                if (data != null && data.version == FORMAT_VERSION && data.entries != null) {
+                    entries.putAll(data.entries);
+                }
+            } catch (IOException | JsonParseException e) {
+                // Treated like a first run: everything is rendered again and the manifest rewritten
+            }
+        }
+        return new BuildManifest(file, entries);
+    }
+
+    /** Version of the running converter; outputs of an older converter are rendered again. */
+    public static String converterVersion() {
+        String version = BuildManifest.class.getPackage() != null ? BuildManifest.class.getPackage().getImplementationVersion() : null;
+        return version != null ? version : "dev";
+    }
+
+    public static Fingerprint fingerprint(File input, String stringsHash, String options) throws IOException {
+        return fingerprint(input, inputHash(input), stringsHash, options);
+    }
+
+    /** For several outputs of the same input: hash it once with {@link #inputHash} and reuse the hash. */
+    public static Fingerprint fingerprint(File input, String inputHash, String stringsHash, String options) {
+        return new Fingerprint(input.getAbsolutePath(), inputHash, stringsHash != null ? stringsHash : "", options, converterVersion());
+    }
+
+    public static String inputHash(File input) throws IOException {
+        return ContentHash.sha256(Files.readAllBytes(input.toPath()));
+    }
+
+    public synchronized boolean isUpToDate(File output, Fingerprint fingerprint) {
+        return fingerprint.equals(entries.get(output.getName())) && output.isFile();
+    }
+
+    public synchronized void record(File output, Fingerprint fingerprint) {
+        if (!fingerprint.equals(entries.put(output.getName(), fingerprint))) {
+            dirty = true;
+        }
+    }
+
+    /** Writes the manifest if anything was recorded, via a temp file and rename. */
+    public synchronized void save() throws IOException {
+        if (!dirty) return;
+        Data data = new Data();
+        data.entries.putAll(entries);
+        Path tmp = Files.createTempFile(file.getParent(), FILE_NAME, ".tmp");
+        try {
+            Files.writeString(tmp, GSON.toJson(data), StandardCharsets.UTF_8);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        dirty = false;
+    }
+}
@@ -0,0 +1,281 @@
+import com.google.gson.stream.JsonWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Per-file timings of a conversion run, split into phases, with bytes and episode sizes.
+ * <p>
+ * The scripts measure their phases through a {@link FileMetrics}; when metrics are off they get
+ * {@link FileMetrics#DISABLED}, whose methods return at once without reading the clock, so an
+ * uninstrumented run pays one field check per phase. At the end of a batch the recorded files are
+ * summarised as p50/p95/max per phase and can be written as JSON or CSV.
+ */
+public final class ConversionMetrics {
+
+    /** Base name of the .json and .csv files the GUI saves next to its outputs; hidden, so no batch takes them for episodes. */
+    public static final String FILE_NAME = ".w121-metrics";
+
+    public enum Phase {
+        /** Reading and parsing the episode JSON. */
+        PARSE,
+        /** Loading the strings file, when a script reads it itself instead of getting the batch's copy. */
+        STRINGS,
+        /** SVG fetch and rasterizing, DOCX only. */
+        IMAGE,
+        /** Building the document; for HTML this includes streaming it to the buffered file writer. */
+        RENDER,
+        /** Serializing and moving the output into place. */
+        WRITE;
+
+        final String label = name().toLowerCase(Locale.ROOT);
+    }
+
+    /** Measurements of one file. Written by the one thread converting it. */
+    public static class FileMetrics {
+
+        public static final FileMetrics DISABLED = new FileMetrics(null, false);
+
+        final String file;
+        final boolean enabled;
+        final long[] phaseNanos = new long[Phase.values().length];
+        long totalNanos;
+        long bytesRead;
+        long bytesWritten;
+        int spreads;
+        int notes;
+        boolean success;
+
+        FileMetrics(String file, boolean enabled) {
+            this.file = file;
+            this.enabled = enabled;
+        }
+
+        /** Start of a phase, to pass to {@link #end}; {@code 0} when disabled. */
+        public long start() {
+            return enabled ? System.nanoTime() : 0L;
+        }
+
+        /** Adds the time since {@code start} to a phase. */
+        public void end(Phase phase, long start) {
+            if (enabled) phaseNanos[phase.ordinal()] += System.nanoTime() - start;
+        }
+
+        public long nanos(Phase phase) {
+            return phaseNanos[phase.ordinal()];
+        }
+
+        public void bytesRead(long bytes) {
+            if (enabled) bytesRead += bytes;
+        }
+
+        public void bytesWritten(long bytes) {
+            if (enabled) bytesWritten += bytes;
+        }
+
+        public void episode(Episode episode) {
+            if (!enabled || episode == null) return;
+            spreads = episode.bundle.spreads.size();
+            int count = 0;
+            for (Episode.Spread spread : episode.bundle.spreads) {
+                if (spread != null) count += spread.notes.size();
+            }
+            notes = count;
+        }
+
+        /** One-line breakdown for the log. */
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (Phase phase : Phase.values()) {
+                long nanos = phaseNanos[phase.ordinal()];
+                if (nanos == 0) continue;
+                sb.append(sb.length() == 0 ? "" : ", ").append(phase.label).append(' ').append(millis(nanos)).append(" ms");
+            }
+            return sb + (sb.length() == 0 ? "" : "; ") + "total " + millis(totalNanos) + " ms, "
+                    + kib(bytesRead) + " KB read, " + kib(bytesWritten) + " KB written, "
+                    + spreads + " spreads, " + notes + " notes";
+        }
+    }
+
+    /** Used when metrics are off: hands out {@link FileMetrics#DISABLED} and records nothing. */
+    public static final ConversionMetrics DISABLED = new ConversionMetrics(false);
+
+    private final boolean enabled;
+    private final List<FileMetrics> files = new ArrayList<>();
+    private volatile long stringsNanos;
+
+    public ConversionMetrics() {
+        this(true);
+    }
+
+    private ConversionMetrics(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public FileMetrics newFile(File input) {
+        return enabled ? new FileMetrics(input.getName(), true) : FileMetrics.DISABLED;
+    }
+
+    public void record(FileMetrics metrics, long totalNanos, boolean success) {
+        if (!enabled || metrics == FileMetrics.DISABLED) return;
+        metrics.totalNanos = totalNanos;
+        metrics.success = success;
+        synchronized (files) {
+            files.add(metrics);
+        }
+    }
+
+    /** Time spent loading the strings file once for the whole batch. */
+    public synchronized void stringsLoaded(long nanos) {
+        if (enabled) stringsNanos += nanos;
+    }
+
+    /** The most recently recorded file, or {@code null}. */
+    public FileMetrics last() {
+        synchronized (files) {
+            return files.isEmpty() ? null : files.get(files.size() - 1);
+        }
+    }
+
+    private List<FileMetrics> snapshot() {
+        synchronized (files) {
+            return new ArrayList<>(files);
+        }
+    }
+
+    /** p50/p95/max lines for the log; empty when nothing was recorded. */
+    public List<String> report() {
+        List<FileMetrics> converted = successful(snapshot());
+        List<String> lines = new ArrayList<>();
+        if (converted.isEmpty()) return lines;
+        lines.add("Metrics for " + converted.size() + " converted file(s), p50 / p95 / max:");
+        for (Phase phase : Phase.values()) {
+            long[] values = phaseValues(converted, phase);
+            if (values[values.length - 1] == 0) continue;
+            lines.add(String.format(Locale.ROOT, "  %-8s %s", phase.label, distribution(values)));
+        }
+        lines.add(String.format(Locale.ROOT, "  %-8s %s", "total", distribution(totalValues(converted))));
+        long read = 0;
+        long written = 0;
+        for (FileMetrics m : converted) {
+            read += m.bytesRead;
+            written += m.bytesWritten;
+        }
+        lines.add("  " + kib(read) + " KB read, " + kib(written) + " KB written"
+                + (stringsNanos > 0 ? ", strings loaded once in " + millis(stringsNanos) + " ms" : ""));
+        return lines;
+    }
+
+    /** Writes the per-file rows and the summary; CSV when the name ends in .csv, otherwise JSON. */
+    public void write(Path file) throws IOException {
+        List<FileMetrics> all = snapshot();
+        ReportFiles.write(file, out -> writeCsv(all, out), out -> writeJson(all, out));
+    }
+
+    private void writeCsv(List<FileMetrics> all, Writer out) throws IOException {
+        StringBuilder header = new StringBuilder("file,success");
+        for (Phase phase : Phase.values()) header.append(',').append(phase.label).append("_ms");
+        header.append(",total_ms,bytes_read,bytes_written,spreads,notes\n");
+        out.write(header.toString());
+        for (FileMetrics m : all) {
+            StringBuilder row = new StringBuilder(ReportFiles.csv(m.file)).append(',').append(m.success);
+            for (Phase phase : Phase.values()) row.append(',').append(millis(m.nanos(phase)));
+            row.append(',').append(millis(m.totalNanos)).append(',').append(m.bytesRead).append(',').append(m.bytesWritten)
+                    .append(',').append(m.spreads).append(',').append(m.notes).append('\n');
+            out.write(row.toString());
+        }
+    }
+
+    private void writeJson(List<FileMetrics> all, Writer out) throws IOException {
+        List<FileMetrics> converted = successful(all);
+        JsonWriter json = new JsonWriter(out);
+        json.setIndent("  ");
+        json.beginObject();
+        json.name("files").value(all.size());
+        json.name("converted").value(converted.size());
+        json.name("stringsMillis").value(millis(stringsNanos));
+        json.name("summary").beginObject();
+        if (!converted.isEmpty()) {
+            for (Phase phase : Phase.values()) {
+                distributionJson(json, phase.label, phaseValues(converted, phase));
+            }
+            distributionJson(json, "total", totalValues(converted));
+        }
+        json.endObject();
+        json.name("perFile").beginArray();
+        for (FileMetrics m : all) {
+            json.beginObject();
+            json.name("file").value(m.file);
+            json.name("success").value(m.success);
+            for (Phase phase : Phase.values()) json.name(phase.label + "Millis").value(millis(m.nanos(phase)));
+            json.name("totalMillis").value(millis(m.totalNanos));
+            json.name("bytesRead").value(m.bytesRead);
+            json.name("bytesWritten").value(m.bytesWritten);
+            json.name("spreads").value(m.spreads);
+            json.name("notes").value(m.notes);
+            json.endObject();
+        }
+        json.endArray();
+        json.endObject();
+        json.flush();
+    }
+
+    private static void distributionJson(JsonWriter json, String name, long[] sorted) throws IOException {
+        json.name(name).beginObject();
+        json.name("p50").value(millis(percentile(sorted, 50)));
+        json.name("p95").value(millis(percentile(sorted, 95)));
+        json.name("max").value(millis(sorted[sorted.length - 1]));
+        json.endObject();
+    }
+
+    private static List<FileMetrics> successful(List<FileMetrics> all) {
+        List<FileMetrics> ok = new ArrayList<>();
+        for (FileMetrics m : all) {
+            if (m.success) ok.add(m);
+        }
+        return ok;
+    }
+
+    private static long[] phaseValues(List<FileMetrics> files, Phase phase) {
+        long[] values = new long[files.size()];
+        for (int i = 0; i < values.length; i++) values[i] = files.get(i).nanos(phase);
+        Arrays.sort(values);
+        return values;
+    }
+
+    private static long[] totalValues(List<FileMetrics> files) {
+        long[] values = new long[files.size()];
+        for (int i = 0; i < values.length; i++) values[i] = files.get(i).totalNanos;
+        Arrays.sort(values);
+        return values;
+    }
+
+    // Nearest-rank percentile of a sorted, non-empty array
+    private static long percentile(long[] sorted, int p) {
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static String distribution(long[] sorted) {
+        return millis(percentile(sorted, 50)) + " / " + millis(percentile(sorted, 95)) + " / " + millis(sorted[sorted.length - 1]) + " ms";
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 10_000.0) / 100.0;
+    }
+
+    private static long kib(long bytes) {
+        return (bytes + 1023) / 1024;
+    }
+}
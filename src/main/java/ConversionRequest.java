@@ -0,0 +1,93 @@
+import java.io.File;
+import java.io.OutputStream;
+
+/**
+ * What to convert and where to put it. Immutable: every {@code with}/{@code writeTo} call returns a
+ * copy, so one base request can be shared and varied per file.
+ * <p>
+ * The input is either an episode file or an already parsed {@link Episode}; the output is either a
+ * file, written via a temporary file and a rename, or a stream that is left open.
+ */
+public final class ConversionRequest {
+
+    public final File inputFile;
+    public final Episode episode;
+    public final File outputFile;
+    public final OutputStream output;
+    /** HTML only: where to write the dark page, rendered in the same pass as the light one at {@link #outputFile}. */
+    public final File darkOutputFile;
+    /** HTML only: the same for a light page written to {@link #output}; the stream is left open. */
+    public final OutputStream darkOutput;
+    /** May be {@code null}: the app strings are then left out. */
+    public final StringsRepository.Strings strings;
+    public final boolean darkMode;
+    /** Spell-checking language for DOCX; {@code null} uses the system default. */
+    public final String lang;
+    /** HTML files only: link the stylesheet and scripts from a shared assets folder instead of inlining them. */
+    public final boolean sharedAssets;
+    public final ConversionMetrics.FileMetrics metrics;
+
+    private ConversionRequest(File inputFile, Episode episode, File outputFile, OutputStream output,
+                              File darkOutputFile, OutputStream darkOutput, StringsRepository.Strings strings, boolean darkMode, String lang,
+                              boolean sharedAssets, ConversionMetrics.FileMetrics metrics) {
+        this.inputFile = inputFile;
+        this.episode = episode;
+        this.outputFile = outputFile;
+        this.output = output;
+        this.darkOutputFile = darkOutputFile;
+        this.darkOutput = darkOutput;
+        this.strings = strings;
+        this.darkMode = darkMode;
+        this.lang = lang;
+        this.sharedAssets = sharedAssets;
+        this.metrics = metrics;
+    }
+
+    public static ConversionRequest of(File inputFile) {
+        return new ConversionRequest(inputFile, null, null, null, null, null, null, false, null, false, ConversionMetrics.FileMetrics.DISABLED);
+    }
+
+    /** For an episode that is already parsed; it must have been read the way the converter expects. */
+    public static ConversionRequest of(Episode episode) {
+        return new ConversionRequest(null, episode, null, null, null, null, null, false, null, false, ConversionMetrics.FileMetrics.DISABLED);
+    }
+
+    public ConversionRequest writeTo(File outputFile) {
+        return new ConversionRequest(inputFile, episode, outputFile, null, darkOutputFile, null, strings, darkMode, lang, sharedAssets, metrics);
+    }
+
+    public ConversionRequest writeTo(OutputStream output) {
+        return new ConversionRequest(inputFile, episode, null, output, null, darkOutput, strings, darkMode, lang, sharedAssets, metrics);
+    }
+
+    /** Adds the dark variant of an HTML page written to a file; other converters ignore it. */
+    public ConversionRequest alsoWriteDarkTo(File darkOutputFile) {
+        return new ConversionRequest(inputFile, episode, outputFile, output, darkOutputFile, null, strings, darkMode, lang, sharedAssets, metrics);
+    }
+
+    /** Adds the dark variant of an HTML page written to a stream; other converters ignore it. */
+    public ConversionRequest alsoWriteDarkTo(OutputStream darkOutput) {
+        return new ConversionRequest(inputFile, episode, outputFile, output, null, darkOutput, strings, darkMode, lang, sharedAssets, metrics);
+    }
+
+    public ConversionRequest withStrings(StringsRepository.Strings strings) {
+        return new ConversionRequest(inputFile, episode, outputFile, output, darkOutputFile, darkOutput, strings, darkMode, lang, sharedAssets, metrics);
+    }
+
+    public ConversionRequest withDarkMode(boolean darkMode) {
+        return new ConversionRequest(inputFile, episode, outputFile, output, darkOutputFile, darkOutput, strings, darkMode, lang, sharedAssets, metrics);
+    }
+
+    public ConversionRequest withLang(String lang) {
+        return new ConversionRequest(inputFile, episode, outputFile, output, darkOutputFile, darkOutput, strings, darkMode, lang, sharedAssets, metrics);
+    }
+
+    public ConversionRequest withSharedAssets(boolean sharedAssets) {
+        return new ConversionRequest(inputFile, episode, outputFile, output, darkOutputFile, darkOutput, strings, darkMode, lang, sharedAssets, metrics);
+    }
+
+    public ConversionRequest withMetrics(ConversionMetrics.FileMetrics metrics) {
+        return new ConversionRequest(inputFile, episode, outputFile, output, darkOutputFile, darkOutput, strings, darkMode, lang, sharedAssets,
+                metrics != null ? metrics : ConversionMetrics.FileMetrics.DISABLED);
+    }
+}
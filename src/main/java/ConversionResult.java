@@ -0,0 +1,23 @@
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+/** Outcome of a successful {@link Converter#convert}. */
+public final class ConversionResult {
+
+    /** The written file, or {@code null} when the request wrote to a stream. */
+    public final File output;
+    public final long millis;
+    /** Problems that did not stop the conversion, such as artwork that could not be embedded. */
+    public final List<String> warnings;
+
+    public ConversionResult(File output, long millis) {
+        this(output, millis, Collections.emptyList());
+    }
+
+    public ConversionResult(File output, long millis, List<String> warnings) {
+        this.output = output;
+        this.millis = millis;
+        this.warnings = Collections.unmodifiableList(warnings);
+    }
+}
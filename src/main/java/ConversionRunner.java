@@ -0,0 +1,496 @@
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.apache.commons.io.FilenameUtils;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Conversion logic shared by the GUI and the command line.
+ * Deliberately free of AWT/Swing/FlatLaf references so that it can run in a headless JVM.
+ */
+public class ConversionRunner {
+
+    /** One output written for every episode. */
+    public enum Target {
+        DOCX, HTML_LIGHT, HTML_DARK
+    }
+
+    private final Set<Target> targets;
+    private final String lang;
+    private final String outputDir;
+    private final Consumer<String> log;
+
+    private Converter docxConverter;
+    private Converter htmlConverter;
+
+    private boolean incremental;
+    private boolean sharedAssets;
+    private Path inputRoot;
+    private OutputArchive archive;
+    private SearchIndex searchIndex;
+    private ValidationReport validation;
+    // Output folder -> its manifest, loaded on first use
+    private final Map<Path, BuildManifest> manifests = new ConcurrentHashMap<>();
+    // Fingerprints computed by upToDateOutput, reused when the file is then converted
+    private final Map<String, Map<Target, BuildManifest.Fingerprint>> pending = new ConcurrentHashMap<>();
+    private ConversionMetrics metrics = ConversionMetrics.DISABLED;
+
+    /**
+     * @param outputDir folder for all outputs, or {@code null}/empty to write each output next to its input
+     */
+    public ConversionRunner(boolean html, boolean darkMode, String lang, String outputDir, Consumer<String> log) {
+        this(EnumSet.of(html ? (darkMode ? Target.HTML_DARK : Target.HTML_LIGHT) : Target.DOCX), lang, outputDir, log);
+    }
+
+    /**
+     * Renders every episode to all {@code targets} from a single parse. When both HTML variants are
+     * selected, the dark page is named {@code <episode>-dark.html}.
+     */
+    public ConversionRunner(Set<Target> targets, String lang, String outputDir, Consumer<String> log) {
+        if (targets.isEmpty()) {
+            throw new IllegalArgumentException("No output format selected");
+        }
+        this.targets = Collections.unmodifiableSet(EnumSet.copyOf(targets));
+        this.lang = lang;
+        this.outputDir = (outputDir == null || outputDir.trim().isEmpty()) ? null : outputDir.trim();
+        this.log = log;
+    }
+
+    public Set<Target> getTargets() {
+        return targets;
+    }
+
+    /** True when no DOCX is produced. */
+    public boolean isHtml() {
+        return !targets.contains(Target.DOCX);
+    }
+
+    /** Whether each job holds a whole POI document in memory and so needs the DOCX heap budget. */
+    public boolean holdsDocxInMemory() {
+        return targets.contains(Target.DOCX) && !DocxStreamWriter.selected();
+    }
+
+    /** In incremental mode, files whose inputs, strings and options are unchanged since the last run are skipped. */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * HTML pages link one content-hashed stylesheet and script in {@code assets/} of their output folder
+     * instead of each inlining them; off by default, so a single page can be shared on its own.
+     */
+    public void setSharedAssets(boolean sharedAssets) {
+        this.sharedAssets = sharedAssets;
+    }
+
+    public boolean isSharedAssets() {
+        return sharedAssets;
+    }
+
+    /**
+     * Streams every output into {@code archive} instead of writing separate files; {@code null} goes
+     * back to files. Incremental mode does not apply to an archive, which is written afresh each run.
+     */
+    public void setArchive(OutputArchive archive) {
+        this.archive = archive;
+    }
+
+    public OutputArchive getArchive() {
+        return archive;
+    }
+
+    /**
+     * Mirrors the sub-folders of {@code root} in the output folder: an episode in {@code root/en/series}
+     * is written to {@code <output>/en/series}, and named {@code en/series/...} in an archive. Folders are
+     * created as needed; {@code null} (the default) writes every output straight into the output folder.
+     */
+    public void setInputRoot(File root) {
+        this.inputRoot = root != null ? root.getAbsoluteFile().toPath().normalize() : null;
+    }
+
+    /**
+     * Adds every episode converted, or skipped as up to date, to {@code index}; {@code null} (the default)
+     * indexes nothing. The index is not saved here.
+     */
+    public void setSearchIndex(SearchIndex index) {
+        this.searchIndex = index;
+    }
+
+    public SearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    /**
+     * Checks every episode with {@link EpisodeValidator} before converting it and records the findings in
+     * {@code report}; an episode with an error is not converted. {@code null} (the default) checks nothing.
+     */
+    public void setValidation(ValidationReport report) {
+        this.validation = report;
+    }
+
+    public ValidationReport getValidation() {
+        return validation;
+    }
+
+    /** Records per-phase timings of every conversion into {@code metrics}; off by default. */
+    public void setMetrics(ConversionMetrics metrics) {
+        this.metrics = metrics != null ? metrics : ConversionMetrics.DISABLED;
+    }
+
+    public ConversionMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** Finds the converters for the selected targets; throws {@link IllegalStateException} when one is not installed. */
+    public void locateConverter() {
+        if (targets.contains(Target.DOCX)) {
+            docxConverter = Converters.forFormat("docx");
+        }
+        if (targets.contains(Target.HTML_LIGHT) || targets.contains(Target.HTML_DARK)) {
+            htmlConverter = Converters.forFormat("html");
+        }
+    }
+
+    /**
+     * Loads the strings file once for the whole run through the shared {@link StringsRepository}.
+     * A .txt export is converted in memory; with {@code saveAsJson} a .json copy is also written next to it.
+     * Returns {@code null} when no strings file is given or it cannot be read, in which case the
+     * app strings are omitted from the output.
+     */
+    public StringsRepository.Strings prepareStrings(String stringsPath, boolean saveAsJson) throws IOException {
+        if (stringsPath == null || stringsPath.isEmpty()) {
+            return null;
+        }
+        File file = new File(stringsPath);
+        if (!file.isFile()) {
+            log("Warning: Strings file not found at '" + file.getAbsolutePath() + "'");
+            return null;
+        }
+        boolean isTxt = stringsPath.toLowerCase().endsWith(".txt");
+        if (isTxt) {
+            log("Converting strings file: " + file.getName());
+        }
+        StringsRepository.Strings strings;
+        long started = System.nanoTime();
+        try {
+            strings = StringsRepository.shared().load(stringsPath);
+        } catch (IOException | RuntimeException e) {
+            log("Warning: Could not load strings file at " + stringsPath + ". Proceeding without it.");
+            return null;
+        }
+        metrics.stringsLoaded(System.nanoTime() - started);
+
+        if (isTxt && saveAsJson) {
+            File outputFile = new File(FilenameUtils.removeExtension(stringsPath) + ".json");
+            log("Saving converted strings to: " + outputFile.getName());
+            Gson gson = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+            try (Writer writer = new FileWriter(outputFile, StandardCharsets.UTF_8)) {
+                writer.write(gson.toJson(strings.raw));
+            }
+        }
+        return strings;
+    }
+
+    /** Folder used in batch mode: the input itself if it is a folder, otherwise the folder containing it. */
+    public static File batchFolder(String inputPath) {
+        File inputFile = new File(inputPath);
+        return inputFile.isDirectory() ? inputFile.getAbsoluteFile() : inputFile.getAbsoluteFile().getParentFile();
+    }
+
+    /**
+     * Whether a batch should convert {@code file}: a .json file that is neither hidden (which leaves out the
+     * build manifest and metrics) nor the strings file or the .json saved next to a .txt strings file.
+     */
+    public static boolean isEpisode(File file, String stringsPath) {
+        String name = file.getName();
+        if (name.startsWith(".") || !name.toLowerCase().endsWith(".json")) return false;
+        if (stringsPath == null || stringsPath.isEmpty()) return true;
+        Path path = file.getAbsoluteFile().toPath().normalize();
+        Path strings = new File(stringsPath).getAbsoluteFile().toPath().normalize();
+        return !path.equals(strings)
+                && !path.equals(Path.of(FilenameUtils.removeExtension(strings.toString()) + ".json"));
+    }
+
+    /** Output of the first selected target (DOCX, then light HTML, then dark HTML). */
+    public String outputPathFor(File inputFile) {
+        return outputPathFor(inputFile, targets.iterator().next());
+    }
+
+    public String outputPathFor(File inputFile, Target target) {
+        String extension = target == Target.DOCX ? ".docx" : ".html";
+        // Light and dark pages of the same episode need different names
+        String suffix = target == Target.HTML_DARK && targets.contains(Target.HTML_LIGHT) ? "-dark" : "";
+        String baseName = FilenameUtils.getBaseName(inputFile.getName());
+        File parent = outputDir != null ? new File(outputDir, relativeFolder(inputFile)) : inputFile.getAbsoluteFile().getParentFile();
+        return new File(parent, baseName + suffix + extension).getAbsolutePath();
+    }
+
+    // Folder of the input below the input root, with / separators; empty without a root or at its top
+    private String relativeFolder(File inputFile) {
+        if (inputRoot == null) return "";
+        Path folder = inputFile.getAbsoluteFile().toPath().normalize().getParent();
+        if (folder == null || !folder.startsWith(inputRoot)) return "";
+        return inputRoot.relativize(folder).toString().replace(File.separatorChar, '/');
+    }
+
+    /**
+     * In incremental mode, returns the output path if every output exists and was rendered from the same
+     * episode, strings and options by this converter version; otherwise (or when not incremental) {@code null}.
+     * When any target is stale, all of them are rendered again, as they share one parse.
+     */
+    public String upToDateOutput(File inputFile, StringsRepository.Strings strings) throws IOException {
+        if (!incremental || archive != null) return null;
+        Map<Target, BuildManifest.Fingerprint> fingerprints = fingerprints(inputFile, strings);
+        boolean upToDate = true;
+        for (Map.Entry<Target, BuildManifest.Fingerprint> e : fingerprints.entrySet()) {
+            File output = new File(outputPathFor(inputFile, e.getKey()));
+            if (!manifestFor(output).isUpToDate(output, e.getValue())) {
+                upToDate = false;
+                break;
+            }
+        }
+        if (upToDate) {
+            if (searchIndex != null && !searchIndex.contains(inputFile)) {
+                // Indexed for the first time, e.g. when the search page is turned on for an existing folder
+                searchIndex.add(inputFile, EpisodeReader.read(inputFile, false), new File(outputPathFor(inputFile)));
+            }
+            return outputPathFor(inputFile);
+        }
+        pending.put(inputFile.getAbsolutePath(), fingerprints);
+        return null;
+    }
+
+    /** Writes the manifests of all output folders touched by incremental conversions. */
+    public void saveManifests() throws IOException {
+        for (BuildManifest manifest : manifests.values()) {
+            manifest.save();
+        }
+    }
+
+    /**
+     * Runs one conversion for all targets and returns the path of the first output; safe to call from
+     * several worker threads at once. With validation on, an episode that does not pass the check throws
+     * {@link EpisodeValidator.InvalidEpisodeException} before anything is parsed.
+     */
+    public String convert(File inputFile, StringsRepository.Strings strings) throws Exception {
+        if (validation != null) {
+            EpisodeValidator.Result checked = validation.check(inputFile);
+            if (!checked.isValid()) throw new EpisodeValidator.InvalidEpisodeException(checked);
+        }
+        // Taken before rendering, so an episode edited mid-run is rendered again next time
+        Map<Target, BuildManifest.Fingerprint> fingerprints = null;
+        if (archive != null) {
+            fingerprints = fingerprints(inputFile, strings);
+        } else if (incremental) {
+            fingerprints = pending.remove(inputFile.getAbsolutePath());
+            if (fingerprints == null) fingerprints = fingerprints(inputFile, strings);
+        }
+
+        ConversionMetrics.FileMetrics fileMetrics = metrics.newFile(inputFile);
+        long started = fileMetrics.start();
+        boolean success = false;
+        try {
+            if (archive != null) {
+                renderToArchive(inputFile.getAbsoluteFile(), strings, fingerprints, fileMetrics);
+            } else {
+                renderTargets(inputFile.getAbsoluteFile(), strings, fileMetrics);
+            }
+            success = true;
+        } finally {
+            metrics.record(fileMetrics, fileMetrics.start() - started, success);
+        }
+        if (archive != null) {
+            return archive.displayPath(entryName(inputFile, primaryTarget()));
+        }
+        if (fingerprints != null) {
+            for (Map.Entry<Target, BuildManifest.Fingerprint> e : fingerprints.entrySet()) {
+                File output = new File(outputPathFor(inputFile, e.getKey()));
+                manifestFor(output).record(output, e.getValue());
+            }
+        }
+        return outputPathFor(inputFile);
+    }
+
+    // The episode is parsed once; the HTML pages share one render pass and DOCX gets a soft-break copy
+    private void renderTargets(File inputFile, StringsRepository.Strings strings, ConversionMetrics.FileMetrics fileMetrics) throws Exception {
+        boolean docx = targets.contains(Target.DOCX);
+        boolean light = targets.contains(Target.HTML_LIGHT);
+        boolean dark = targets.contains(Target.HTML_DARK);
+        Episode episode = parse(inputFile, docx && !light && !dark, fileMetrics);
+        if (searchIndex != null) searchIndex.add(inputFile, episode, new File(outputPathFor(inputFile)));
+        // A mirrored sub-folder may not exist yet; every target shares it
+        Files.createDirectories(new File(outputPathFor(inputFile)).getParentFile().toPath());
+
+        if (light || dark) {
+            ConversionRequest request = ConversionRequest.of(episode)
+                    .writeTo(new File(outputPathFor(inputFile, light ? Target.HTML_LIGHT : Target.HTML_DARK)))
+                    .withStrings(strings)
+                    .withDarkMode(!light)
+                    .withSharedAssets(sharedAssets)
+                    .withMetrics(fileMetrics);
+            if (light && dark) {
+                request = request.alsoWriteDarkTo(new File(outputPathFor(inputFile, Target.HTML_DARK)));
+            }
+            logWarnings(inputFile, converter(htmlConverter).convert(request));
+        }
+        if (docx) {
+            logWarnings(inputFile, converter(docxConverter).convert(ConversionRequest.of(light || dark ? episode.withSoftBreaks() : episode)
+                    .writeTo(new File(outputPathFor(inputFile, Target.DOCX)))
+                    .withStrings(strings)
+                    .withLang(lang)
+                    .withMetrics(fileMetrics)));
+        }
+    }
+
+    // Same parse and render passes, but every output goes into a memory buffer and then into the archive
+    private void renderToArchive(File inputFile, StringsRepository.Strings strings,
+                                 Map<Target, BuildManifest.Fingerprint> fingerprints,
+                                 ConversionMetrics.FileMetrics fileMetrics) throws Exception {
+        boolean docx = targets.contains(Target.DOCX);
+        boolean light = targets.contains(Target.HTML_LIGHT);
+        boolean dark = targets.contains(Target.HTML_DARK);
+        Episode episode = parse(inputFile, docx && !light && !dark, fileMetrics);
+
+        if (light || dark) {
+            OutputArchive.Buffer first = archive.newBuffer();
+            OutputArchive.Buffer second = light && dark ? archive.newBuffer() : null;
+            ConversionRequest request = ConversionRequest.of(episode)
+                    .writeTo(first)
+                    .withStrings(strings)
+                    .withDarkMode(!light)
+                    .withMetrics(fileMetrics);
+            if (second != null) {
+                request = request.alsoWriteDarkTo(second);
+            }
+            long millis = logWarnings(inputFile, converter(htmlConverter).convert(request)).millis;
+            Target firstTarget = light ? Target.HTML_LIGHT : Target.HTML_DARK;
+            addToArchive(inputFile, firstTarget, first, fingerprints, millis, fileMetrics);
+            if (second != null) {
+                addToArchive(inputFile, Target.HTML_DARK, second, fingerprints, millis, fileMetrics);
+            }
+        }
+        if (docx) {
+            OutputArchive.Buffer buffer = archive.newBuffer();
+            long millis = logWarnings(inputFile, converter(docxConverter).convert(ConversionRequest.of(light || dark ? episode.withSoftBreaks() : episode)
+                    .writeTo(buffer)
+                    .withStrings(strings)
+                    .withLang(lang)
+                    .withMetrics(fileMetrics))).millis;
+            addToArchive(inputFile, Target.DOCX, buffer, fingerprints, millis, fileMetrics);
+        }
+    }
+
+    private void addToArchive(File inputFile, Target target, OutputArchive.Buffer content,
+                              Map<Target, BuildManifest.Fingerprint> fingerprints, long renderMillis,
+                              ConversionMetrics.FileMetrics fileMetrics) throws IOException {
+        long t = fileMetrics.start();
+        archive.add(entryName(inputFile, target), target == Target.DOCX ? "docx" : "html", content, fingerprints.get(target), renderMillis);
+        fileMetrics.end(ConversionMetrics.Phase.WRITE, t);
+        fileMetrics.bytesWritten(content.size());
+    }
+
+    private ConversionResult logWarnings(File inputFile, ConversionResult result) {
+        for (String warning : result.warnings) {
+            log("Warning: " + inputFile.getName() + ": " + warning);
+        }
+        return result;
+    }
+
+    /** Name of an output inside the archive: the file name it would have on disk, below its mirrored sub-folder. */
+    private String entryName(File inputFile, Target target) {
+        String folder = relativeFolder(inputFile);
+        String name = new File(outputPathFor(inputFile, target)).getName();
+        return folder.isEmpty() ? name : folder + "/" + name;
+    }
+
+    private static Episode parse(File inputFile, boolean softBreaks, ConversionMetrics.FileMetrics fileMetrics) throws IOException {
+        long t = fileMetrics.start();
+        Episode episode;
+        try {
+            episode = EpisodeReader.read(inputFile, softBreaks);
+        } catch (IOException | RuntimeException e) {
+            throw new IOException("Error loading input JSON: " + e.getMessage(), e);
+        }
+        fileMetrics.end(ConversionMetrics.Phase.PARSE, t);
+        fileMetrics.bytesRead(inputFile.length());
+        fileMetrics.episode(episode);
+        return episode;
+    }
+
+    /** Parses an episode the way the first target expects it (soft breaks for DOCX). */
+    public Episode readEpisode(Reader reader) throws IOException {
+        return EpisodeReader.read(reader, primaryTarget() == Target.DOCX);
+    }
+
+    /** Renders an episode for the first target straight into {@code out}, without writing any file; the stream is left open. */
+    public void render(Episode episode, StringsRepository.Strings strings, OutputStream out) throws Exception {
+        ConversionResult result = primaryConverter().convert(ConversionRequest.of(episode)
+                .writeTo(out)
+                .withStrings(strings)
+                .withDarkMode(primaryTarget() == Target.HTML_DARK)
+                .withLang(lang != null ? lang : "en-GB"));
+        for (String warning : result.warnings) {
+            log("Warning: " + warning);
+        }
+    }
+
+    public String contentType() {
+        return primaryConverter().contentType();
+    }
+
+    private Target primaryTarget() {
+        return targets.iterator().next();
+    }
+
+    private Converter primaryConverter() {
+        return converter(primaryTarget() == Target.DOCX ? docxConverter : htmlConverter);
+    }
+
+    private static Converter converter(Converter converter) {
+        if (converter == null) {
+            throw new IllegalStateException("No converter located for the selected format.");
+        }
+        return converter;
+    }
+
+    private Map<Target, BuildManifest.Fingerprint> fingerprints(File inputFile, StringsRepository.Strings strings) throws IOException {
+        String inputHash = BuildManifest.inputHash(inputFile);
+        String stringsHash = strings != null ? strings.contentHash : null;
+        Map<Target, BuildManifest.Fingerprint> fingerprints = new EnumMap<>(Target.class);
+        for (Target target : targets) {
+            String options = target == Target.DOCX
+                    ? "docx lang=" + (lang != null ? lang : "") + (DocxStreamWriter.selected() ? " writer=stream" : "")
+                    : "html dark=" + (target == Target.HTML_DARK) + (sharedAssets ? " assets=shared" : "");
+            fingerprints.put(target, BuildManifest.fingerprint(inputFile, inputHash, stringsHash, options));
+        }
+        return fingerprints;
+    }
+
+    private BuildManifest manifestFor(File output) {
+        return manifests.computeIfAbsent(output.getAbsoluteFile().getParentFile().toPath(), BuildManifest::load);
+    }
+
+    private void log(String message) {
+        if (log != null) log.accept(message);
+    }
+}
@@ -0,0 +1,340 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Local HTTP service that keeps the converter warm for other tools, bound to the loopback interface only.
+ * <ul>
+ *   <li>{@code POST /convert?format=docx|html&lang=..&dark=true&strings=/path} with the episode JSON as the
+ *       body returns the DOCX or HTML bytes.</li>
+ *   <li>{@code GET /preview?path=episode.json&dark=true&strings=/path} renders the HTML of an episode
+ *       file below the episode folder in memory, without writing anything to disk.</li>
+ *   <li>{@code GET /health} answers {@code ok}.</li>
+ * </ul>
+ * Files are only read from the episode folder and the folder of the default strings file. Requests whose
+ * Host or Origin is not this loopback port are refused with 403, so a web page that rebinds its own name
+ * to 127.0.0.1 cannot reach the service.
+ * At most {@code workers} conversions run at once and up to {@code queueSize} more wait for a slot;
+ * anything beyond that is answered right away with 503 and a Retry-After header, before its body or
+ * episode file is read. Connections that find every handler thread busy are answered with 503 as well.
+ * Every response carries its latency in an {@code X-Conversion-Millis} header and is logged.
+ */
+public class ConversionServer {
+
+    public static final int DEFAULT_PORT = 8121;
+    private static final int MAX_BODY_BYTES = Integer.getInteger("w121.serverMaxBodyMb", 16) * 1024 * 1024;
+
+    // Set while a connection that found no free handler thread runs on the dispatcher, only to be answered 503
+    private static final ThreadLocal<Boolean> OVERFLOW = ThreadLocal.withInitial(() -> false);
+
+    private final int port;
+    private final int workers;
+    private final int queueSize;
+    private final boolean defaultHtml;
+    private final boolean defaultDark;
+    private final String defaultLang;
+    private final String defaultStringsPath;
+    private final Consumer<String> log;
+    private Path episodeRoot;
+
+    // Requests admitted (running or waiting); beyond this the server is busy
+    private final Semaphore admitted;
+    // Conversions actually running
+    private final Semaphore running;
+    private final AtomicInteger requestCounter = new AtomicInteger();
+
+    private HttpServer server;
+    private ExecutorService handlers;
+
+    /**
+     * @param defaultStringsPath strings file used when a request does not name one; may be {@code null}
+     */
+    public ConversionServer(int port, int workers, int queueSize, boolean defaultHtml, boolean defaultDark,
+                            String defaultLang, String defaultStringsPath, Consumer<String> log) {
+        this.port = port;
+        this.workers = Math.max(1, workers);
+        this.queueSize = Math.max(0, queueSize);
+        this.defaultHtml = defaultHtml;
+        this.defaultDark = defaultDark;
+        this.defaultLang = defaultLang;
+        this.defaultStringsPath = (defaultStringsPath == null || defaultStringsPath.isEmpty()) ? null : defaultStringsPath;
+        this.log = log;
+        this.admitted = new Semaphore(this.workers + this.queueSize);
+        this.running = new Semaphore(this.workers, true);
+    }
+
+    /** Folder that {@code /preview} and {@code strings=} may read below; without one, {@code /preview} is off. */
+    public void setEpisodeRoot(File folder) throws IOException {
+        this.episodeRoot = folder.toPath().toRealPath();
+    }
+
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        // A few threads more than can be admitted, so a busy server can still answer 503 immediately; once threads
+        // and queue are full as well, the dispatcher answers 503 itself without reading the request body
+        int threads = workers + queueSize + 2;
+        AtomicInteger threadCounter = new AtomicInteger();
+        handlers = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(threads), r -> {
+            Thread t = new Thread(r, "http-worker-" + threadCounter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }, (task, pool) -> {
+            if (pool.isShutdown()) return;
+            OVERFLOW.set(true);
+            try {
+                task.run();
+            } finally {
+                OVERFLOW.set(false);
+            }
+        });
+        server.setExecutor(handlers);
+        server.createContext("/convert", localOnly(this::handleConvert));
+        server.createContext("/preview", localOnly(this::handlePreview));
+        server.createContext("/health", localOnly(exchange -> respond(exchange, 200, "text/plain; charset=utf-8", bytes("ok\n"), System.nanoTime())));
+        server.start();
+        log("Conversion service listening on http://" + server.getAddress().getHostString() + ":" + getPort()
+                + " (" + workers + " workers, queue " + queueSize + ")");
+    }
+
+    /** The bound port; differs from the requested one when that was 0. */
+    public int getPort() {
+        return server != null ? server.getAddress().getPort() : port;
+    }
+
+    public void stop() {
+        if (server != null) server.stop(1);
+        if (handlers != null) handlers.shutdownNow();
+    }
+
+    private void handleConvert(HttpExchange exchange) throws IOException {
+        long t0 = System.nanoTime();
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Allow", "POST");
+            respondError(exchange, 405, "Use POST with the episode JSON as the request body", t0);
+            return;
+        }
+        if (!admit(exchange, t0)) return;
+        try {
+            byte[] body = readBody(exchange.getRequestBody());
+            if (body == null) {
+                respondError(exchange, 413, "Request body larger than " + MAX_BODY_BYTES / (1024 * 1024) + " MB", t0);
+                return;
+            }
+            convertAndRespond(exchange, query(exchange), body, t0);
+        } finally {
+            admitted.release();
+        }
+    }
+
+    private void handlePreview(HttpExchange exchange) throws IOException {
+        long t0 = System.nanoTime();
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Allow", "GET");
+            respondError(exchange, 405, "Use GET /preview?path=<episode.json>", t0);
+            return;
+        }
+        if (!admit(exchange, t0)) return;
+        try {
+            if (episodeRoot == null) {
+                respondError(exchange, 404, "Previews need an episode folder: start the service with --serve <folder>", t0);
+                return;
+            }
+            Map<String, String> query = query(exchange);
+            String path = query.get("path");
+            Path file = path != null ? resolve(path, List.of(episodeRoot)) : null;
+            if (file == null) {
+                respondError(exchange, 404, "Episode file not found below " + episodeRoot + ": " + path, t0);
+                return;
+            }
+            query.put("format", "html");
+            convertAndRespond(exchange, query, Files.readAllBytes(file), t0);
+        } finally {
+            admitted.release();
+        }
+    }
+
+    // Takes an admission slot, or answers 503 and returns false when all of them are taken
+    private boolean admit(HttpExchange exchange, long t0) throws IOException {
+        if (!OVERFLOW.get() && admitted.tryAcquire()) return true;
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        respondError(exchange, 503, "Server busy, try again later", t0);
+        return false;
+    }
+
+    // Runs with an admission slot held by the caller
+    private void convertAndRespond(HttpExchange exchange, Map<String, String> query, byte[] episodeJson, long t0) throws IOException {
+        try {
+            String format = query.getOrDefault("format", defaultHtml ? "html" : "docx").toLowerCase();
+            if (!format.equals("docx") && !format.equals("html")) {
+                respondError(exchange, 400, "Unknown format '" + format + "' (expected docx or html)", t0);
+                return;
+            }
+            boolean dark = query.containsKey("dark") ? Boolean.parseBoolean(query.get("dark")) : defaultDark;
+            String lang = query.getOrDefault("lang", defaultLang);
+            String stringsPath = defaultStringsPath;
+            if (query.containsKey("strings")) {
+                Path file = resolve(query.get("strings"), stringsRoots());
+                if (file == null) {
+                    respondError(exchange, 400, "Strings file not found in the episode or strings folder: " + query.get("strings"), t0);
+                    return;
+                }
+                stringsPath = file.toString();
+            }
+
+            ConversionRunner runner = new ConversionRunner(format.equals("html"), dark, lang, null, null);
+            runner.locateConverter();
+            StringsRepository.Strings strings = null;
+            if (stringsPath != null && !stringsPath.isEmpty()) {
+                if (!new File(stringsPath).isFile()) {
+                    respondError(exchange, 400, "Strings file not found: " + stringsPath, t0);
+                    return;
+                }
+                strings = StringsRepository.shared().load(stringsPath);
+            }
+            Episode episode;
+            try (Reader reader = new InputStreamReader(new ByteArrayInputStream(episodeJson), StandardCharsets.UTF_8)) {
+                episode = runner.readEpisode(reader);
+            } catch (IOException | RuntimeException e) {
+                respondError(exchange, 400, "Invalid episode JSON: " + BatchExecutor.describe(e), t0);
+                return;
+            }
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+            running.acquire();
+            try {
+                runner.render(episode, strings, out);
+            } finally {
+                running.release();
+            }
+            respond(exchange, 200, runner.contentType(), out.toByteArray(), t0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respondError(exchange, 503, "Server shutting down", t0);
+        } catch (Exception e) {
+            respondError(exchange, 500, "Conversion failed: " + BatchExecutor.describe(e), t0);
+        }
+    }
+
+    // Refuses requests addressed to another host name, as after DNS rebinding, or sent from a foreign page
+    private HttpHandler localOnly(HttpHandler handler) {
+        return exchange -> {
+            String host = exchange.getRequestHeaders().getFirst("Host");
+            String origin = exchange.getRequestHeaders().getFirst("Origin");
+            if (host == null || !isLocal(host) || (origin != null && !isLocal(origin.replaceFirst("^http://", "")))) {
+                respondError(exchange, 403, "Only http://127.0.0.1:" + getPort() + " and http://localhost:" + getPort() + " are served", System.nanoTime());
+                return;
+            }
+            handler.handle(exchange);
+        };
+    }
+
+    private boolean isLocal(String authority) {
+        String a = authority.toLowerCase(Locale.ROOT);
+        String port = ":" + getPort();
+        return a.equals("127.0.0.1" + port) || a.equals("localhost" + port) || a.equals("[::1]" + port);
+    }
+
+    private List<Path> stringsRoots() {
+        List<Path> roots = new ArrayList<>();
+        if (episodeRoot != null) roots.add(episodeRoot);
+        if (defaultStringsPath != null) {
+            try {
+                roots.add(new File(defaultStringsPath).getAbsoluteFile().getParentFile().toPath().toRealPath());
+            } catch (IOException e) {
+                // Reported when the default strings file is used
+            }
+        }
+        return roots;
+    }
+
+    // The real path of an existing file at path (relative to the first root) below one of the roots, else null
+    private static Path resolve(String path, List<Path> roots) {
+        if (roots.isEmpty()) return null;
+        try {
+            Path file = roots.get(0).resolve(path).toRealPath();
+            if (!Files.isRegularFile(file)) return null;
+            for (Path root : roots) {
+                if (file.startsWith(root)) return file;
+            }
+        } catch (IOException | RuntimeException e) {
+            // Missing or malformed
+        }
+        return null;
+    }
+
+    private void respondError(HttpExchange exchange, int status, String message, long t0) throws IOException {
+        respond(exchange, status, "text/plain; charset=utf-8", bytes(message + "\n"), t0);
+    }
+
+    private void respond(HttpExchange exchange, int status, String contentType, byte[] body, long t0) throws IOException {
+        long millis = (System.nanoTime() - t0) / 1_000_000L;
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.getResponseHeaders().set("X-Conversion-Millis", Long.toString(millis));
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+        log("#" + requestCounter.incrementAndGet() + " " + exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath()
+                + " -> " + status + " (" + body.length + " bytes, " + millis + " ms)");
+    }
+
+    // Reads the whole body, or returns null when it exceeds the size limit
+    private static byte[] readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] chunk = new byte[16 * 1024];
+        int n;
+        while ((n = in.read(chunk)) > 0) {
+            if (buffer.size() + n > MAX_BODY_BYTES) return null;
+            buffer.write(chunk, 0, n);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> params = new LinkedHashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null || raw.isEmpty()) return params;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq >= 0 ? pair.substring(0, eq) : pair, StandardCharsets.UTF_8);
+            String value = eq >= 0 ? URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8) : "true";
+            params.put(key, value);
+        }
+        return params;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void log(String message) {
+        if (log != null) log.accept(message);
+    }
+}
@@ -0,0 +1,23 @@
+/**
+ * One output format. Implementations are found through {@link java.util.ServiceLoader} (see
+ * {@link Converters}), so a new format only needs a class and a line in
+ * {@code META-INF/services/Converter}.
+ * <p>
+ * Instances are shared by all worker threads and must not keep per-conversion state.
+ */
+public interface Converter {
+
+    /** Name used to select the converter, e.g. {@code html} or {@code docx}. */
+    String format();
+
+    /** Extension of the files it writes, including the dot. */
+    String fileExtension();
+
+    String contentType();
+
+    /**
+     * Converts one episode as described by the request; failures are thrown and problems that leave a usable
+     * document are returned as {@link ConversionResult#warnings}, never logged or printed.
+     */
+    ConversionResult convert(ConversionRequest request) throws Exception;
+}
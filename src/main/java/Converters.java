@@ -0,0 +1,38 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/** The converters on the class path, loaded once through {@link ServiceLoader}. */
+public final class Converters {
+
+    private static volatile List<Converter> all;
+
+    private Converters() {
+    }
+
+    public static List<Converter> all() {
+        List<Converter> converters = all;
+        if (converters == null) {
+            synchronized (Converters.class) {
+                if (all == null) {
+                    List<Converter> found = new ArrayList<>();
+                    for (Converter converter : ServiceLoader.load(Converter.class, Converters.class.getClassLoader())) {
+                        found.add(converter);
+                    }
+                    all = Collections.unmodifiableList(found);
+                }
+                converters = all;
+            }
+        }
+        return converters;
+    }
+
+    /** The converter for a format name such as {@code docx}; throws when none is installed. */
+    public static Converter forFormat(String format) {
+        for (Converter converter : all()) {
+            if (converter.format().equalsIgnoreCase(format)) return converter;
+        }
+        throw new IllegalStateException("No converter found for format '" + format + "'");
+    }
+}
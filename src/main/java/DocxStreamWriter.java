@@ -0,0 +1,568 @@
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes a DOCX package straight into a ZIP stream with StAX, without the POI/XMLBeans object model.
+ * <p>
+ * Only the constructs the episode layout uses are supported: single-cell shaded and bordered tables,
+ * styled paragraphs with borders, shading, spacing and alignment, runs with fonts, sizes, colours,
+ * bold/italic/superscript and breaks, and one inline PNG. Each paragraph is built as a small object,
+ * so a caller can still adjust its runs afterwards the way the POI code does, and is written out when
+ * handed to {@link #write}; memory stays flat however long the episode is.
+ * <p>
+ * {@code word/document.xml} is streamed first; styles, settings, relationships and the picture follow
+ * in {@link #finish()}. The properties are emitted in the order POI produces them, so the documents
+ * of both writers compare equal after normalisation (see {@code DocxEquivalence}).
+ */
+public final class DocxStreamWriter {
+
+    static final String W = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+    static final String R = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    static final String WP = "http://schemas.openxmlformats.org/drawingml/2006/wordprocessingDrawing";
+    static final String A = "http://schemas.openxmlformats.org/drawingml/2006/main";
+    static final String PIC = "http://schemas.openxmlformats.org/drawingml/2006/picture";
+    private static final String PKG_RELS = "http://schemas.openxmlformats.org/package/2006/relationships";
+    private static final String IMAGE_REL_ID = "rId3";
+
+    /** System property choosing the DOCX writer: {@code poi} (default) or {@code stream}. */
+    public static final String WRITER_PROPERTY = "w121.docx.writer";
+
+    private static final XMLOutputFactory XML = XMLOutputFactory.newFactory();
+
+    /** Whether DOCX output goes through this writer rather than POI, see {@link #WRITER_PROPERTY}. */
+    public static boolean selected() {
+        return "stream".equalsIgnoreCase(System.getProperty(WRITER_PROPERTY));
+    }
+
+    /**
+     * Run or style character properties, kept in the order they were first set: POI 5 appends
+     * {@code w:rPr} children in call order, and so does this.
+     */
+    public static final class Props {
+        private final Map<String, String[]> values = new LinkedHashMap<>();
+
+        /** Sets an element such as {@code b} or {@code sz} from attribute name/value pairs, replacing its attributes in place. */
+        public Props set(String element, String... attributes) {
+            values.put(element, attributes);
+            return this;
+        }
+
+        public boolean isEmpty() {
+            return values.isEmpty();
+        }
+
+        void write(XMLStreamWriter xml) throws XMLStreamException {
+            if (values.isEmpty()) return;
+            xml.writeStartElement("w", "rPr", W);
+            for (Map.Entry<String, String[]> e : values.entrySet()) {
+                xml.writeEmptyElement("w", e.getKey(), W);
+                String[] attributes = e.getValue();
+                for (int i = 0; i + 1 < attributes.length; i += 2) {
+                    xml.writeAttribute("w", W, attributes[i], attributes[i + 1]);
+                }
+            }
+            xml.writeEndElement();
+        }
+    }
+
+    /** A run: properties, then text pieces and breaks in the order they were added. */
+    public static final class Run {
+        final Props props = new Props();
+        // A String is text; a break is stored as its type ("" for a plain line break)
+        private final List<Object> content = new ArrayList<>(2);
+
+        public Run setText(String text) {
+            content.add(new StringBuilder(text != null ? text : ""));
+            return this;
+        }
+
+        public Run addBreak() {
+            content.add("");
+            return this;
+        }
+
+        public Run addTextWrappingBreak() {
+            content.add("textWrapping");
+            return this;
+        }
+
+        public Run setBold(boolean bold) {
+            props.set("b", "val", bold ? "on" : "off");
+            return this;
+        }
+
+        public Run setItalic(boolean italic) {
+            props.set("i", "val", italic ? "on" : "off");
+            return this;
+        }
+
+        /** Like POI's {@code setFontFamily}: every font slot of the run. */
+        public Run setFontFamily(String font) {
+            props.set("rFonts", "ascii", font, "hAnsi", font, "cs", font, "eastAsia", font);
+            return this;
+        }
+
+        /** Size in points, stored in half-points. */
+        public Run setFontSize(int points) {
+            props.set("sz", "val", Integer.toString(points * 2));
+            return this;
+        }
+
+        public Run setColor(String rgbHex) {
+            props.set("color", "val", rgbHex);
+            return this;
+        }
+
+        public Run setSuperscript() {
+            props.set("vertAlign", "val", "superscript");
+            return this;
+        }
+
+        void write(XMLStreamWriter xml) throws XMLStreamException {
+            xml.writeStartElement("w", "r", W);
+            props.write(xml);
+            for (Object item : content) {
+                if (item instanceof StringBuilder) {
+                    String text = item.toString();
+                    xml.writeStartElement("w", "t", W);
+                    if (!text.isEmpty() && (Character.isWhitespace(text.charAt(0)) || Character.isWhitespace(text.charAt(text.length() - 1)))) {
+                        xml.writeAttribute("xml", "http://www.w3.org/XML/1998/namespace", "space", "preserve");
+                    }
+                    xml.writeCharacters(text);
+                    xml.writeEndElement();
+                } else {
+                    xml.writeEmptyElement("w", "br", W);
+                    if (!((String) item).isEmpty()) xml.writeAttribute("w", W, "type", (String) item);
+                }
+            }
+            xml.writeEndElement();
+        }
+    }
+
+    /** A paragraph and its runs; nothing is written until it is passed to {@link #write}. */
+    public static final class Paragraph {
+        String style;
+        String alignment;
+        Integer spacingBefore;
+        Integer spacingAfter;
+        String shadingFill;
+        String[] border;
+        final List<Run> runs = new ArrayList<>();
+
+        public Paragraph setStyle(String style) {
+            this.style = style;
+            return this;
+        }
+
+        public String getStyle() {
+            return style;
+        }
+
+        /** {@code left}, {@code center}, ... as in {@code w:jc}. */
+        public Paragraph setAlignment(String alignment) {
+            this.alignment = alignment;
+            return this;
+        }
+
+        /** Spacing in twips; either may be {@code null}. */
+        public Paragraph setSpacing(Integer beforeTwips, Integer afterTwips) {
+            if (beforeTwips != null) spacingBefore = beforeTwips;
+            if (afterTwips != null) spacingAfter = afterTwips;
+            return this;
+        }
+
+        public Paragraph setShading(String fillHex) {
+            shadingFill = fillHex;
+            return this;
+        }
+
+        /** The same single border on all four sides; size in eighths of a point. */
+        public Paragraph setBorder(String colorHex, int size, int space) {
+            border = new String[]{colorHex, Integer.toString(size), Integer.toString(space)};
+            return this;
+        }
+
+        public Run createRun() {
+            Run run = new Run();
+            runs.add(run);
+            return run;
+        }
+
+        public List<Run> getRuns() {
+            return runs;
+        }
+
+        void write(XMLStreamWriter xml) throws XMLStreamException {
+            boolean hasPPr = style != null || border != null || shadingFill != null
+                    || spacingBefore != null || spacingAfter != null || alignment != null;
+            if (!hasPPr && runs.isEmpty()) {
+                xml.writeEmptyElement("w", "p", W);
+                return;
+            }
+            xml.writeStartElement("w", "p", W);
+            if (hasPPr) {
+                // Schema order of w:pPr
+                xml.writeStartElement("w", "pPr", W);
+                if (style != null) empty(xml, "pStyle", "val", style);
+                if (border != null) {
+                    xml.writeStartElement("w", "pBdr", W);
+                    for (String side : new String[]{"top", "left", "bottom", "right"}) {
+                        empty(xml, side, "val", "single", "sz", border[1], "color", border[0], "space", border[2]);
+                    }
+                    xml.writeEndElement();
+                }
+                if (shadingFill != null) empty(xml, "shd", "val", "clear", "color", "auto", "fill", shadingFill);
+                if (spacingBefore != null || spacingAfter != null) {
+                    xml.writeEmptyElement("w", "spacing", W);
+                    if (spacingBefore != null) xml.writeAttribute("w", W, "before", spacingBefore.toString());
+                    if (spacingAfter != null) xml.writeAttribute("w", W, "after", spacingAfter.toString());
+                }
+                if (alignment != null) empty(xml, "jc", "val", alignment);
+                xml.writeEndElement();
+            }
+            for (Run run : runs) {
+                run.write(xml);
+            }
+            xml.writeEndElement();
+        }
+    }
+
+    /** A paragraph or character style for {@code word/styles.xml}. */
+    public static final class Style {
+        final String id;
+        final String type;
+        String alignment;
+        final Props props = new Props();
+
+        Style(String id, String type) {
+            this.id = id;
+            this.type = type;
+        }
+
+        public Style setAlignment(String alignment) {
+            this.alignment = alignment;
+            return this;
+        }
+
+        /** Character properties, in the order the POI style factory adds them. */
+        public Props getProps() {
+            return props;
+        }
+
+        void write(XMLStreamWriter xml) throws XMLStreamException {
+            xml.writeStartElement("w", "style", W);
+            xml.writeAttribute("w", W, "styleId", id);
+            xml.writeAttribute("w", W, "type", type);
+            empty(xml, "name", "val", id);
+            if (alignment != null) {
+                xml.writeStartElement("w", "pPr", W);
+                empty(xml, "jc", "val", alignment);
+                xml.writeEndElement();
+            }
+            props.write(xml);
+            xml.writeEndElement();
+        }
+    }
+
+    private final ZipOutputStream zip;
+    private final XMLStreamWriter xml;
+    private final List<Style> styles = new ArrayList<>();
+    private final int[] pageMarginsTwips = new int[4];
+    private boolean trackRevisions;
+    private byte[] picture;
+    // Whether the open table cell has received a paragraph yet; null outside a cell
+    private Boolean cellHasParagraph;
+    private boolean finished;
+
+    /** Starts the package and {@code word/document.xml}; {@code out} is not closed by {@link #finish()}. */
+    public DocxStreamWriter(OutputStream out) throws IOException {
+        zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        zip.putNextEntry(new ZipEntry("word/document.xml"));
+        try {
+            xml = XML.createXMLStreamWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8));
+            xml.writeStartDocument("UTF-8", "1.0");
+            xml.setPrefix("w", W);
+            xml.setPrefix("r", R);
+            xml.writeStartElement("w", "document", W);
+            xml.writeNamespace("w", W);
+            xml.writeNamespace("r", R);
+            xml.writeNamespace("wp", WP);
+            xml.writeNamespace("a", A);
+            xml.writeNamespace("pic", PIC);
+            xml.writeStartElement("w", "body", W);
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    public Style paragraphStyle(String id) {
+        Style style = new Style(id, "paragraph");
+        styles.add(style);
+        return style;
+    }
+
+    public Style characterStyle(String id) {
+        Style style = new Style(id, "character");
+        styles.add(style);
+        return style;
+    }
+
+    public void setPageMargins(int topTwips, int bottomTwips, int leftTwips, int rightTwips) {
+        pageMarginsTwips[0] = topTwips;
+        pageMarginsTwips[1] = bottomTwips;
+        pageMarginsTwips[2] = leftTwips;
+        pageMarginsTwips[3] = rightTwips;
+    }
+
+    public void setTrackRevisions(boolean trackRevisions) {
+        this.trackRevisions = trackRevisions;
+    }
+
+    /** Writes a finished paragraph into the body or the open block. */
+    public void write(Paragraph paragraph) throws IOException {
+        try {
+            paragraph.write(xml);
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+        if (cellHasParagraph != null) cellHasParagraph = true;
+    }
+
+    /**
+     * Opens a centred one-cell table, like POI's {@code createTable(1, 1)} with the block shading,
+     * borders and margins applied; paragraphs written until {@link #endBlock()} go into its cell.
+     */
+    public void startBlock(String fillHex, String borderHex, int marginTopBottomTwips, int marginLeftRightTwips) throws IOException {
+        if (cellHasParagraph != null) throw new IllegalStateException("Blocks cannot be nested");
+        try {
+            xml.writeStartElement("w", "tbl", W);
+            xml.writeStartElement("w", "tblPr", W);
+            empty(xml, "tblW", "w", "0", "type", "auto");
+            // CT_TblPr is a sequence: jc goes before tblBorders
+            empty(xml, "jc", "val", "center");
+            xml.writeStartElement("w", "tblBorders", W);
+            for (String side : new String[]{"top", "left", "bottom", "right", "insideH", "insideV"}) {
+                empty(xml, side, "val", "single");
+            }
+            xml.writeEndElement();
+            xml.writeEndElement();
+            xml.writeStartElement("w", "tr", W);
+            xml.writeStartElement("w", "tc", W);
+            xml.writeStartElement("w", "tcPr", W);
+            xml.writeStartElement("w", "tcBorders", W);
+            for (String side : new String[]{"top", "left", "bottom", "right"}) {
+                empty(xml, side, "val", "single", "sz", "12", "color", borderHex);
+            }
+            xml.writeEndElement();
+            empty(xml, "shd", "fill", fillHex);
+            xml.writeStartElement("w", "tcMar", W);
+            empty(xml, "top", "w", Integer.toString(marginTopBottomTwips), "type", "dxa");
+            empty(xml, "left", "w", Integer.toString(marginLeftRightTwips), "type", "dxa");
+            empty(xml, "bottom", "w", Integer.toString(marginTopBottomTwips), "type", "dxa");
+            empty(xml, "right", "w", Integer.toString(marginLeftRightTwips), "type", "dxa");
+            xml.writeEndElement();
+            xml.writeEndElement();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+        cellHasParagraph = false;
+    }
+
+    /** Closes the block; a cell that received nothing keeps the empty paragraph a cell needs. */
+    public void endBlock() throws IOException {
+        if (cellHasParagraph == null) throw new IllegalStateException("No open block");
+        try {
+            if (!cellHasParagraph) xml.writeEmptyElement("w", "p", W);
+            xml.writeEndElement();
+            xml.writeEndElement();
+            xml.writeEndElement();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+        cellHasParagraph = null;
+    }
+
+    /** A centred paragraph holding the document's one inline PNG, sized in EMU. */
+    public void writePicture(byte[] png, long widthEmu, long heightEmu, String name) throws IOException {
+        if (picture != null) throw new IllegalStateException("Only one picture is supported");
+        picture = png;
+        try {
+            xml.writeStartElement("w", "p", W);
+            xml.writeStartElement("w", "pPr", W);
+            empty(xml, "jc", "val", "center");
+            xml.writeEndElement();
+            xml.writeStartElement("w", "r", W);
+            xml.writeStartElement("w", "drawing", W);
+            xml.writeStartElement("wp", "inline", WP);
+            xml.writeAttribute("distT", "0");
+            xml.writeAttribute("distR", "0");
+            xml.writeAttribute("distB", "0");
+            xml.writeAttribute("distL", "0");
+            xml.writeEmptyElement("wp", "extent", WP);
+            xml.writeAttribute("cx", Long.toString(widthEmu));
+            xml.writeAttribute("cy", Long.toString(heightEmu));
+            xml.writeEmptyElement("wp", "docPr", WP);
+            xml.writeAttribute("id", "0");
+            xml.writeAttribute("name", "Drawing 0");
+            xml.writeAttribute("descr", name);
+            xml.writeStartElement("a", "graphic", A);
+            xml.writeStartElement("a", "graphicData", A);
+            xml.writeAttribute("uri", PIC);
+            xml.writeStartElement("pic", "pic", PIC);
+            xml.writeStartElement("pic", "nvPicPr", PIC);
+            xml.writeEmptyElement("pic", "cNvPr", PIC);
+            xml.writeAttribute("id", "0");
+            xml.writeAttribute("name", "Picture 0");
+            xml.writeAttribute("descr", name);
+            xml.writeStartElement("pic", "cNvPicPr", PIC);
+            xml.writeEmptyElement("a", "picLocks", A);
+            xml.writeAttribute("noChangeAspect", "true");
+            xml.writeEndElement();
+            xml.writeEndElement();
+            xml.writeStartElement("pic", "blipFill", PIC);
+            xml.writeEmptyElement("a", "blip", A);
+            xml.writeAttribute("r", R, "embed", IMAGE_REL_ID);
+            xml.writeStartElement("a", "stretch", A);
+            xml.writeEmptyElement("a", "fillRect", A);
+            xml.writeEndElement();
+            xml.writeEndElement();
+            xml.writeStartElement("pic", "spPr", PIC);
+            xml.writeStartElement("a", "xfrm", A);
+            xml.writeEmptyElement("a", "off", A);
+            xml.writeAttribute("x", "0");
+            xml.writeAttribute("y", "0");
+            xml.writeEmptyElement("a", "ext", A);
+            xml.writeAttribute("cx", Long.toString(widthEmu));
+            xml.writeAttribute("cy", Long.toString(heightEmu));
+            xml.writeEndElement();
+            xml.writeStartElement("a", "prstGeom", A);
+            xml.writeAttribute("prst", "rect");
+            xml.writeEmptyElement("a", "avLst", A);
+            xml.writeEndElement();
+            xml.writeEndElement();
+            xml.writeEndElement();
+            xml.writeEndElement();
+            xml.writeEndElement();
+            xml.writeEndElement();
+            xml.writeEndElement();
+            xml.writeEndElement();
+            xml.writeEndElement();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /** Ends the body and writes the remaining parts; the underlying stream is left open. */
+    public void finish() throws IOException {
+        if (finished) return;
+        if (cellHasParagraph != null) throw new IllegalStateException("Block left open");
+        finished = true;
+        try {
+            xml.writeStartElement("w", "sectPr", W);
+            empty(xml, "pgMar", "top", Integer.toString(pageMarginsTwips[0]), "bottom", Integer.toString(pageMarginsTwips[1]),
+                    "left", Integer.toString(pageMarginsTwips[2]), "right", Integer.toString(pageMarginsTwips[3]));
+            xml.writeEndElement();
+            xml.writeEndElement();
+            xml.writeEndElement();
+            xml.writeEndDocument();
+            xml.flush();
+            zip.closeEntry();
+
+            part("word/styles.xml", x -> {
+                x.writeStartElement("w", "styles", W);
+                x.writeNamespace("w", W);
+                for (Style style : styles) style.write(x);
+                x.writeEndElement();
+            });
+            part("word/settings.xml", x -> {
+                x.writeStartElement("w", "settings", W);
+                x.writeNamespace("w", W);
+                if (trackRevisions) x.writeEmptyElement("w", "trackRevisions", W);
+                x.writeEndElement();
+            });
+            if (picture != null) {
+                zip.putNextEntry(new ZipEntry("word/media/image1.png"));
+                zip.write(picture);
+                zip.closeEntry();
+            }
+            part("word/_rels/document.xml.rels", x -> {
+                x.writeStartElement("Relationships");
+                x.writeDefaultNamespace(PKG_RELS);
+                relationship(x, "rId1", R + "/settings", "settings.xml");
+                relationship(x, "rId2", R + "/styles", "styles.xml");
+                if (picture != null) relationship(x, IMAGE_REL_ID, R + "/image", "media/image1.png");
+                x.writeEndElement();
+            });
+            part("_rels/.rels", x -> {
+                x.writeStartElement("Relationships");
+                x.writeDefaultNamespace(PKG_RELS);
+                relationship(x, "rId1", R + "/officeDocument", "word/document.xml");
+                x.writeEndElement();
+            });
+            part("[Content_Types].xml", x -> {
+                String types = "http://schemas.openxmlformats.org/package/2006/content-types";
+                String main = "application/vnd.openxmlformats-officedocument.wordprocessingml.";
+                x.writeStartElement("Types");
+                x.writeDefaultNamespace(types);
+                contentType(x, "Default", "Extension", "rels", "application/vnd.openxmlformats-package.relationships+xml");
+                contentType(x, "Default", "Extension", "xml", "application/xml");
+                contentType(x, "Default", "Extension", "png", "image/png");
+                contentType(x, "Override", "PartName", "/word/document.xml", main + "document.main+xml");
+                contentType(x, "Override", "PartName", "/word/styles.xml", main + "styles+xml");
+                contentType(x, "Override", "PartName", "/word/settings.xml", main + "settings+xml");
+                x.writeEndElement();
+            });
+            zip.finish();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private interface PartContent {
+        void write(XMLStreamWriter xml) throws XMLStreamException;
+    }
+
+    private void part(String name, PartContent content) throws IOException, XMLStreamException {
+        zip.putNextEntry(new ZipEntry(name));
+        Writer out = new OutputStreamWriter(zip, StandardCharsets.UTF_8);
+        XMLStreamWriter x = XML.createXMLStreamWriter(out);
+        x.writeStartDocument("UTF-8", "1.0");
+        content.write(x);
+        x.writeEndDocument();
+        x.flush();
+        out.flush();
+        zip.closeEntry();
+    }
+
+    private static void relationship(XMLStreamWriter x, String id, String type, String target) throws XMLStreamException {
+        x.writeEmptyElement("Relationship");
+        x.writeAttribute("Id", id);
+        x.writeAttribute("Type", type);
+        x.writeAttribute("Target", target);
+    }
+
+    private static void contentType(XMLStreamWriter x, String element, String key, String value, String type) throws XMLStreamException {
+        x.writeEmptyElement(element);
+        x.writeAttribute(key, value);
+        x.writeAttribute("ContentType", type);
+    }
+
+    private static void empty(XMLStreamWriter xml, String element, String... attributes) throws XMLStreamException {
+        xml.writeEmptyElement("w", element, W);
+        for (int i = 0; i + 1 < attributes.length; i += 2) {
+            xml.writeAttribute("w", W, attributes[i], attributes[i + 1]);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Typed form of an episode JSON file, filled by {@link EpisodeReader}.
+ * Absent text fields are {@code null} and absent lists are empty. A passage is {@code null} when
+ * it is absent or an empty object, which the renderers treat as "no passage block".
+ */
+public final class Episode {
+
+    /** The episode number as written in the file: an Integer, Long, BigInteger, BigDecimal or String. */
+    public Object number;
+    public Bundle bundle = new Bundle();
+
+    public static final class Bundle {
+        public String title;
+        public String intro;
+        public String imageUrl;
+        public List<Spread> spreads = new ArrayList<>();
+        public String summaryIntro;
+        public List<Conclusion> conclusions = new ArrayList<>();
+        public String reflection;
+        public Passage passage;
+        public String recap;
+        public String recapToThinkAbout;
+        public String nextUp;
+    }
+
+    public static final class Spread {
+        public String type;
+        public String subtitle;
+        public String callout;
+        public Passage scripture;
+        public List<Note> notes = new ArrayList<>();
+
+        Spread withSoftBreaks() {
+            Spread copy = new Spread();
+            copy.type = type;
+            copy.subtitle = subtitle;
+            copy.callout = SoftBreaks.normalize(callout);
+            copy.scripture = scripture != null ? scripture.withSoftBreaks() : null;
+            for (Note note : notes) {
+                copy.notes.add(note != null ? new Note(note.type, SoftBreaks.normalize(note.content)) : null);
+            }
+            return copy;
+        }
+    }
+
+    /** A scripture reference with its text; used for a spread's scripture and the closing passage. */
+    public static final class Passage {
+        public String reference;
+        public String verse;
+
+        Passage withSoftBreaks() {
+            Passage copy = new Passage();
+            copy.reference = reference;
+            copy.verse = SoftBreaks.normalize(verse);
+            return copy;
+        }
+    }
+
+    public static final class Note {
+        public String type;
+        public String content;
+
+        public Note() {
+        }
+
+        public Note(String type, String content) {
+            this.type = type;
+            this.content = content;
+        }
+    }
+
+    public static final class Conclusion {
+        public String statement;
+        public String excerpt;
+
+        Conclusion withSoftBreaks() {
+            Conclusion copy = new Conclusion();
+            copy.statement = SoftBreaks.normalize(statement);
+            copy.excerpt = SoftBreaks.normalize(excerpt);
+            return copy;
+        }
+    }
+
+    /**
+     * Copy with {@link SoftBreaks#normalize} applied to the same inline fields {@link EpisodeReader}
+     * normalises, so an episode parsed once for HTML can also be handed to the DOCX renderer.
+     */
+    public Episode withSoftBreaks() {
+        Episode copy = new Episode();
+        copy.number = number;
+        Bundle b = copy.bundle;
+        b.title = bundle.title;
+        b.intro = SoftBreaks.normalize(bundle.intro);
+        b.imageUrl = bundle.imageUrl;
+        for (Spread spread : bundle.spreads) {
+            b.spreads.add(spread != null ? spread.withSoftBreaks() : null);
+        }
+        b.summaryIntro = SoftBreaks.normalize(bundle.summaryIntro);
+        for (Conclusion conclusion : bundle.conclusions) {
+            b.conclusions.add(conclusion != null ? conclusion.withSoftBreaks() : null);
+        }
+        b.reflection = SoftBreaks.normalize(bundle.reflection);
+        b.passage = bundle.passage != null ? bundle.passage.withSoftBreaks() : null;
+        b.recap = SoftBreaks.normalize(bundle.recap);
+        b.recapToThinkAbout = SoftBreaks.normalize(bundle.recapToThinkAbout);
+        b.nextUp = SoftBreaks.normalize(bundle.nextUp);
+        return copy;
+    }
+
+    /**
+     * Builds an episode from an already parsed JSON tree, for callers that still hold maps.
+     *
+     * @param softBreaks whether to apply {@link SoftBreaks#normalize} to the inline text fields
+     */
+    public static Episode fromMap(Map<?, ?> data, boolean softBreaks) {
+        try {
+            return EpisodeReader.read(new StringReader(new Gson().toJson(data)), softBreaks);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
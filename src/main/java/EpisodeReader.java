@@ -0,0 +1,275 @@
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Pull parser for episode files. Reads the JSON once, straight into an {@link Episode}, skipping
+ * unknown keys. Soft-break normalisation is applied while reading and only to the fields rendered
+ * as inline text, instead of rewriting every string of the tree afterwards.
+ */
+public final class EpisodeReader {
+
+    private final JsonReader in;
+    private final boolean softBreaks;
+
+    private EpisodeReader(Reader reader, boolean softBreaks) {
+        this.in = new JsonReader(reader);
+        // Same tolerance as the JsonSlurper path this replaces
+        this.in.setLenient(true);
+        this.softBreaks = softBreaks;
+    }
+
+    /**
+     * @param softBreaks join split italic lines with {soft_break}, as the DOCX renderer expects
+     */
+    public static Episode read(File file, boolean softBreaks) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            return read(reader, softBreaks);
+        }
+    }
+
+    public static Episode read(Reader reader, boolean softBreaks) throws IOException {
+        BufferedReader buffered = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        buffered.mark(1);
+        if (buffered.read() != '\uFEFF') {
+            buffered.reset();
+        }
+        return new EpisodeReader(buffered, softBreaks).episode();
+    }
+
+    private Episode episode() throws IOException {
+        Episode episode = new Episode();
+        if (!beginObject()) return episode;
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "number":
+                    episode.number = scalar();
+                    break;
+                case "bundle":
+                    bundle(episode.bundle);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return episode;
+    }
+
+    private void bundle(Episode.Bundle bundle) throws IOException {
+        if (!beginObject()) return;
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "title":
+                    bundle.title = string();
+                    break;
+                case "intro":
+                    bundle.intro = inline();
+                    break;
+                case "imageUrl":
+                    bundle.imageUrl = string();
+                    break;
+                case "spreads":
+                    if (beginArray()) {
+                        while (in.hasNext()) bundle.spreads.add(in.peek() == JsonToken.NULL ? skipNull() : spread());
+                        in.endArray();
+                    }
+                    break;
+                case "summaryIntro":
+                    bundle.summaryIntro = inline();
+                    break;
+                case "conclusions":
+                    if (beginArray()) {
+                        while (in.hasNext()) bundle.conclusions.add(in.peek() == JsonToken.NULL ? skipNull() : conclusion());
+                        in.endArray();
+                    }
+                    break;
+                case "reflection":
+                    bundle.reflection = inline();
+                    break;
+                case "passage":
+                    bundle.passage = passage();
+                    break;
+                case "recap":
+                    bundle.recap = inline();
+                    break;
+                case "recapToThinkAbout":
+                    bundle.recapToThinkAbout = inline();
+                    break;
+                case "nextUp":
+                    bundle.nextUp = inline();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+    }
+
+    private Episode.Spread spread() throws IOException {
+        Episode.Spread spread = new Episode.Spread();
+        if (!beginObject()) return spread;
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "type":
+                    spread.type = string();
+                    break;
+                case "subtitle":
+                    spread.subtitle = string();
+                    break;
+                case "callout":
+                    spread.callout = inline();
+                    break;
+                case "scripture":
+                    spread.scripture = passage();
+                    break;
+                case "notes":
+                    notes(spread.notes);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return spread;
+    }
+
+    private Episode.Passage passage() throws IOException {
+        if (!beginObject()) return null;
+        if (!in.hasNext()) {
+            in.endObject();
+            return null;
+        }
+        Episode.Passage passage = new Episode.Passage();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "reference":
+                    passage.reference = string();
+                    break;
+                case "verse":
+                    passage.verse = inline();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return passage;
+    }
+
+    private void notes(List<Episode.Note> notes) throws IOException {
+        if (!beginArray()) return;
+        while (in.hasNext()) {
+            if (in.peek() == JsonToken.NULL) {
+                notes.add(skipNull());
+                continue;
+            }
+            Episode.Note note = new Episode.Note();
+            if (beginObject()) {
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "type":
+                            note.type = string();
+                            break;
+                        case "content":
+                            note.content = inline();
+                            break;
+                        default:
+                            in.skipValue();
+                    }
+                }
+                in.endObject();
+            }
+            notes.add(note);
+        }
+        in.endArray();
+    }
+
+    private Episode.Conclusion conclusion() throws IOException {
+        Episode.Conclusion conclusion = new Episode.Conclusion();
+        if (!beginObject()) return conclusion;
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "statement":
+                    conclusion.statement = inline();
+                    break;
+                case "excerpt":
+                    conclusion.excerpt = inline();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return conclusion;
+    }
+
+    // Text rendered through the inline markup: the only fields that can carry a split italic line
+    private String inline() throws IOException {
+        String s = string();
+        return softBreaks && s != null ? SoftBreaks.normalize(s) : s;
+    }
+
+    private String string() throws IOException {
+        switch (in.peek()) {
+            case STRING:
+            case NUMBER:
+                return in.nextString();
+            case BOOLEAN:
+                return String.valueOf(in.nextBoolean());
+            case NULL:
+                in.nextNull();
+                return null;
+            default:
+                in.skipValue();
+                return null;
+        }
+    }
+
+    // Numbers keep the types JsonSlurper would have produced, so "12" renders as 12 and 0 stays falsy
+    private Object scalar() throws IOException {
+        if (in.peek() != JsonToken.NUMBER) {
+            return string();
+        }
+        String literal = in.nextString();
+        if (literal.indexOf('.') >= 0 || literal.indexOf('e') >= 0 || literal.indexOf('E') >= 0) {
+            return new BigDecimal(literal);
+        }
+        BigInteger value = new BigInteger(literal);
+        if (value.bitLength() < 32) return value.intValue();
+        if (value.bitLength() < 64) return value.longValue();
+        return value;
+    }
+
+    private boolean beginObject() throws IOException {
+        if (in.peek() == JsonToken.BEGIN_OBJECT) {
+            in.beginObject();
+            return true;
+        }
+        in.skipValue();
+        return false;
+    }
+
+    private boolean beginArray() throws IOException {
+        if (in.peek() == JsonToken.BEGIN_ARRAY) {
+            in.beginArray();
+            return true;
+        }
+        in.skipValue();
+        return false;
+    }
+
+    private <T> T skipNull() throws IOException {
+        in.nextNull();
+        return null;
+    }
+}
@@ -0,0 +1,458 @@
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Checks an episode file against the structure the renderers expect, before anything is parsed or rendered.
+ * <p>
+ * The file is streamed token by token, without building a tree, and the check stops at the first error:
+ * malformed JSON, or a value of the wrong kind where {@link EpisodeReader} would silently drop it
+ * (spreads that are not a list, a note that is not an object, text given as an object, ...). Such a
+ * file is not converted. Warnings do not stop the conversion: they flag what is likely to render
+ * differently than intended, such as an unknown note type, a missing episode number, a field the
+ * renderers do not know (typically a renamed key) or unbalanced {@code *}, {@code **} and backtick markup.
+ */
+public final class EpisodeValidator {
+
+    public enum Severity { ERROR, WARNING }
+
+    /** One finding, at a JSON path such as {@code $.bundle.spreads[2].notes[0].type}. */
+    public static final class Problem {
+        public final Severity severity;
+        public final String path;
+        public final String message;
+
+        Problem(Severity severity, String path, String message) {
+            this.severity = severity;
+            this.path = path;
+            this.message = message;
+        }
+
+        @Override
+        public String toString() {
+            return path + ": " + message;
+        }
+    }
+
+    /** The findings for one file; at most one error, which ended the check. */
+    public static final class Result {
+        public final File file;
+        public final List<Problem> problems;
+        public final long micros;
+
+        Result(File file, List<Problem> problems, long micros) {
+            this.file = file;
+            this.problems = Collections.unmodifiableList(problems);
+            this.micros = micros;
+        }
+
+        public boolean isValid() {
+            return error() == null;
+        }
+
+        public Problem error() {
+            for (Problem p : problems) {
+                if (p.severity == Severity.ERROR) return p;
+            }
+            return null;
+        }
+
+        public int warnings() {
+            int n = 0;
+            for (Problem p : problems) {
+                if (p.severity == Severity.WARNING) n++;
+            }
+            return n;
+        }
+    }
+
+    /** Thrown by a conversion when its input did not pass the check; the message names the path and the problem. */
+    public static final class InvalidEpisodeException extends IOException {
+        public final transient Result result;
+
+        InvalidEpisodeException(Result result) {
+            super("Invalid episode at " + result.error());
+            this.result = result;
+        }
+    }
+
+    /** Note types with their own layout; any other is rendered as a plain note. */
+    static final Set<String> NOTE_TYPES = new HashSet<>(Arrays.asList(
+            "definition", "keyPoint", "cue", "comment", "reflection", "stopAndThink"));
+
+    private static final int MAX_WARNINGS = 50;
+
+    // Thrown at the first error to unwind the descent; carries no stack trace
+    private static final class Stop extends RuntimeException {
+        Stop() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final JsonReader in;
+    private final List<Problem> problems = new ArrayList<>();
+    private int warnings;
+
+    private EpisodeValidator(Reader reader) {
+        this.in = new JsonReader(reader);
+        // Accepts what EpisodeReader accepts
+        this.in.setLenient(true);
+    }
+
+    public static Result validate(File file) {
+        long started = System.nanoTime();
+        List<Problem> problems;
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            problems = validate(reader);
+        } catch (CharacterCodingException e) {
+            problems = Collections.singletonList(new Problem(Severity.ERROR, "$", "The file is not UTF-8 text"));
+        } catch (IOException e) {
+            problems = Collections.singletonList(new Problem(Severity.ERROR, "$", "Could not read the file: " + e.getMessage()));
+        }
+        return new Result(file, new ArrayList<>(problems), (System.nanoTime() - started) / 1000L);
+    }
+
+    /** Checks the JSON of {@code reader}, which is consumed but not closed. */
+    public static List<Problem> validate(Reader reader) throws IOException {
+        BufferedReader buffered = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        buffered.mark(1);
+        if (buffered.read() != '\uFEFF') {
+            buffered.reset();
+        }
+        EpisodeValidator v = new EpisodeValidator(buffered);
+        try {
+            v.episode();
+        } catch (Stop stop) {
+            // The error is recorded
+        } catch (CharacterCodingException e) {
+            throw e;
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            v.problems.add(new Problem(Severity.ERROR, v.in.getPath(), "Malformed JSON: " + jsonMessage(e)));
+        }
+        return v.problems;
+    }
+
+    private void episode() throws IOException {
+        if (in.peek() != JsonToken.BEGIN_OBJECT) error("The file must hold one JSON object, found " + kind());
+        in.beginObject();
+        boolean number = false;
+        boolean bundle = false;
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "number":
+                    number = in.peek() != JsonToken.NULL;
+                    if (!scalar()) error("The episode number must be a number or text, found " + kind());
+                    in.skipValue();
+                    break;
+                case "bundle":
+                    bundle = true;
+                    bundle();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        if (!bundle) error("No bundle: the episode has no content to render");
+        if (!number) warning("No episode number");
+    }
+
+    private void bundle() throws IOException {
+        if (in.peek() != JsonToken.BEGIN_OBJECT) error("The bundle must be an object, found " + kind());
+        in.beginObject();
+        boolean title = false;
+        while (in.hasNext()) {
+            String name = in.nextName();
+            switch (name) {
+                case "title":
+                    title = text(false) != null;
+                    break;
+                case "imageUrl":
+                    text(false);
+                    break;
+                case "intro":
+                case "summaryIntro":
+                case "reflection":
+                case "recap":
+                case "recapToThinkAbout":
+                case "nextUp":
+                    text(true);
+                    break;
+                case "spreads":
+                    if (array("spreads")) {
+                        while (in.hasNext()) {
+                            if (nullElement("An empty spread")) continue;
+                            spread();
+                        }
+                        in.endArray();
+                    }
+                    break;
+                case "conclusions":
+                    if (array("conclusions")) {
+                        while (in.hasNext()) {
+                            if (nullElement("An empty conclusion")) continue;
+                            conclusion();
+                        }
+                        in.endArray();
+                    }
+                    break;
+                case "passage":
+                    passage();
+                    break;
+                default:
+                    unknown(name);
+            }
+        }
+        in.endObject();
+        if (!title) warning("No title");
+    }
+
+    private void spread() throws IOException {
+        if (in.peek() != JsonToken.BEGIN_OBJECT) error("A spread must be an object, found " + kind());
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            switch (name) {
+                case "type":
+                case "subtitle":
+                    text(false);
+                    break;
+                case "callout":
+                    text(true);
+                    break;
+                case "scripture":
+                    passage();
+                    break;
+                case "notes":
+                    if (array("notes")) {
+                        while (in.hasNext()) {
+                            if (nullElement("An empty note")) continue;
+                            note();
+                        }
+                        in.endArray();
+                    }
+                    break;
+                default:
+                    unknown(name);
+            }
+        }
+        in.endObject();
+    }
+
+    private void passage() throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return;
+        }
+        if (in.peek() != JsonToken.BEGIN_OBJECT) error("A passage must be an object with a reference and a verse, found " + kind());
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            switch (name) {
+                case "reference":
+                    text(false);
+                    break;
+                case "verse":
+                    text(true);
+                    break;
+                default:
+                    unknown(name);
+            }
+        }
+        in.endObject();
+    }
+
+    private void note() throws IOException {
+        if (in.peek() != JsonToken.BEGIN_OBJECT) error("A note must be an object, found " + kind());
+        String path = in.getPath();
+        in.beginObject();
+        String type = null;
+        while (in.hasNext()) {
+            String name = in.nextName();
+            switch (name) {
+                case "type":
+                    type = text(false);
+                    if (type != null && !NOTE_TYPES.contains(type.trim())) {
+                        warning("Unknown note type '" + type + "', rendered as a plain note");
+                    }
+                    break;
+                case "content":
+                    text(true);
+                    break;
+                default:
+                    unknown(name);
+            }
+        }
+        in.endObject();
+        if (type == null) warningAt(path, "Note without a type, rendered as a plain note");
+    }
+
+    private void conclusion() throws IOException {
+        if (in.peek() != JsonToken.BEGIN_OBJECT) error("A conclusion must be an object, found " + kind());
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            switch (name) {
+                case "statement":
+                case "excerpt":
+                    text(true);
+                    break;
+                default:
+                    unknown(name);
+            }
+        }
+        in.endObject();
+    }
+
+    /** Reads a text value and returns it, or {@code null} for JSON null; numbers and booleans pass as text. */
+    private String text(boolean markup) throws IOException {
+        switch (in.peek()) {
+            case STRING:
+            case NUMBER: {
+                String s = in.nextString();
+                // The path still names this field, and is only built when there is something to report
+                if (markup) markup(s);
+                return s;
+            }
+            case BOOLEAN:
+                return String.valueOf(in.nextBoolean());
+            case NULL:
+                in.nextNull();
+                return null;
+            default:
+                error("Expected text, found " + kind());
+                return null;
+        }
+    }
+
+    private boolean array(String what) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return false;
+        }
+        if (in.peek() != JsonToken.BEGIN_ARRAY) error("The " + what + " must be a list, found " + kind());
+        in.beginArray();
+        return true;
+    }
+
+    private boolean nullElement(String what) throws IOException {
+        if (in.peek() != JsonToken.NULL) return false;
+        warning(what + " (null) is skipped");
+        in.nextNull();
+        return true;
+    }
+
+    private boolean scalar() throws IOException {
+        JsonToken token = in.peek();
+        return token == JsonToken.NUMBER || token == JsonToken.STRING || token == JsonToken.NULL;
+    }
+
+    private void unknown(String name) throws IOException {
+        warning("Unknown field '" + name + "' is ignored");
+        in.skipValue();
+    }
+
+    /**
+     * Flags markup the renderers would show literally: an odd number of backticks in the field and, line by
+     * line, an unclosed {@code **} or an unpaired {@code *} that is not a leading bullet. Split italic lines
+     * are joined first, as the renderers do.
+     */
+    private void markup(String text) {
+        if (text.indexOf('*') < 0 && text.indexOf('`') < 0) return;
+        int ticks = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '`') ticks++;
+        }
+        if (ticks % 2 == 1) warning("Unpaired ` (backtick), shown as is");
+        if (text.indexOf('*') < 0) return;
+        String joined = SoftBreaks.normalize(text);
+        boolean multiline = joined.indexOf('\n') >= 0;
+        int lineNumber = 0;
+        for (int start = 0; start <= joined.length(); ) {
+            int end = joined.indexOf('\n', start);
+            if (end < 0) end = joined.length();
+            lineNumber++;
+            line(joined, start, end > start && joined.charAt(end - 1) == '\r' ? end - 1 : end, multiline ? lineNumber : 0);
+            start = end + 1;
+        }
+    }
+
+    private void line(String s, int start, int end, int lineNumber) {
+        int doubles = 0;
+        int singles = 0;
+        int first = -1;
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i) != '*') continue;
+            if (i + 1 < end && s.charAt(i + 1) == '*') {
+                doubles++;
+                i++;
+            } else if (!(i > start && s.charAt(i - 1) == '*')) {
+                if (singles++ == 0) first = i;
+            }
+        }
+        if (doubles == 0 && singles == 0) return;
+        String where = lineNumber > 0 ? "Line " + lineNumber + ": " : "";
+        if (doubles % 2 == 1) warning(where + "Unclosed ** (bold), shown as is");
+        // An odd single asterisk that starts the line is a bullet, as in InlineMarkup.tokenizeLine
+        boolean bullet = first >= 0 && s.substring(start, first).trim().isEmpty();
+        if (singles % 2 == 1 && !bullet) warning(where + "Unpaired * (italic), shown as is");
+    }
+
+    private String kind() throws IOException {
+        switch (in.peek()) {
+            case BEGIN_OBJECT:
+                return "an object";
+            case BEGIN_ARRAY:
+                return "a list";
+            case STRING:
+                return "text";
+            case NUMBER:
+                return "a number";
+            case BOOLEAN:
+                return "true/false";
+            case NULL:
+                return "null";
+            default:
+                return "the end of the file";
+        }
+    }
+
+    private void error(String message) {
+        problems.add(new Problem(Severity.ERROR, in.getPath(), message));
+        throw new Stop();
+    }
+
+    private void warning(String message) {
+        warningAt(in.getPath(), message);
+    }
+
+    private void warningAt(String path, String message) {
+        if (++warnings <= MAX_WARNINGS) {
+            problems.add(new Problem(Severity.WARNING, path, message));
+        } else if (warnings == MAX_WARNINGS + 1) {
+            problems.add(new Problem(Severity.WARNING, path, "Further warnings in this file are left out"));
+        }
+    }
+
+    // Gson appends the path and a troubleshooting link, both redundant here
+    private static String jsonMessage(Exception e) {
+        String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        int end = message.indexOf('\n');
+        if (end >= 0) message = message.substring(0, end);
+        int path = message.lastIndexOf(" path $");
+        return path > 0 ? message.substring(0, path) : message;
+    }
+}
@@ -0,0 +1,302 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Watch mode: re-renders episodes as soon as they are saved.
+ * <p>
+ * A watcher thread collects file events for the input folder and the strings file, and waits until
+ * no new event arrived for the debounce interval, so that an editor's save (often several events)
+ * triggers one conversion. Changed episodes are then re-rendered on a background worker with the
+ * already loaded {@link ConversionRunner}; a changed strings file re-renders the whole folder.
+ * Changes arriving while a render is running are coalesced into the next one.
+ * <p>
+ * A folder is watched with the {@link InputDiscovery} of its batch, so the same files are re-rendered as a
+ * batch converts: with a recursive discovery every sub-folder it enters is watched too, including folders
+ * created later, and the include and exclude globs apply to every event.
+ */
+public class FolderWatcher implements Closeable {
+
+    private static final long DEBOUNCE_MILLIS = Long.getLong("w121.watchDebounceMs", 300L);
+
+    private final ConversionRunner runner;
+    private final File inputDir;
+    private final File onlyFile;
+    // Which folders are watched and which files in them are episodes; unused for a single file
+    private final InputDiscovery scope;
+    private final Set<Path> episodeFolders = ConcurrentHashMap.newKeySet();
+    private final String stringsPath;
+    private final File stringsFile;
+    private final int workers;
+    private final Consumer<String> log;
+
+    private final WatchService watchService;
+    private final ExecutorService renderer;
+    private Thread watcherThread;
+
+    // Changes waiting for the renderer: episode -> time of the first event, in System.nanoTime
+    private final Map<File, Long> pendingEpisodes = new LinkedHashMap<>();
+    private long pendingStringsSince = -1;
+    private boolean renderScheduled;
+
+    private volatile StringsRepository.Strings strings;
+
+    /** Watches a single episode file, or only the top level of a folder. */
+    public FolderWatcher(ConversionRunner runner, File input, String stringsPath, StringsRepository.Strings strings,
+                         int workers, Consumer<String> log) throws IOException {
+        this(runner, input, null, stringsPath, strings, workers, log);
+    }
+
+    /**
+     * @param input       folder to watch, or a single episode file to watch on its own
+     * @param scope       the discovery the folder's batch was found with, not started; {@code null} watches only
+     *                    the top level of the folder
+     * @param stringsPath strings file to watch as well; may be {@code null} or empty
+     * @param strings     strings already loaded for the initial conversion; may be {@code null}
+     */
+    public FolderWatcher(ConversionRunner runner, File input, InputDiscovery scope, String stringsPath,
+                         StringsRepository.Strings strings, int workers, Consumer<String> log) throws IOException {
+        this.runner = runner;
+        this.onlyFile = input.isFile() ? input.getAbsoluteFile() : null;
+        this.inputDir = input.isFile() ? input.getAbsoluteFile().getParentFile() : input.getAbsoluteFile();
+        if (scope == null) {
+            scope = new InputDiscovery(inputDir, false, Collections.emptyList(), Collections.emptyList(), log);
+            scope.skipStrings(stringsPath);
+        }
+        this.scope = scope;
+        this.stringsPath = (stringsPath == null || stringsPath.isEmpty()) ? null : stringsPath;
+        this.stringsFile = this.stringsPath != null ? new File(this.stringsPath).getAbsoluteFile() : null;
+        this.strings = strings;
+        this.workers = workers;
+        this.log = log;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.renderer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "watch-renderer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Starts watching on a background thread and returns immediately. */
+    public void start() throws IOException {
+        if (onlyFile != null) {
+            register(inputDir.toPath());
+        } else {
+            registerFolders(inputDir.toPath());
+        }
+        if (stringsFile != null && !stringsFile.getParentFile().equals(inputDir)
+                && !episodeFolders.contains(stringsFile.getParentFile().toPath())) {
+            register(stringsFile.getParentFile().toPath());
+        }
+        watcherThread = new Thread(this::watchLoop, "folder-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+        log("Watching " + (onlyFile != null ? onlyFile.getPath() : inputDir.getPath())
+                + (episodeFolders.size() > 1 ? " (" + episodeFolders.size() + " folders)" : "")
+                + (stringsFile != null ? " and " + stringsFile.getName() : "") + " for changes");
+    }
+
+    /** Blocks until the watcher stops (it only stops when closed). */
+    public void awaitClose() throws InterruptedException {
+        if (watcherThread != null) watcherThread.join();
+    }
+
+    @Override
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            // Nothing left to release
+        }
+        renderer.shutdown();
+    }
+
+    private void register(Path dir) throws IOException {
+        dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    // Watches dir and every folder below it that the scope enters; returns the episodes already in them
+    private List<File> registerFolders(Path dir) throws IOException {
+        List<File> found = new ArrayList<>();
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path folder, BasicFileAttributes attrs) throws IOException {
+                if (!scope.entersFolder(folder.toFile())) return FileVisitResult.SKIP_SUBTREE;
+                Path absolute = folder.toAbsolutePath().normalize();
+                if (episodeFolders.add(absolute)) register(absolute);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && scope.accepts(file.toFile())) found.add(file.toFile().getAbsoluteFile());
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                log("Warning: Could not read " + file + ": " + e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return found;
+    }
+
+    // The episodes currently in the watched folders
+    private List<File> listEpisodes() {
+        List<File> files = new ArrayList<>();
+        for (Path folder : episodeFolders) {
+            File[] children = folder.toFile().listFiles(scope::accepts);
+            if (children != null) files.addAll(List.of(children));
+        }
+        return files;
+    }
+
+    private void watchLoop() {
+        Map<File, Long> episodes = new LinkedHashMap<>();
+        long stringsSince = -1;
+        try {
+            while (true) {
+                boolean idle = episodes.isEmpty() && stringsSince < 0;
+                WatchKey key = idle ? watchService.take() : watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+                if (key == null) {
+                    // Quiet for the debounce interval: hand the collected changes to the renderer
+                    schedule(episodes, stringsSince);
+                    episodes = new LinkedHashMap<>();
+                    stringsSince = -1;
+                    continue;
+                }
+                long now = System.nanoTime();
+                Path dir = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // Events were lost; render everything to be safe
+                        if (stringsSince < 0) stringsSince = now;
+                        continue;
+                    }
+                    File file = dir.resolve((Path) event.context()).toFile().getAbsoluteFile();
+                    if (file.equals(stringsFile)) {
+                        if (stringsSince < 0) stringsSince = now;
+                    } else if (onlyFile == null && event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                            && file.isDirectory() && scope.entersFolder(file)) {
+                        // A new or moved-in folder: watch it and render what it already holds
+                        try {
+                            for (File f : registerFolders(file.toPath())) episodes.putIfAbsent(f, now);
+                        } catch (IOException e) {
+                            log("Warning: Could not watch " + file + ": " + e.getMessage());
+                        }
+                    } else if (isEpisode(file)) {
+                        episodes.putIfAbsent(file, now);
+                    }
+                }
+                if (!key.reset()) {
+                    // The folder was deleted or moved away
+                    episodeFolders.remove(dir.toAbsolutePath().normalize());
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed
+        }
+    }
+
+    private boolean isEpisode(File file) {
+        if (onlyFile != null) return file.equals(onlyFile);
+        return scope.accepts(file);
+    }
+
+    private synchronized void schedule(Map<File, Long> episodes, long stringsSince) {
+        for (Map.Entry<File, Long> e : episodes.entrySet()) {
+            pendingEpisodes.putIfAbsent(e.getKey(), e.getValue());
+        }
+        if (stringsSince >= 0 && pendingStringsSince < 0) {
+            pendingStringsSince = stringsSince;
+        }
+        if (!renderScheduled && (!pendingEpisodes.isEmpty() || pendingStringsSince >= 0)) {
+            renderScheduled = true;
+            renderer.execute(this::renderPending);
+        }
+    }
+
+    private void renderPending() {
+        Map<File, Long> episodes;
+        long stringsSince;
+        synchronized (this) {
+            episodes = new LinkedHashMap<>(pendingEpisodes);
+            stringsSince = pendingStringsSince;
+            pendingEpisodes.clear();
+            pendingStringsSince = -1;
+            renderScheduled = false;
+        }
+        try {
+            List<File> files;
+            if (stringsSince >= 0) {
+                StringsRepository.shared().invalidate(stringsFile.getPath());
+                strings = runner.prepareStrings(stringsPath, false);
+                log("Strings file changed, re-rendering all episodes");
+                files = onlyFile != null ? List.of(onlyFile) : listEpisodes();
+                for (File f : files) episodes.putIfAbsent(f.getAbsoluteFile(), stringsSince);
+            }
+            files = new ArrayList<>();
+            for (File f : episodes.keySet()) {
+                if (f.isFile()) files.add(f);
+            }
+            if (files.isEmpty()) return;
+
+            StringsRepository.Strings current = strings;
+            BatchExecutor executor = new BatchExecutor(workers, runner.holdsDocxInMemory(), log);
+            BatchExecutor.Summary summary = executor.run(files, file -> runner.convert(file, current),
+                    runner.isIncremental() ? file -> runner.upToDateOutput(file, current) : null);
+            runner.saveManifests();
+            if (runner.getSearchIndex() != null) {
+                // Re-rendered episodes replaced their entries; without a save the search page would go stale
+                try {
+                    runner.getSearchIndex().save();
+                } catch (IOException e) {
+                    log("Warning: Could not write the search index: " + e.getMessage());
+                }
+            }
+
+            long done = System.nanoTime();
+            long longest = 0;
+            for (BatchExecutor.FileResult r : summary.results) {
+                if (r.isSuccess() && !r.skipped) {
+                    longest = Math.max(longest, done - episodes.get(r.file.getAbsoluteFile()));
+                }
+            }
+            if (summary.succeeded > summary.skipped) {
+                FragmentCache fragments = FragmentCache.shared();
+                log("Updated " + (summary.succeeded - summary.skipped) + " file(s) " + longest / 1_000_000L + " ms after save"
+                        + (summary.failed > 0 ? ", " + summary.failed + " failed" : "")
+                        + (fragments != null ? " (fragment cache: " + fragments.stats() + ")" : ""));
+            }
+        } catch (Exception e) {
+            log("Watch mode: re-rendering failed: " + BatchExecutor.describe(e));
+        }
+    }
+
+    private void log(String message) {
+        if (log != null) log.accept(message);
+    }
+}
@@ -0,0 +1,395 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Cache for the rendered sections of an episode: the HTML of a spread, notes group or closing block,
+ * and the tokenized runs of a DOCX section. Keys hash the section's content together with the strings
+ * and options that affect it and the renderer's own class files, so re-rendering an episode in which a
+ * few spreads changed only renders those again, and a changed renderer never reuses old output.
+ * <p>
+ * An in-memory LRU, bounded by an estimate of its size ({@code -Dw121.fragmentCacheMb}, default 32),
+ * sits in front of an optional on-disk store that lets separate runs share fragments. Select the tiers
+ * with {@code -Dw121.fragmentCache=memory} (default), {@code disk} or {@code off}.
+ */
+public final class FragmentCache {
+
+    private static final String MODE = System.getProperty("w121.fragmentCache", "memory");
+    private static final long MEMORY_BYTES = Long.getLong("w121.fragmentCacheMb", 32L) * 1024L * 1024L;
+    private static final FragmentCache SHARED = "off".equals(MODE) ? null
+            : new FragmentCache(MEMORY_BYTES, "disk".equals(MODE) ? AppCache.dir("fragments") : null);
+
+    private static final int TOKENS_FORMAT = 1;
+
+    // Renderer class -> hash of the classes whose code decides what a fragment looks like
+    private static final Map<Class<?>, String> RENDERER_VERSIONS = new ConcurrentHashMap<>();
+
+    /** Builds a fragment key from the parts of a section; every part is length-prefixed, so no two inputs collide by concatenation. */
+    public static final class Key {
+        private final MessageDigest md = ContentHash.newDigest();
+
+        private Key(String kind, String context) {
+            add(kind).add(context);
+        }
+
+        public Key add(String s) {
+            if (s == null) {
+                md.update((byte) 0);
+            } else {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                md.update((byte) 1);
+                md.update(intBytes(bytes.length));
+                md.update(bytes);
+            }
+            return this;
+        }
+
+        public Key add(boolean b) {
+            md.update((byte) (b ? 1 : 0));
+            return this;
+        }
+
+        public Key add(Episode.Passage passage) {
+            if (passage == null) return add((String) null);
+            return add("passage").add(passage.reference).add(passage.verse);
+        }
+
+        public Key add(Episode.Note note) {
+            if (note == null) return add((String) null);
+            return add("note").add(note.type).add(note.content);
+        }
+
+        public Key add(Episode.Conclusion conclusion) {
+            if (conclusion == null) return add((String) null);
+            return add("conclusion").add(conclusion.statement).add(conclusion.excerpt);
+        }
+
+        public Key addNotes(List<Episode.Note> notes) {
+            md.update(intBytes(notes != null ? notes.size() : -1));
+            if (notes != null) {
+                for (Episode.Note note : notes) add(note);
+            }
+            return this;
+        }
+
+        public Key addConclusions(List<Episode.Conclusion> conclusions) {
+            md.update(intBytes(conclusions != null ? conclusions.size() : -1));
+            if (conclusions != null) {
+                for (Episode.Conclusion conclusion : conclusions) add(conclusion);
+            }
+            return this;
+        }
+
+        public Key add(Episode.Spread spread) {
+            if (spread == null) return add((String) null);
+            return add("spread").add(spread.type).add(spread.subtitle).add(spread.callout).add(spread.scripture)
+                    .addNotes(spread.notes);
+        }
+
+        public String build() {
+            return ContentHash.hex(md.digest());
+        }
+
+        private static byte[] intBytes(int v) {
+            return new byte[] { (byte) (v >>> 24), (byte) (v >>> 16), (byte) (v >>> 8), (byte) v };
+        }
+    }
+
+    private final Map<String, Object> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private final long memoryBudget;
+    private long memoryBytes;
+    private final Path diskDir;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    FragmentCache(long memoryBudget, Path diskDir) {
+        this.memoryBudget = memoryBudget;
+        this.diskDir = diskDir;
+    }
+
+    /** The process-wide cache, or {@code null} when it is switched off. */
+    public static FragmentCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * The part every key of one conversion shares: the renderer's code and the strings and options it
+     * renders with.
+     */
+    public static String context(Class<?> renderer, String stringsHash, String options) {
+        return RENDERER_VERSIONS.computeIfAbsent(renderer, FragmentCache::rendererVersion)
+                + "|" + (stringsHash != null ? stringsHash : "") + "|" + options;
+    }
+
+    public static Key key(String kind, String context) {
+        return new Key(kind, context);
+    }
+
+    /** Returns the cached HTML of a section, or {@code null}. */
+    public String html(String key) {
+        Object cached = fromMemory(key);
+        if (cached instanceof String) {
+            memoryHits.incrementAndGet();
+            return (String) cached;
+        }
+        String html = htmlFromDisk(key);
+        if (html != null) {
+            diskHits.incrementAndGet();
+            toMemory(key, html, weight(html));
+            return html;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void putHtml(String key, String html) {
+        toMemory(key, html, weight(html));
+        if (diskDir != null) toDisk(key + ".html", html.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Returns the cached runs of a DOCX section, line by line, or {@code null}. The map must not be modified. */
+    @SuppressWarnings("unchecked")
+    public Map<String, List<InlineMarkup.Span>> tokens(String key) {
+        Object cached = fromMemory(key);
+        if (cached instanceof Map) {
+            memoryHits.incrementAndGet();
+            return (Map<String, List<InlineMarkup.Span>>) cached;
+        }
+        Map<String, List<InlineMarkup.Span>> tokens = tokensFromDisk(key);
+        if (tokens != null) {
+            diskHits.incrementAndGet();
+            toMemory(key, tokens, weight(tokens));
+            return tokens;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /** Stores the runs of a DOCX section; the map is kept as it is and must not be modified afterwards. */
+    public void putTokens(String key, Map<String, List<InlineMarkup.Span>> tokens) {
+        Map<String, List<InlineMarkup.Span>> frozen = Collections.unmodifiableMap(tokens);
+        toMemory(key, frozen, weight(frozen));
+        if (diskDir != null) toDisk(key + ".tok", encode(frozen));
+    }
+
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /** Share of lookups answered from either tier, between 0 and 1. */
+    public double hitRate() {
+        long hits = memoryHits.get() + diskHits.get();
+        long total = hits + misses.get();
+        return total > 0 ? (double) hits / total : 0;
+    }
+
+    public String stats() {
+        long bytes;
+        synchronized (memory) {
+            bytes = memoryBytes;
+        }
+        return String.format("memory hits %d, disk hits %d, misses %d (%.0f%% hit rate, %d KB in memory)",
+                memoryHits.get(), diskHits.get(), misses.get(), hitRate() * 100, bytes / 1024);
+    }
+
+    private Object fromMemory(String key) {
+        synchronized (memory) {
+            return memory.get(key);
+        }
+    }
+
+    private void toMemory(String key, Object value, long weight) {
+        if (weight > memoryBudget) return;
+        synchronized (memory) {
+            Object previous = memory.put(key, value);
+            if (previous != null) memoryBytes -= weigh(previous);
+            memoryBytes += weight;
+            Iterator<Object> eldest = memory.values().iterator();
+            while (memoryBytes > memoryBudget && eldest.hasNext()) {
+                memoryBytes -= weigh(eldest.next());
+                eldest.remove();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static long weigh(Object value) {
+        return value instanceof String ? weight((String) value) : weight((Map<String, List<InlineMarkup.Span>>) value);
+    }
+
+    // Rough heap footprint: two bytes per char plus object headers
+    private static long weight(String s) {
+        return 56 + 2L * s.length();
+    }
+
+    private static long weight(Map<String, List<InlineMarkup.Span>> tokens) {
+        long w = 64;
+        for (Map.Entry<String, List<InlineMarkup.Span>> e : tokens.entrySet()) {
+            w += 48 + weight(e.getKey());
+            for (InlineMarkup.Span span : e.getValue()) {
+                w += 40 + weight(span.text);
+            }
+        }
+        return w;
+    }
+
+    private String htmlFromDisk(String key) {
+        if (diskDir == null) return null;
+        Path file = diskDir.resolve(key + ".html");
+        try {
+            return Files.isRegularFile(file) ? new String(Files.readAllBytes(file), StandardCharsets.UTF_8) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private Map<String, List<InlineMarkup.Span>> tokensFromDisk(String key) {
+        if (diskDir == null) return null;
+        Path file = diskDir.resolve(key + ".tok");
+        if (!Files.isRegularFile(file)) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != TOKENS_FORMAT) return null;
+            int lines = in.readInt();
+            Map<String, List<InlineMarkup.Span>> tokens = new HashMap<>(lines * 2);
+            for (int i = 0; i < lines; i++) {
+                String line = readString(in);
+                int count = in.readInt();
+                List<InlineMarkup.Span> spans = new ArrayList<>(count);
+                for (int j = 0; j < count; j++) {
+                    String text = readString(in);
+                    int flags = in.readByte();
+                    int kind = in.readByte();
+                    spans.add(new InlineMarkup.Span(text, (flags & 1) != 0, (flags & 2) != 0, kind, (flags & 4) != 0));
+                }
+                tokens.put(line, Collections.unmodifiableList(spans));
+            }
+            return Collections.unmodifiableMap(tokens);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static byte[] encode(Map<String, List<InlineMarkup.Span>> tokens) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(bytes))) {
+            out.writeInt(TOKENS_FORMAT);
+            out.writeInt(tokens.size());
+            for (Map.Entry<String, List<InlineMarkup.Span>> e : tokens.entrySet()) {
+                writeString(out, e.getKey());
+                out.writeInt(e.getValue().size());
+                for (InlineMarkup.Span span : e.getValue()) {
+                    writeString(out, span.text);
+                    out.writeByte((span.bold ? 1 : 0) | (span.italic ? 2 : 0) | (span.breakAfter ? 4 : 0));
+                    out.writeByte(span.kind);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    // writeUTF stops at 64 KB, which a long verse line can exceed
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] b = new byte[in.readInt()];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private void toDisk(String name, byte[] content) {
+        if (diskDir == null) return;
+        try {
+            Path tmp = Files.createTempFile(diskDir, name, ".tmp");
+            Files.write(tmp, content);
+            Files.move(tmp, diskDir.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The disk tier is only an optimisation
+        }
+    }
+
+    // The converter version alone says "dev" in every development build, so hash the code itself: the classes
+    // and their nested and closure classes (JsonToHtmlScript$_renderSpread_closure3, ...), where most of a
+    // Groovy renderer's logic is compiled to
+    static String rendererVersion(Class<?> renderer) {
+        MessageDigest md = ContentHash.newDigest();
+        md.update(BuildManifest.converterVersion().getBytes(StandardCharsets.UTF_8));
+        for (Class<?> c : new Class<?>[] { renderer, InlineMarkup.class }) {
+            for (String name : classFiles(c)) {
+                md.update(name.getBytes(StandardCharsets.UTF_8));
+                try (InputStream in = c.getClassLoader().getResourceAsStream(name)) {
+                    if (in != null) md.update(in.readAllBytes());
+                } catch (IOException e) {
+                    // The name alone then
+                }
+            }
+        }
+        return ContentHash.hex(md.digest()).substring(0, 16);
+    }
+
+    // Resource names of c and of every c$* class next to it in its folder or jar, sorted so the hash is stable
+    static List<String> classFiles(Class<?> c) {
+        String base = c.getName().replace('.', '/');
+        List<String> names = new ArrayList<>();
+        try {
+            Path source = Paths.get(c.getProtectionDomain().getCodeSource().getLocation().toURI());
+            if (Files.isDirectory(source)) {
+                Path folder = base.contains("/") ? source.resolve(base.substring(0, base.lastIndexOf('/'))) : source;
+                String prefix = base.substring(base.lastIndexOf('/') + 1) + "$";
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(folder, prefix + "*.class")) {
+                    for (Path f : files) names.add(base.substring(0, base.lastIndexOf('/') + 1) + f.getFileName());
+                }
+            } else {
+                try (JarFile jar = new JarFile(source.toFile())) {
+                    for (Iterator<JarEntry> it = jar.entries().asIterator(); it.hasNext(); ) {
+                        String name = it.next().getName();
+                        if (name.startsWith(base + "$") && name.endsWith(".class")) names.add(name);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // No readable code source (or a security manager): only the top-level class is hashed
+            names.clear();
+        }
+        Collections.sort(names);
+        names.add(0, base + ".class");
+        return names;
+    }
+}
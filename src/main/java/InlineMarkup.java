@@ -0,0 +1,653 @@
+import org.apache.commons.text.StringEscapeUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hand-written scanners for the inline markup used in episode texts
+ * ({@code **bold**}, {@code *italic*}, {@code `ticks`}, {@code {soft_break}}, bullets and {@code ###} headings).
+ * <p>
+ * The DOCX renderer consumes the {@link Span} model directly: one span per Word run.
+ * The HTML renderer uses the same tick tokenizer and single-pass replacements for the
+ * former regex chains. Each method reproduces the output of the regular expressions it
+ * replaced, including their edge cases, so both renderers produce the same documents as before.
+ */
+public final class InlineMarkup {
+
+    public static final int TEXT = 0;
+    public static final int TICK_NUMBER = 1;
+    public static final int TICK_TEXT = 2;
+
+    private static final String SOFT_BREAK = "{soft_break}";
+    private static final String PARA_BREAK = "[[PARA_BREAK]]";
+
+    /** A piece of text with uniform formatting. */
+    public static final class Span {
+        public final String text;
+        public final boolean bold;
+        public final boolean italic;
+        /** {@link #TEXT}, {@link #TICK_NUMBER} (verse number) or {@link #TICK_TEXT} (highlighted term). */
+        public final int kind;
+        /** True when a {soft_break} followed this span: a line break inside the same paragraph. */
+        public final boolean breakAfter;
+
+        Span(String text, boolean bold, boolean italic, int kind, boolean breakAfter) {
+            this.text = text;
+            this.bold = bold;
+            this.italic = italic;
+            this.kind = kind;
+            this.breakAfter = breakAfter;
+        }
+
+        @Override
+        public String toString() {
+            return (bold ? "B" : "") + (italic ? "I" : "") + (kind == TICK_NUMBER ? "#" : kind == TICK_TEXT ? "`" : "")
+                    + "[" + text + "]" + (breakAfter ? "/" : "");
+        }
+    }
+
+    private InlineMarkup() {
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Span model (DOCX)
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Tokenizes one line (no '\n') into runs: {@code **bold**} pairs, single-asterisk italics,
+     * a leading unpaired asterisk as a bullet, ticks inside each styled piece and {soft_break} markers.
+     */
+    public static List<Span> tokenizeLine(String line) {
+        List<Span> out = new ArrayList<>();
+        if (line == null) return out;
+        int len = line.length();
+
+        // Bold segments: [start, end) ranges of the text between ** pairs, alternating with plain ranges
+        int[] segStart = new int[8];
+        int[] segEnd = new int[8];
+        boolean[] segBold = new boolean[8];
+        int segCount = 0;
+        int cursor = 0;
+        int[] close = new int[1];
+        int open;
+        while ((open = findDelimited(line, cursor, "**", close)) >= 0) {
+            if (segCount + 2 > segStart.length) {
+                segStart = grow(segStart);
+                segEnd = grow(segEnd);
+                segBold = grow(segBold);
+            }
+            if (open > cursor) {
+                segStart[segCount] = cursor;
+                segEnd[segCount] = open;
+                segBold[segCount++] = false;
+            }
+            segStart[segCount] = open + 2;
+            segEnd[segCount] = close[0];
+            segBold[segCount++] = true;
+            cursor = close[0] + 2;
+        }
+        if (cursor < len) {
+            if (segCount + 1 > segStart.length) {
+                segStart = grow(segStart);
+                segEnd = grow(segEnd);
+                segBold = grow(segBold);
+            }
+            segStart[segCount] = cursor;
+            segEnd[segCount] = len;
+            segBold[segCount++] = false;
+        }
+
+        // Single asterisks (not part of a ** pair) toggle italics; a leading unpaired one is a bullet
+        int singles = 0;
+        int[] single = new int[4];
+        for (int i = 0; i < len; i++) {
+            if (line.charAt(i) == '*'
+                    && !(i + 1 < len && line.charAt(i + 1) == '*')
+                    && !(i > 0 && line.charAt(i - 1) == '*')) {
+                if (singles == single.length) single = grow(single);
+                single[singles++] = i;
+            }
+        }
+        int firstNonWs = -1;
+        for (int i = 0; i < len; i++) {
+            if (!Character.isWhitespace(line.charAt(i))) {
+                firstNonWs = i;
+                break;
+            }
+        }
+        int bulletPos = -1;
+        int firstSingle = 0;
+        if (singles > 0 && singles % 2 == 1 && firstNonWs != -1 && single[0] == firstNonWs) {
+            bulletPos = single[0];
+            firstSingle = 1;
+        }
+        // Pairs are formed from the end, so with an odd count the first asterisk stays literal
+        byte[] marks = singles > 0 ? new byte[len] : null;
+        for (int k = singles - 2; k >= firstSingle; k -= 2) {
+            marks[single[k]] = 1;
+            marks[single[k + 1]] = 2;
+        }
+
+        SpanBuilder spans = new SpanBuilder();
+        StringBuilder current = new StringBuilder();
+        for (int s = 0; s < segCount; s++) {
+            boolean isBold = segBold[s];
+            boolean inItalic = false;
+            for (int i = segStart[s]; i < segEnd[s]; i++) {
+                byte mark = marks != null ? marks[i] : 0;
+                if (bulletPos == i) {
+                    spans.append(current, isBold, inItalic);
+                    spans.append("•", isBold, false);
+                } else if (mark == 1) {
+                    spans.append(current, isBold, inItalic);
+                    inItalic = true;
+                } else if (mark == 2) {
+                    spans.append(current, isBold, inItalic);
+                    inItalic = false;
+                } else {
+                    current.append(line.charAt(i));
+                }
+            }
+            spans.append(current, isBold, inItalic);
+        }
+
+        for (int i = 0; i < spans.size; i++) {
+            splitTicks(spans.text[i].toString(), spans.bold[i], spans.italic[i], out);
+        }
+        return out;
+    }
+
+    /** Splits text into plain and tick spans, then each of those at {soft_break} markers. */
+    public static List<Span> splitTicks(String text) {
+        List<Span> out = new ArrayList<>();
+        if (text != null) splitTicks(text, false, false, out);
+        return out;
+    }
+
+    private static void splitTicks(String text, boolean bold, boolean italic, List<Span> out) {
+        int last = 0;
+        int[] close = new int[1];
+        int open;
+        while ((open = findTick(text, last, close)) >= 0) {
+            if (open > last) addSoftBreakParts(text.substring(last, open), bold, italic, TEXT, out);
+            String inner = text.substring(open + 1, close[0]);
+            addSoftBreakParts(inner, bold, italic, isVerseNumber(inner) ? TICK_NUMBER : TICK_TEXT, out);
+            last = close[0] + 1;
+        }
+        if (last < text.length()) addSoftBreakParts(text.substring(last), bold, italic, TEXT, out);
+    }
+
+    private static void addSoftBreakParts(String text, boolean bold, boolean italic, int kind, List<Span> out) {
+        int from = 0;
+        int at;
+        while ((at = text.indexOf(SOFT_BREAK, from)) >= 0) {
+            out.add(new Span(text.substring(from, at), bold, italic, kind, true));
+            from = at + SOFT_BREAK.length();
+        }
+        out.add(new Span(from == 0 ? text : text.substring(from), bold, italic, kind, false));
+    }
+
+    /** One to three digits, ignoring surrounding whitespace: rendered as a superscript verse number. */
+    public static boolean isVerseNumber(String s) {
+        if (s == null) return false;
+        int start = 0;
+        int end = s.length();
+        while (start < end && s.charAt(start) <= ' ') start++;
+        while (end > start && s.charAt(end - 1) <= ' ') end--;
+        int digits = end - start;
+        if (digits < 1 || digits > 3) return false;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return true;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // HTML
+    // ---------------------------------------------------------------------------------------------
+
+    /** Escapes text and turns ticks into {@code <sup>} verse numbers or highlighted spans. */
+    public static String ticksToHtml(String text) {
+        if (text == null) return "";
+        StringBuilder sb = new StringBuilder(text.length() + 32);
+        int last = 0;
+        int[] close = new int[1];
+        int open;
+        while ((open = findTick(text, last, close)) >= 0) {
+            sb.append(StringEscapeUtils.escapeHtml4(text.substring(last, open)));
+            String inner = text.substring(open + 1, close[0]);
+            if (isVerseNumber(inner)) {
+                sb.append("<sup>").append(StringEscapeUtils.escapeHtml4(inner)).append("</sup>");
+            } else {
+                sb.append("<span class=\"tick-strong\">").append(StringEscapeUtils.escapeHtml4(inner)).append("</span>");
+            }
+            last = close[0] + 1;
+        }
+        sb.append(StringEscapeUtils.escapeHtml4(text.substring(last)));
+        return sb.toString();
+    }
+
+    /**
+     * Line-based markers for HTML: {@code **bold**}, {@code *italic*}, hyphen and odd-asterisk bullets,
+     * and a two-line italic block split over a leading and a trailing asterisk.
+     */
+    public static String markersToHtml(String text) {
+        List<String> lines = readLines(text);
+        StringBuilder sb = new StringBuilder(text.length() + 32);
+        int lastStart = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            String current = lines.get(i);
+            String trimmed = current.trim();
+
+            if (i > 0 && trimmed.endsWith("*") && count(trimmed, '*') == 1) {
+                String prevTrimmed = lines.get(i - 1).trim();
+                if (prevTrimmed.startsWith("*") && count(prevTrimmed, '*') == 1) {
+                    // Replace the previous line's output with one italic block
+                    sb.setLength(lastStart);
+                    sb.append("<em>").append(prevTrimmed.substring(1).trim()).append("<br>")
+                            .append(trimmed.substring(0, trimmed.length() - 1).trim()).append("</em>");
+                    continue;
+                }
+            }
+
+            if (i > 0) sb.append('\n');
+            lastStart = sb.length();
+
+            if (trimmed.startsWith("-")) {
+                String content = replaceDelimited(trimmed.substring(1).trim(), "*", "<em>", "</em>").replace('*', '•');
+                sb.append("<p class=\"bullet\"><span class=\"b-mark\">•</span><span class=\"b-text\">")
+                        .append(content).append("</span></p>");
+                continue;
+            }
+
+            current = replaceDelimited(current, "**", "<strong>", "</strong>");
+            int stars = count(current, '*');
+            if (stars > 0 && stars % 2 != 0) {
+                String content = current.replaceFirst("\\*", "").trim();
+                sb.append("<p class=\"bullet\"><span class=\"b-mark\">•</span><span class=\"b-text\">");
+                boolean inItalics = false;
+                for (int c = 0; c < content.length(); c++) {
+                    char ch = content.charAt(c);
+                    if (ch == '*') {
+                        sb.append(inItalics ? "</em>" : "<em>");
+                        inItalics = !inItalics;
+                    } else {
+                        sb.append(ch);
+                    }
+                }
+                if (inItalics) sb.append("</em>");
+                sb.append("</span></p>");
+            } else {
+                sb.append(replaceDelimited(current, "*", "<em>", "</em>").replace('*', '•'));
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Lines starting with ## or ### become escaped {@code <h4>} headings with the given class. */
+    public static String headingsToHtml(String text, String h4Class) {
+        if (text == null) return "";
+        List<String> lines = readLines(text);
+        StringBuilder sb = new StringBuilder(text.length() + 32);
+        for (int i = 0; i < lines.size(); i++) {
+            if (i > 0) sb.append('\n');
+            String line = lines.get(i);
+            if (isHeadingLine(line)) {
+                sb.append("<h4 class=\"").append(h4Class).append("\">")
+                        .append(StringEscapeUtils.escapeHtml4(line.substring(4))).append("</h4>");
+            } else {
+                sb.append(line);
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Collapses two or more {@code <br>} directly after a closing {@code </h4>} into one. */
+    public static String tightenHeadings(String html) {
+        if (html == null) return "";
+        StringBuilder sb = null;
+        int copied = 0;
+        int from = 0;
+        int len = html.length();
+        while (true) {
+            int at = indexOfIgnoreCase(html, "</h4>", from);
+            if (at < 0) break;
+            int pos = at + 5;
+            int breaks = 0;
+            int end = pos;
+            while (html.regionMatches(true, pos, "<br>", 0, 4)) {
+                pos += 4;
+                while (pos < len && isRegexSpace(html.charAt(pos))) pos++;
+                breaks++;
+                end = pos;
+            }
+            if (breaks >= 2) {
+                if (sb == null) sb = new StringBuilder(len);
+                sb.append(html, copied, at + 5).append("<br>");
+                copied = end;
+                from = end;
+            } else {
+                from = at + 1;
+            }
+        }
+        if (sb == null) return html;
+        return sb.append(html, copied, len).toString();
+    }
+
+    /** Runs of newlines become {@code <br>}, except a first newline right after {@code </h4>}. */
+    public static String newlinesToBreaksAfterHeadings(String text) {
+        StringBuilder sb = new StringBuilder(text.length() + 16);
+        int len = text.length();
+        int i = 0;
+        while (i < len) {
+            char c = text.charAt(i);
+            if (c == '\n' && !(i >= 5 && text.startsWith("</h4>", i - 5))) {
+                while (i < len && text.charAt(i) == '\n') i++;
+                sb.append("<br>");
+            } else {
+                sb.append(c);
+                i++;
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Two or more line breaks become a paragraph spacer, a single one becomes {@code <br>}. */
+    public static String paragraphBreaks(String text) {
+        StringBuilder sb = new StringBuilder(text.length() + 16);
+        int len = text.length();
+        int i = 0;
+        while (i < len) {
+            int newlines = 0;
+            int j = i;
+            while (true) {
+                if (j + 1 < len && text.charAt(j) == '\r' && text.charAt(j + 1) == '\n') j += 2;
+                else if (j < len && text.charAt(j) == '\n') j++;
+                else break;
+                newlines++;
+            }
+            if (newlines >= 2 || text.startsWith(PARA_BREAK, i)) {
+                sb.append("<p class=\"para-spacer\"></p>");
+                i = newlines >= 2 ? j : i + PARA_BREAK.length();
+            } else if (newlines == 1) {
+                sb.append("<br>");
+                i = j;
+            } else {
+                sb.append(text.charAt(i++));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Restores the tags produced by the markers after the whole text has been HTML-escaped:
+     * headings, {@code &amp;}, em/strong/br, and p/span with a class attribute.
+     */
+    public static String unescapeSpecificHtml(String html) {
+        if (html == null || html.isEmpty()) return "";
+        return unescapeTags(unescapeHeadingsAndAmp(html));
+    }
+
+    // &lt;h4...&gt; -> <h4>, &lt;/h4&gt; -> </h4>, &amp; -> &
+    private static String unescapeHeadingsAndAmp(String s) {
+        int len = s.length();
+        StringBuilder sb = new StringBuilder(len);
+        int i = 0;
+        while (i < len) {
+            char c = s.charAt(i);
+            if (c == '&') {
+                if (s.startsWith("&lt;h4", i)) {
+                    int end = s.indexOf("&gt;", i + 6);
+                    if (end >= 0 && !hasLineTerminator(s, i + 6, end)) {
+                        sb.append("<h4>");
+                        i = end + 4;
+                        continue;
+                    }
+                } else if (s.startsWith("&lt;/h4&gt;", i)) {
+                    sb.append("</h4>");
+                    i += 11;
+                    continue;
+                } else if (s.startsWith("&amp;", i)) {
+                    sb.append('&');
+                    i += 5;
+                    continue;
+                }
+            }
+            sb.append(c);
+            i++;
+        }
+        return sb.toString();
+    }
+
+    private static String unescapeTags(String s) {
+        int len = s.length();
+        StringBuilder sb = new StringBuilder(len);
+        int i = 0;
+        while (i < len) {
+            if (s.charAt(i) == '&' && s.startsWith("&lt;", i)) {
+                int next = unescapeTagAt(s, i, sb, true);
+                if (next > i) {
+                    i = next;
+                    continue;
+                }
+            }
+            sb.append(s.charAt(i++));
+        }
+        return sb.toString();
+    }
+
+    /** Tries to unescape one tag starting at {@code i}; returns the index after it, or {@code i} if none matched. */
+    private static int unescapeTagAt(String s, int i, StringBuilder sb, boolean allowClassTags) {
+        String[][] literals = {
+                {"&lt;em&gt;", "<em>"}, {"&lt;/em&gt;", "</em>"},
+                {"&lt;strong&gt;", "<strong>"}, {"&lt;/strong&gt;", "</strong>"},
+                {"&lt;br&gt;", "<br>"}};
+        for (String[] lit : literals) {
+            if (s.startsWith(lit[0], i)) {
+                sb.append(lit[1]);
+                return i + lit[0].length();
+            }
+        }
+        String tag = s.startsWith("&lt;span", i) ? "span" : s.startsWith("&lt;p", i) ? "p" : null;
+        if (allowClassTags && tag != null) {
+            // &lt;(p|span)\s+class=&quot;(.*?)&quot;&gt;
+            int pos = i + 4 + tag.length();
+            int ws = pos;
+            while (pos < s.length() && isRegexSpace(s.charAt(pos))) pos++;
+            if (pos > ws && s.startsWith("class=&quot;", pos)) {
+                int valueStart = pos + 12;
+                int valueEnd = s.indexOf("&quot;&gt;", valueStart);
+                if (valueEnd >= 0 && !hasLineTerminator(s, valueStart, valueEnd)) {
+                    // The regex chain unescaped the other tags before this step and closing tags after it
+                    String value = unescapeClosingTags(unescapeLiteralTags(s.substring(valueStart, valueEnd)));
+                    sb.append('<').append(tag).append(" class=\"").append(value).append("\">");
+                    return valueEnd + 10;
+                }
+            }
+        }
+        String closing = s.startsWith("&lt;/span&gt;", i) ? "span" : s.startsWith("&lt;/p&gt;", i) ? "p" : null;
+        if (closing != null) {
+            sb.append("</").append(closing).append('>');
+            return i + 8 + closing.length() + 1;
+        }
+        return i;
+    }
+
+    private static String unescapeLiteralTags(String s) {
+        if (s.indexOf('&') < 0) return s;
+        StringBuilder sb = new StringBuilder(s.length());
+        int i = 0;
+        while (i < s.length()) {
+            if (s.startsWith("&lt;", i) && !s.startsWith("&lt;/p", i) && !s.startsWith("&lt;/span", i)) {
+                int next = unescapeTagAt(s, i, sb, false);
+                if (next > i) {
+                    i = next;
+                    continue;
+                }
+            }
+            sb.append(s.charAt(i++));
+        }
+        return sb.toString();
+    }
+
+    private static String unescapeClosingTags(String s) {
+        if (s.indexOf('&') < 0) return s;
+        return s.replace("&lt;/p&gt;", "</p>").replace("&lt;/span&gt;", "</span>");
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Scanning helpers
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Finds the next {@code delim(.+?)delim} at or after {@code from}, like the regex would:
+     * at least one character between the delimiters and no line terminator inside.
+     * Returns the opening index and stores the closing index in {@code close[0]}, or -1.
+     */
+    static int findDelimited(String s, int from, String delim, int[] close) {
+        int dl = delim.length();
+        int open = s.indexOf(delim, from);
+        while (open >= 0) {
+            int end = s.indexOf(delim, open + dl + 1);
+            if (end < 0) return -1;
+            if (!hasLineTerminator(s, open + dl, end)) {
+                close[0] = end;
+                return open;
+            }
+            open = s.indexOf(delim, open + 1);
+        }
+        return -1;
+    }
+
+    /** Finds the next {@code `([^`]+)`}; returns the opening backtick and stores the closing one in {@code close[0]}, or -1. */
+    static int findTick(String s, int from, int[] close) {
+        int open = s.indexOf('`', from);
+        while (open >= 0) {
+            int end = s.indexOf('`', open + 1);
+            if (end < 0) return -1;
+            if (end > open + 1) {
+                close[0] = end;
+                return open;
+            }
+            open = end;
+        }
+        return -1;
+    }
+
+    private static String replaceDelimited(String s, String delim, String openTag, String closeTag) {
+        int[] close = new int[1];
+        int open = findDelimited(s, 0, delim, close);
+        if (open < 0) return s;
+        StringBuilder sb = new StringBuilder(s.length() + 16);
+        int last = 0;
+        do {
+            sb.append(s, last, open).append(openTag).append(s, open + delim.length(), close[0]).append(closeTag);
+            last = close[0] + delim.length();
+        } while ((open = findDelimited(s, last, delim, close)) >= 0);
+        return sb.append(s, last, s.length()).toString();
+    }
+
+    /** Splits like {@code BufferedReader.readLine}: \n, \r or \r\n, without a trailing empty line. */
+    static List<String> readLines(String text) {
+        List<String> lines = new ArrayList<>();
+        int len = text.length();
+        int start = 0;
+        for (int i = 0; i < len; i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r') {
+                lines.add(text.substring(start, i));
+                if (c == '\r' && i + 1 < len && text.charAt(i + 1) == '\n') i++;
+                start = i + 1;
+            }
+        }
+        if (start < len) lines.add(text.substring(start));
+        return lines;
+    }
+
+    // ^\s*#{2,3}\s*.*
+    private static boolean isHeadingLine(String line) {
+        int len = line.length();
+        int i = 0;
+        while (i < len && isRegexSpace(line.charAt(i))) i++;
+        int hashes = 0;
+        while (i + hashes < len && line.charAt(i + hashes) == '#') hashes++;
+        if (hashes < 2) return false;
+        i += 2;
+        while (i < len && isRegexSpace(line.charAt(i))) i++;
+        return !hasLineTerminator(line, i, len);
+    }
+
+    private static int count(String s, char c) {
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == c) n++;
+        }
+        return n;
+    }
+
+    private static int indexOfIgnoreCase(String s, String what, int from) {
+        for (int i = from; i <= s.length() - what.length(); i++) {
+            if (s.regionMatches(true, i, what, 0, what.length())) return i;
+        }
+        return -1;
+    }
+
+    // Characters '.' does not match in java.util.regex without DOTALL
+    private static boolean hasLineTerminator(String s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') return true;
+        }
+        return false;
+    }
+
+    // \s in java.util.regex
+    private static boolean isRegexSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static int[] grow(int[] a) {
+        int[] b = new int[a.length * 2];
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+
+    private static boolean[] grow(boolean[] a) {
+        boolean[] b = new boolean[a.length * 2];
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+
+    /** Adjacent pieces with the same formatting are merged, as separate Word runs would look identical. */
+    private static final class SpanBuilder {
+        StringBuilder[] text = new StringBuilder[4];
+        boolean[] bold = new boolean[4];
+        boolean[] italic = new boolean[4];
+        int size;
+
+        void append(StringBuilder current, boolean b, boolean i) {
+            if (current.length() == 0) return;
+            append(current.toString(), b, i);
+            current.setLength(0);
+        }
+
+        void append(String t, boolean b, boolean i) {
+            if (t.isEmpty()) return;
+            if (size > 0 && bold[size - 1] == b && italic[size - 1] == i) {
+                text[size - 1].append(t);
+                return;
+            }
+            if (size == text.length) {
+                StringBuilder[] nt = new StringBuilder[size * 2];
+                System.arraycopy(text, 0, nt, 0, size);
+                text = nt;
+                bold = grow(bold);
+                italic = grow(italic);
+            }
+            text[size] = new StringBuilder(t);
+            bold[size] = b;
+            italic[size++] = i;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Finds the episodes of a batch: the .json files of a folder and, when recursive, of all its sub-folders,
+ * narrowed by include and exclude globs.
+ * <p>
+ * The walk runs on its own thread and hands every match over as soon as it is found, so conversion starts
+ * with the first file instead of after the full listing. Of the files waiting to be converted, the largest
+ * is taken first, so long DOCX jobs start early instead of ending up at the tail of the batch.
+ * <p>
+ * A glob containing {@code /} is matched against the path relative to the root (such as
+ * {@code en/**} or {@code en/*-final.json}); any other glob against the file name alone
+ * (such as {@code *-draft.json}). An exclude glob that matches a folder skips everything below it.
+ * Only files that {@link ConversionRunner#isEpisode} accepts are picked up, and hidden folders are never entered.
+ */
+public final class InputDiscovery implements Closeable {
+
+    private static final Found END = new Found(null, -1, Long.MAX_VALUE);
+
+    // Largest first; equal sizes in the order they were found
+    private static final Comparator<Found> LARGEST_FIRST = Comparator.<Found>comparingLong(f -> f.size).reversed()
+            .thenComparingLong(f -> f.order);
+
+    private static final class Found {
+        final File file;
+        final long size;
+        final long order;
+
+        Found(File file, long size, long order) {
+            this.file = file;
+            this.size = size;
+            this.order = order;
+        }
+    }
+
+    private final Path root;
+    private final boolean recursive;
+    private final List<PathMatcher> includePaths = new ArrayList<>();
+    private final List<PathMatcher> includeNames = new ArrayList<>();
+    private final List<PathMatcher> excludePaths = new ArrayList<>();
+    private final List<PathMatcher> excludeNames = new ArrayList<>();
+    private final Set<Path> skippedFolders = new HashSet<>();
+    private final Consumer<String> log;
+    private String stringsPath;
+
+    private final PriorityBlockingQueue<Found> queue = new PriorityBlockingQueue<>(64, LARGEST_FIRST);
+    private final AtomicInteger found = new AtomicInteger();
+    private volatile boolean finished;
+    private volatile long walkMillis = -1;
+    private Thread walker;
+
+    /**
+     * @param includes globs a file must match (any of them) to be converted; none means every .json file
+     * @param excludes globs of files and folders to leave out
+     * @param log      receives a line for every folder or file that cannot be read; may be {@code null}
+     */
+    public InputDiscovery(File root, boolean recursive, List<String> includes, List<String> excludes, Consumer<String> log) {
+        this.root = root.getAbsoluteFile().toPath().normalize();
+        this.recursive = recursive;
+        this.log = log;
+        for (String glob : includes) {
+            (glob.contains("/") ? includePaths : includeNames).add(matcher(glob));
+        }
+        for (String glob : excludes) {
+            (glob.contains("/") ? excludePaths : excludeNames).add(matcher(glob));
+        }
+    }
+
+    /** Leaves out {@code folder} and everything below it, typically the output folder when it lies inside the input. */
+    public void skipFolder(File folder) {
+        skippedFolders.add(folder.getAbsoluteFile().toPath().normalize());
+    }
+
+    /** Leaves out the strings file and the .json saved next to it, when they lie below the root. */
+    public void skipStrings(String stringsPath) {
+        this.stringsPath = stringsPath;
+    }
+
+    public File getRoot() {
+        return root.toFile();
+    }
+
+    /** Starts the walk on a background thread and returns immediately; later calls do nothing. */
+    public synchronized void start() {
+        if (walker != null) return;
+        walker = new Thread(this::walk, "input-discovery");
+        walker.setDaemon(true);
+        walker.start();
+    }
+
+    /**
+     * Waits for the next file, the largest of those found so far, and returns it; returns {@code null}
+     * once the walk has finished and every file has been handed out. Safe to call from several workers.
+     */
+    public File take() throws InterruptedException {
+        Found next = queue.take();
+        if (next == END) {
+            // Put the marker back for the other workers
+            queue.add(END);
+            return null;
+        }
+        return next.file;
+    }
+
+    /** Number of files found so far. */
+    public int found() {
+        return found.get();
+    }
+
+    /** True once the walk is over and {@link #found()} is the final count. */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /** How long the walk took, or -1 while it is still running. */
+    public long walkMillis() {
+        return walkMillis;
+    }
+
+    /**
+     * Whether the walk enters {@code dir}: the root itself and, when recursive, every folder below it that is
+     * neither hidden, skipped nor excluded, nor below such a folder. Watch mode uses it to pick the folders to watch.
+     */
+    public boolean entersFolder(File dir) {
+        Path path = dir.getAbsoluteFile().toPath().normalize();
+        if (!path.startsWith(root)) return false;
+        if (path.equals(root)) return true;
+        if (!recursive) return false;
+        for (Path p = path; !p.equals(root); p = p.getParent()) {
+            if (isHidden(p) || skippedFolders.contains(p) || excluded(p)) return false;
+        }
+        return true;
+    }
+
+    /** Whether the walk picks up {@code file}, so that watch mode re-renders the same files a batch converts. */
+    public boolean accepts(File file) {
+        Path path = file.getAbsoluteFile().toPath().normalize();
+        Path parent = path.getParent();
+        return parent != null && entersFolder(parent.toFile()) && isEpisode(path);
+    }
+
+    /** Path of {@code file} below the root, with {@code /} separators, for log lines and archive entries. */
+    public String relativePath(File file) {
+        Path path = file.getAbsoluteFile().toPath().normalize();
+        if (!path.startsWith(root)) return file.getName();
+        return root.relativize(path).toString().replace(File.separatorChar, '/');
+    }
+
+    @Override
+    public synchronized void close() {
+        if (walker != null) walker.interrupt();
+    }
+
+    private void walk() {
+        long started = System.nanoTime();
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (Thread.currentThread().isInterrupted()) return FileVisitResult.TERMINATE;
+                    if (dir.equals(root)) return FileVisitResult.CONTINUE;
+                    if (!recursive || isHidden(dir) || skippedFolders.contains(dir) || excluded(dir)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && isEpisode(file)) {
+                        queue.add(new Found(file.toFile(), attrs.size(), found.getAndIncrement()));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    if (log != null) log.accept("Warning: Could not read " + file + ": " + e.getMessage());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            if (log != null) log.accept("Warning: Could not list " + root + ": " + e.getMessage());
+        } finally {
+            walkMillis = (System.nanoTime() - started) / 1_000_000L;
+            finished = true;
+            queue.add(END);
+        }
+    }
+
+    private boolean isEpisode(Path file) {
+        if (!ConversionRunner.isEpisode(file.toFile(), stringsPath) || excluded(file)) return false;
+        if (includePaths.isEmpty() && includeNames.isEmpty()) return true;
+        return matches(includePaths, includeNames, file);
+    }
+
+    private boolean excluded(Path path) {
+        return matches(excludePaths, excludeNames, path);
+    }
+
+    private boolean matches(List<PathMatcher> byPath, List<PathMatcher> byName, Path path) {
+        Path relative = root.relativize(path);
+        for (PathMatcher m : byPath) {
+            if (m.matches(relative)) return true;
+        }
+        Path name = path.getFileName();
+        for (PathMatcher m : byName) {
+            if (m.matches(name)) return true;
+        }
+        return false;
+    }
+
+    private static boolean isHidden(Path dir) {
+        return dir.getFileName().toString().startsWith(".");
+    }
+
+    private static PathMatcher matcher(String glob) {
+        try {
+            return FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid glob '" + glob + "': " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,620 @@
+import com.google.gson.GsonBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless command-line entry point. Takes the same options the GUI collects and never touches Swing,
+ * so it can run on build machines without a display:
+ * <pre>java -cp JsonConverter-1.2.jar JsonConverterCli [options] &lt;input file or folder&gt;</pre>
+ */
+public class JsonConverterCli {
+
+    static final int EXIT_OK = 0;
+    static final int EXIT_FAILED_FILES = 1;
+    static final int EXIT_USAGE = 2;
+    static final int EXIT_FATAL = 3;
+
+    private String inputPath;
+    private String stringsPath = "";
+    private boolean saveStrings;
+    private boolean batch;
+    private boolean recursive;
+    private final List<String> includes = new ArrayList<>();
+    private final List<String> excludes = new ArrayList<>();
+    private String formats = "docx";
+    private Set<ConversionRunner.Target> targets;
+    private boolean html;
+    private boolean darkMode;
+    private String lang = "en-GB";
+    private String outputDir;
+    private int jobs = BatchExecutor.defaultWorkers();
+    private boolean jsonSummary;
+    private boolean quiet;
+    private boolean incremental;
+    private boolean sharedAssets;
+    private String archivePath;
+    private boolean search;
+    private boolean check;
+    private boolean validate = true;
+    private String validationReportPath;
+    private String metricsPath;
+    private boolean watch;
+    private boolean serve;
+    private int port = ConversionServer.DEFAULT_PORT;
+    private int queue = 16;
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        System.exit(new JsonConverterCli().run(args));
+    }
+
+    int run(String[] args) {
+        try {
+            if (!parseArgs(args)) {
+                return EXIT_OK;
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.err.println("Run with --help for usage.");
+            return EXIT_USAGE;
+        }
+
+        if (serve) {
+            return serve();
+        }
+        if (check) {
+            return check();
+        }
+
+        // With a JSON summary on stdout, progress goes to stderr so the output stays parseable
+        PrintStream progress = jsonSummary ? System.err : System.out;
+        ConversionRunner runner = new ConversionRunner(targets, lang, outputDir, quiet ? null : progress::println);
+        runner.setIncremental(incremental);
+        runner.setSharedAssets(sharedAssets);
+        if (validate) runner.setValidation(new ValidationReport(reportRoot()));
+        if (metricsPath != null) runner.setMetrics(new ConversionMetrics());
+        try {
+            runner.locateConverter();
+        } catch (IllegalStateException e) {
+            System.err.println("FATAL ERROR: " + e.getMessage());
+            return EXIT_FATAL;
+        }
+
+        List<File> files = null;
+        InputDiscovery discovery = null;
+        File input = new File(inputPath);
+        if (batch || input.isDirectory()) {
+            // Files are found while the strings load and handed to the workers as they turn up
+            File dir = ConversionRunner.batchFolder(inputPath);
+            try {
+                discovery = discovery(dir);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Error: " + e.getMessage());
+                return EXIT_USAGE;
+            }
+            if (recursive) runner.setInputRoot(dir);
+            if (search) runner.setSearchIndex(SearchIndex.open(outputDir != null ? new File(outputDir) : dir, System.err::println));
+            discovery.start();
+        } else if (input.isFile()) {
+            files = Collections.singletonList(input);
+        } else {
+            System.err.println("Error: Input file not found at '" + input.getAbsolutePath() + "'");
+            return EXIT_USAGE;
+        }
+
+        StringsRepository.Strings strings;
+        try {
+            strings = runner.prepareStrings(stringsPath, saveStrings);
+        } catch (Exception e) {
+            System.err.println("Error: Could not read strings file: " + e.getMessage());
+            return EXIT_FATAL;
+        }
+
+        if (archivePath != null) {
+            try {
+                runner.setArchive(OutputArchive.create(new File(archivePath).toPath()));
+            } catch (IOException e) {
+                System.err.println("Error: Could not create archive " + archivePath + ": " + e.getMessage());
+                return EXIT_FATAL;
+            }
+        }
+
+        AtomicLong firstOutputMillis = new AtomicLong(-1);
+        BatchExecutor executor = new BatchExecutor(jobs, runner.holdsDocxInMemory(), quiet ? null : progress::println);
+        BatchExecutor.FileTask task = file -> {
+            String output = runner.convert(file, strings);
+            firstOutputMillis.compareAndSet(-1, StartupClock.millisSinceJvmStart());
+            return output;
+        };
+        BatchExecutor.UpToDateCheck upToDate = file -> runner.upToDateOutput(file, strings);
+        BatchExecutor.Summary summary = discovery != null
+                ? executor.run(discovery, task, upToDate)
+                : executor.run(files, task, upToDate);
+        if (discovery != null && summary.results.isEmpty()) {
+            System.err.println("No .json files found in the specified directory: " + discovery.getRoot());
+            if (runner.getArchive() != null) {
+                try {
+                    runner.getArchive().discard();
+                } catch (IOException e) {
+                    // Nothing was written into it
+                }
+            }
+            return EXIT_FAILED_FILES;
+        }
+        try {
+            runner.saveManifests();
+        } catch (IOException e) {
+            System.err.println("Warning: Could not write the build manifest: " + e.getMessage());
+        }
+        if (runner.getSearchIndex() != null) {
+            try {
+                runner.getSearchIndex().save();
+                if (!quiet) {
+                    progress.println("Search page for " + runner.getSearchIndex().size() + " episodes written to " + runner.getSearchIndex().getPage());
+                }
+            } catch (IOException e) {
+                System.err.println("Warning: Could not write the search index: " + e.getMessage());
+            }
+        }
+        if (runner.getArchive() != null) {
+            try {
+                runner.getArchive().close();
+                if (!quiet) progress.println("Archive written to " + runner.getArchive().getFile());
+            } catch (IOException e) {
+                System.err.println("Error: Could not finish archive " + archivePath + ": " + e.getMessage());
+                return EXIT_FATAL;
+            }
+        }
+
+        if (quiet) {
+            for (BatchExecutor.FileResult r : summary.results) {
+                if (!r.isSuccess()) System.err.println("Failed to process " + r.file.getName() + ": " + r.error);
+            }
+        } else {
+            if (discovery != null) {
+                progress.println("Found " + discovery.found() + " JSON files in " + discovery.walkMillis() + " ms");
+            }
+            progress.println("Summary: " + summary);
+            if (!runner.isHtml()) {
+                progress.println("Artwork cache: " + SvgRasterCache.shared().stats());
+            }
+            if (FragmentCache.shared() != null) {
+                progress.println("Fragment cache: " + FragmentCache.shared().stats());
+            }
+            if (firstOutputMillis.get() >= 0) {
+                progress.println("First conversion finished " + firstOutputMillis.get() + " ms after JVM start");
+            }
+            for (String line : runner.getMetrics().report()) {
+                progress.println(line);
+            }
+            if (runner.getValidation() != null && runner.getValidation().hasProblems()) {
+                printValidation(runner.getValidation(), progress);
+            }
+        }
+        if (runner.getValidation() != null && validationReportPath != null) {
+            writeValidationReport(runner.getValidation());
+        }
+        if (metricsPath != null) {
+            try {
+                runner.getMetrics().write(new File(metricsPath).toPath());
+            } catch (IOException e) {
+                System.err.println("Warning: Could not write metrics to " + metricsPath + ": " + e.getMessage());
+            }
+        }
+        if (jsonSummary) {
+            System.out.println(summaryJson(summary, firstOutputMillis.get(), runner.getValidation()));
+        }
+        if (watch) {
+            if (input.isDirectory() || batch) {
+                File dir = ConversionRunner.batchFolder(inputPath);
+                return watch(runner, dir, discovery(dir), strings, progress);
+            }
+            return watch(runner, input, null, strings, progress);
+        }
+        return summary.failed == 0 ? EXIT_OK : EXIT_FAILED_FILES;
+    }
+
+    // Validation only: every file is checked on the worker pool, nothing is parsed, rendered or written
+    private int check() {
+        PrintStream progress = jsonSummary ? System.err : System.out;
+        File input = new File(inputPath);
+        ValidationReport report = new ValidationReport(reportRoot());
+        BatchExecutor executor = new BatchExecutor(jobs, false, null);
+        BatchExecutor.FileTask task = file -> {
+            EpisodeValidator.Result checked = report.check(file);
+            if (!checked.isValid()) throw new EpisodeValidator.InvalidEpisodeException(checked);
+            return file.getPath();
+        };
+        BatchExecutor.Summary summary;
+        if (batch || input.isDirectory()) {
+            InputDiscovery discovery;
+            try {
+                discovery = discovery(ConversionRunner.batchFolder(inputPath));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Error: " + e.getMessage());
+                return EXIT_USAGE;
+            }
+            summary = executor.run(discovery, task, null);
+            if (summary.results.isEmpty()) {
+                System.err.println("No .json files found in the specified directory: " + discovery.getRoot());
+                return EXIT_FAILED_FILES;
+            }
+        } else if (input.isFile()) {
+            summary = executor.run(Collections.singletonList(input), task);
+        } else {
+            System.err.println("Error: Input file not found at '" + input.getAbsolutePath() + "'");
+            return EXIT_USAGE;
+        }
+        if (quiet) {
+            for (BatchExecutor.FileResult r : summary.results) {
+                if (!r.isSuccess()) System.err.println(report.name(r.file) + ": " + r.error);
+            }
+        } else {
+            printValidation(report, progress);
+        }
+        if (validationReportPath != null) writeValidationReport(report);
+        if (jsonSummary) {
+            System.out.println(summaryJson(summary, -1, report));
+        }
+        return summary.failed == 0 ? EXIT_OK : EXIT_FAILED_FILES;
+    }
+
+    private InputDiscovery discovery(File dir) {
+        InputDiscovery discovery = new InputDiscovery(dir, recursive, includes, excludes, System.err::println);
+        if (outputDir != null) discovery.skipFolder(new File(outputDir));
+        discovery.skipStrings(stringsPath);
+        return discovery;
+    }
+
+    // File names in the validation report are relative to the batch folder, or to the folder of a single input
+    private File reportRoot() {
+        File input = new File(inputPath);
+        return batch || input.isDirectory() ? ConversionRunner.batchFolder(inputPath) : input.getAbsoluteFile().getParentFile();
+    }
+
+    private static void printValidation(ValidationReport report, PrintStream progress) {
+        progress.println("Validation: " + report);
+        for (String line : report.lines()) {
+            progress.println("  " + line);
+        }
+    }
+
+    private void writeValidationReport(ValidationReport report) {
+        try {
+            report.write(new File(validationReportPath).toPath());
+        } catch (IOException e) {
+            System.err.println("Warning: Could not write the validation report to " + validationReportPath + ": " + e.getMessage());
+        }
+    }
+
+    private int serve() {
+        ConversionServer server = new ConversionServer(port, jobs, queue, html, darkMode, lang, stringsPath,
+                quiet ? null : System.out::println);
+        CountDownLatch stopped = new CountDownLatch(1);
+        if (inputPath != null) {
+            try {
+                server.setEpisodeRoot(ConversionRunner.batchFolder(inputPath));
+            } catch (IOException e) {
+                System.err.println("Error: Episode folder not found: " + inputPath);
+                return EXIT_FATAL;
+            }
+        }
+        try {
+            server.start();
+        } catch (IOException e) {
+            System.err.println("Error: Could not start the conversion service on port " + port + ": " + e.getMessage());
+            return EXIT_FATAL;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            stopped.countDown();
+        }));
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return EXIT_OK;
+    }
+
+    // Keeps the JVM and the loaded converter warm and re-renders on every save until interrupted
+    private int watch(ConversionRunner runner, File input, InputDiscovery scope, StringsRepository.Strings strings, PrintStream progress) {
+        try (FolderWatcher watcher = new FolderWatcher(runner, input, scope, stringsPath, strings, jobs, progress::println)) {
+            watcher.start();
+            watcher.awaitClose();
+            return EXIT_OK;
+        } catch (IOException e) {
+            System.err.println("Error: Could not watch " + input.getAbsolutePath() + ": " + e.getMessage());
+            return EXIT_FATAL;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return EXIT_OK;
+        }
+    }
+
+    private boolean parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "-h":
+                case "--help":
+                    printUsage();
+                    return false;
+                case "-a":
+                case "--all":
+                    batch = true;
+                    break;
+                case "-r":
+                case "--recursive":
+                    recursive = true;
+                    batch = true;
+                    break;
+                case "--include":
+                    includes.add(value(args, ++i, arg));
+                    break;
+                case "--exclude":
+                    excludes.add(value(args, ++i, arg));
+                    break;
+                case "-s":
+                case "--strings":
+                    stringsPath = value(args, ++i, arg);
+                    break;
+                case "--save-strings":
+                    saveStrings = true;
+                    break;
+                case "-f":
+                case "--format":
+                    formats = value(args, ++i, arg).toLowerCase();
+                    break;
+                case "-l":
+                case "--lang":
+                    lang = value(args, ++i, arg);
+                    break;
+                case "-d":
+                case "--dark":
+                    darkMode = true;
+                    break;
+                case "-o":
+                case "--output":
+                    outputDir = value(args, ++i, arg);
+                    break;
+                case "-j":
+                case "--jobs":
+                    try {
+                        jobs = Integer.parseInt(value(args, ++i, arg));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("--jobs expects a number");
+                    }
+                    if (jobs < 1) throw new IllegalArgumentException("--jobs must be at least 1");
+                    break;
+                case "--json-summary":
+                    jsonSummary = true;
+                    break;
+                case "-q":
+                case "--quiet":
+                    quiet = true;
+                    break;
+                case "-i":
+                case "--incremental":
+                    incremental = true;
+                    break;
+                case "--archive":
+                    archivePath = value(args, ++i, arg);
+                    break;
+                case "--check":
+                    check = true;
+                    break;
+                case "--no-validate":
+                    validate = false;
+                    break;
+                case "--validation-report":
+                    validationReportPath = value(args, ++i, arg);
+                    break;
+                case "--search":
+                    search = true;
+                    break;
+                case "--shared-assets":
+                    sharedAssets = true;
+                    break;
+                case "--docx-writer":
+                    String writer = value(args, ++i, arg);
+                    if (!writer.equals("poi") && !writer.equals("stream")) {
+                        throw new IllegalArgumentException("Unknown DOCX writer '" + writer + "' (expected poi or stream)");
+                    }
+                    // Read when the DOCX script is first loaded, which happens after the arguments are parsed
+                    System.setProperty(DocxStreamWriter.WRITER_PROPERTY, writer);
+                    break;
+                case "--metrics":
+                    metricsPath = value(args, ++i, arg);
+                    break;
+                case "-w":
+                case "--watch":
+                    watch = true;
+                    break;
+                case "--serve":
+                    serve = true;
+                    break;
+                case "--port":
+                    port = number(value(args, ++i, arg), arg, 0);
+                    break;
+                case "--queue":
+                    queue = number(value(args, ++i, arg), arg, 0);
+                    break;
+                default:
+                    if (arg.startsWith("-")) {
+                        throw new IllegalArgumentException("Unknown option " + arg);
+                    }
+                    if (inputPath != null) {
+                        throw new IllegalArgumentException("Only one input file or folder can be given");
+                    }
+                    inputPath = arg;
+            }
+        }
+        targets = parseTargets(formats, darkMode);
+        html = !targets.contains(ConversionRunner.Target.DOCX);
+        if (inputPath == null && !serve) {
+            throw new IllegalArgumentException("No input file or folder given");
+        }
+        if ((!includes.isEmpty() || !excludes.isEmpty()) && !batch && inputPath != null && !new File(inputPath).isDirectory()) {
+            throw new IllegalArgumentException("--include and --exclude need a folder, --all or --recursive");
+        }
+        if (outputDir != null && !new File(outputDir).isDirectory()) {
+            throw new IllegalArgumentException("Output folder does not exist: " + outputDir);
+        }
+        if (check && (watch || archivePath != null || search || incremental)) {
+            throw new IllegalArgumentException("--check cannot be combined with --watch, --archive, --search or --incremental");
+        }
+        if (!validate && (check || validationReportPath != null)) {
+            throw new IllegalArgumentException("--no-validate cannot be combined with --check or --validation-report");
+        }
+        if (search) {
+            if (archivePath != null) {
+                throw new IllegalArgumentException("--search cannot be combined with --archive");
+            }
+            if (!batch && inputPath != null && !new File(inputPath).isDirectory()) {
+                throw new IllegalArgumentException("--search needs a folder, --all or --recursive");
+            }
+        }
+        if (archivePath != null) {
+            if (incremental || watch) {
+                throw new IllegalArgumentException("--archive cannot be combined with --incremental or --watch");
+            }
+            File parent = new File(archivePath).getAbsoluteFile().getParentFile();
+            if (parent == null || !parent.isDirectory()) {
+                throw new IllegalArgumentException("Folder for the archive does not exist: " + parent);
+            }
+        }
+        return true;
+    }
+
+    // "docx,html,html-dark": any mix; plain "html" is the dark page when --dark is given
+    private static Set<ConversionRunner.Target> parseTargets(String formats, boolean dark) {
+        Set<ConversionRunner.Target> targets = EnumSet.noneOf(ConversionRunner.Target.class);
+        for (String format : formats.split(",")) {
+            switch (format.trim()) {
+                case "docx":
+                    targets.add(ConversionRunner.Target.DOCX);
+                    break;
+                case "html":
+                    targets.add(dark ? ConversionRunner.Target.HTML_DARK : ConversionRunner.Target.HTML_LIGHT);
+                    break;
+                case "html-dark":
+                    targets.add(ConversionRunner.Target.HTML_DARK);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown format '" + format.trim() + "' (expected docx, html or html-dark)");
+            }
+        }
+        return targets;
+    }
+
+    private static int number(String value, String option, int min) {
+        int n;
+        try {
+            n = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " expects a number");
+        }
+        if (n < min) throw new IllegalArgumentException(option + " must be at least " + min);
+        return n;
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException(option + " expects a value");
+        }
+        return args[index];
+    }
+
+    private static String summaryJson(BatchExecutor.Summary summary, long firstOutputMillis, ValidationReport validation) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("succeeded", summary.succeeded);
+        json.put("failed", summary.failed);
+        json.put("skipped", summary.skipped);
+        json.put("wallMillis", summary.wallMillis);
+        json.put("filesPerSecond", Math.round(summary.filesPerSecond() * 100.0) / 100.0);
+        json.put("firstOutputMillis", summary.firstOutputMillis);
+        json.put("firstOutputMillisSinceJvmStart", firstOutputMillis);
+        FragmentCache fragments = FragmentCache.shared();
+        if (fragments != null) {
+            Map<String, Object> cache = new LinkedHashMap<>();
+            cache.put("memoryHits", fragments.getMemoryHits());
+            cache.put("diskHits", fragments.getDiskHits());
+            cache.put("misses", fragments.getMisses());
+            cache.put("hitRate", Math.round(fragments.hitRate() * 1000.0) / 1000.0);
+            json.put("fragmentCache", cache);
+        }
+        if (validation != null) {
+            Map<String, Object> checked = new LinkedHashMap<>();
+            checked.put("files", validation.files());
+            checked.put("invalid", validation.invalidFiles());
+            checked.put("warnings", validation.warnings());
+            json.put("validation", checked);
+        }
+        List<Map<String, Object>> files = new ArrayList<>();
+        for (BatchExecutor.FileResult r : summary.results) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("input", r.file.getAbsolutePath());
+            entry.put("output", r.output);
+            entry.put("success", r.isSuccess());
+            entry.put("skipped", r.skipped);
+            entry.put("error", r.error);
+            entry.put("millis", r.millis);
+            files.add(entry);
+        }
+        json.put("files", files);
+        return new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().serializeNulls().create().toJson(json);
+    }
+
+    private static void printUsage() {
+        System.out.println(String.join("\n",
+                "Usage: java -cp JsonConverter.jar JsonConverterCli [options] <input file or folder>",
+                "       java -cp JsonConverter.jar JsonConverterCli --serve [options] [episode folder]",
+                "",
+                "Options:",
+                "  -a, --all              Convert all JSON files in the input's folder (implied for a folder)",
+                "  -r, --recursive        Also convert the JSON files in all sub-folders, mirroring them in the",
+                "                         output folder (implies --all); the largest files are converted first",
+                "      --include GLOB     Only convert files matching GLOB (repeatable). A glob with / matches the",
+                "                         path below the input folder, any other the file name: 'en/**', '*-final.json'",
+                "      --exclude GLOB     Leave out files and folders matching GLOB (repeatable)",
+                "  -s, --strings FILE     App strings file (.json or .txt)",
+                "      --save-strings     Save a .txt strings file as .json next to the original",
+                "  -f, --format FORMATS   docx (default), html or html-dark, or several separated by commas;",
+                "                         all are rendered from one parse (html + html-dark writes <name>-dark.html)",
+                "  -l, --lang TAG         Spell-checking language for DOCX (default en-GB)",
+                "  -d, --dark             Dark mode for HTML",
+                "      --archive FILE     Write every output into one ZIP file with a manifest.json instead of separate files",
+                "      --check            Only validate the input files against the episode structure and list the problems",
+                "      --no-validate      Convert without checking the files first",
+                "      --validation-report FILE  Save the validation problems as JSON, or CSV if FILE ends in .csv",
+                "      --search           Index the batch and write " + SearchIndex.PAGE_NAME + ", an offline search page, to the",
+                "                         output folder; later runs update the index",
+                "      --shared-assets    HTML pages link one stylesheet and script in assets/ instead of inlining them",
+                "      --docx-writer W    poi (default) or stream: write DOCX parts directly, with flat memory use",
+                "  -o, --output DIR       Output folder (default: next to each input)",
+                "  -j, --jobs N           Parallel jobs in batch mode (default: CPU count)",
+                "      --json-summary     Print a machine-readable JSON summary to stdout",
+                "  -i, --incremental      Skip files whose output is up to date (see " + BuildManifest.FILE_NAME + ")",
+                "      --metrics FILE     Time each conversion phase; print p50/p95/max and save per-file rows (.json or .csv)",
+                "  -w, --watch            After converting, keep running and re-render files as they are saved",
+                "      --serve            Run a local HTTP conversion service instead (POST /convert, GET /preview)",
+                "      --port N           Port for --serve (default " + ConversionServer.DEFAULT_PORT + ")",
+                "      --queue N          Requests allowed to wait for a worker before answering 503 (default 16)",
+                "  -q, --quiet            Only print errors",
+                "  -h, --help             Show this help",
+                "",
+                "Exit codes: 0 success, 1 some files failed, 2 usage error, 3 fatal error"));
+    }
+}
@@ -1,6 +1,4 @@
 import com.formdev.flatlaf.FlatLaf;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import org.apache.commons.io.FilenameUtils;
 
 import javax.swing.*;
@@ -13,28 +11,25 @@ import java.awt.Toolkit;
 import java.awt.desktop.AboutEvent;
 import java.awt.desktop.AboutHandler;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.Writer;
-import java.lang.reflect.Field;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
 import java.util.prefs.Preferences;
 import java.util.prefs.BackingStoreException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class JsonConverterGui extends JFrame implements AboutHandler {
 
-    private final JRadioButton docxRadioButton;
-    private final JRadioButton htmlRadioButton;
+    private final JCheckBox docxCheckbox;
+    private final JCheckBox htmlCheckbox;
+    private final JCheckBox htmlDarkCheckbox;
     private final JCheckBox processAllCheckbox;
+    private final JCheckBox recursiveCheckbox;
+    private final JCheckBox searchCheckbox;
     private final JCheckBox enableOutputCheckbox;
-    private final JCheckBox darkModeCheckbox;
     private final JTextField inputField;
     private final JTextField stringsField;
     private final JTextField outputField;
@@ -42,19 +37,29 @@ public class JsonConverterGui extends JFrame implements AboutHandler {
     private final JButton outputBrowseButton;
     private final JButton stringsBrowseButton;
     private final JButton runButton;
+    private final JButton cancelButton;
+    private final JProgressBar progressBar;
+    private final JToggleButton watchToggle;
     private final JComboBox<String> languageComboBox;
     private final JTextArea logArea;
+    private final LogConsole logConsole;
     private final JComboBox<ThemeInfo> themeComboBox;
     private final JCheckBox saveStringsAsJsonCheckbox;
+    private final JSpinner workersSpinner;
+    private final JCheckBox incrementalCheckbox;
+    private final JCheckBox metricsCheckbox;
+    private final JCheckBox saveLogCheckbox;
+    private final JCheckBox sharedAssetsCheckbox;
 
     // Added for conditional visibility
     private final JLabel languageLabel;
 
-    private Class<?> docxScriptClass;
-    private Class<?> htmlScriptClass;
-
     private static final Preferences prefs = Preferences.userNodeForPackage(JsonConverterGui.class);
     private String lastUsedDirectory;
+    private volatile boolean firstConversionLogged;
+    private FolderWatcher watcher; // only touched on the EDT
+    private volatile BatchExecutor runningBatch;
+    private volatile BatchExecutor.Progress batchProgress;
 
     private static class ThemeInfo {
         String name;
@@ -109,23 +114,31 @@ public class JsonConverterGui extends JFrame implements AboutHandler {
         // Row 0: Conversion Format
         gbc.gridx = 0; gbc.gridy = 0; 
         formPanel.add(new JLabel("Conversion Format:"), gbc);
-        docxRadioButton = new JRadioButton("Convert to DOCX", true);
-        htmlRadioButton = new JRadioButton("Convert to HTML");
-        ButtonGroup formatGroup = new ButtonGroup();
-        formatGroup.add(docxRadioButton);
-        formatGroup.add(htmlRadioButton);
+        // Any mix of formats; each episode is parsed once and rendered to all of them
+        docxCheckbox = new JCheckBox("DOCX", true);
+        htmlCheckbox = new JCheckBox("HTML");
+        htmlDarkCheckbox = new JCheckBox("HTML (Dark Mode)");
+        htmlDarkCheckbox.setToolTipText("With HTML also ticked, the dark page is saved as <name>-dark.html");
         JPanel radioPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
-        radioPanel.add(docxRadioButton);
-        radioPanel.add(htmlRadioButton);
+        radioPanel.add(docxCheckbox);
+        radioPanel.add(htmlCheckbox);
+        radioPanel.add(htmlDarkCheckbox);
         gbc.gridx = 1; formPanel.add(radioPanel, gbc);
-//        darkModeCheckbox = new JCheckBox("Dark Mode");
-//        gbc.gridx = 2;
-//        formPanel.add(darkModeCheckbox, gbc);
         
         // Row 1: "Convert all" checkbox
         gbc.gridx = 0; gbc.gridy = 1; gbc.gridwidth = 4;
         processAllCheckbox = new JCheckBox("Convert all JSON files in the selected folder");
-        formPanel.add(processAllCheckbox, gbc);
+        recursiveCheckbox = new JCheckBox("Include subfolders", prefs.getBoolean("recursive", false));
+        recursiveCheckbox.setToolTipText("Also convert the JSON files in all subfolders; with an output folder, the subfolders are recreated there");
+        recursiveCheckbox.addActionListener(e -> prefs.putBoolean("recursive", recursiveCheckbox.isSelected()));
+        searchCheckbox = new JCheckBox("Search page", prefs.getBoolean("searchIndex", false));
+        searchCheckbox.setToolTipText("Index the episodes and write " + SearchIndex.PAGE_NAME + ", a search page that works offline, next to the outputs");
+        searchCheckbox.addActionListener(e -> prefs.putBoolean("searchIndex", searchCheckbox.isSelected()));
+        JPanel batchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        batchPanel.add(processAllCheckbox);
+        batchPanel.add(recursiveCheckbox);
+        batchPanel.add(searchCheckbox);
+        formPanel.add(batchPanel, gbc);
         gbc.gridwidth = 1; // Reset gridwidth
 
         // Row 2: Input
@@ -171,38 +184,73 @@ public class JsonConverterGui extends JFrame implements AboutHandler {
         languageComboBox.setSelectedItem("en-GB");
         gbc.gridx = 1; gbc.gridwidth = 3; formPanel.add(languageComboBox, gbc);
 
-        darkModeCheckbox = new JCheckBox("Dark Mode");
-        gbc.gridx = 0; gbc.gridy = 7; gbc.gridwidth = 3;
-        formPanel.add(darkModeCheckbox, gbc);
-        darkModeCheckbox.setVisible(false);
-
         logArea = new JTextArea();
         logArea.setEditable(false);
         logArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
         JScrollPane logScrollPane = new JScrollPane(logArea);
+        progressBar = new JProgressBar();
+        progressBar.setStringPainted(true);
+        progressBar.setString("");
+        // Log lines and progress are both refreshed by the log's timer, never per file
+        logConsole = new LogConsole(logArea, this::updateProgressBar);
         runButton = new JButton("Run Conversion");
         runButton.setPreferredSize(new Dimension(500, runButton.getPreferredSize().height + 4));
+        cancelButton = new JButton("Cancel");
+        cancelButton.setToolTipText("Stop the batch after the files being converted now");
+        cancelButton.setEnabled(false);
 
         JPanel bottomPanel = new JPanel(new BorderLayout(5, 5));
         
-        JPanel runPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 0, 0));
+        watchToggle = new JToggleButton("Watch for Changes");
+        watchToggle.setToolTipText("Re-render episodes automatically whenever they or the strings file are saved");
+
+        JPanel runPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 5, 0));
         runPanel.add(runButton);
+        runPanel.add(cancelButton);
+        runPanel.add(watchToggle);
         
         JPanel settingsPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 5, 0));
         settingsPanel.add(new JLabel("Theme:"));
         settingsPanel.add(themeComboBox);
         
+        settingsPanel.add(new JLabel("Parallel jobs:"));
+        int savedWorkers = prefs.getInt("workers", BatchExecutor.defaultWorkers());
+        workersSpinner = new JSpinner(new SpinnerNumberModel(Math.max(1, Math.min(savedWorkers, 64)), 1, 64, 1));
+        workersSpinner.setToolTipText("Number of files converted at the same time in batch mode");
+        workersSpinner.addChangeListener(e -> prefs.putInt("workers", (Integer) workersSpinner.getValue()));
+        settingsPanel.add(workersSpinner);
+
+        incrementalCheckbox = new JCheckBox("Skip unchanged", prefs.getBoolean("incremental", false));
+        incrementalCheckbox.setToolTipText("Only convert files whose JSON, strings file or options changed since the last run");
+        incrementalCheckbox.addActionListener(e -> prefs.putBoolean("incremental", incrementalCheckbox.isSelected()));
+        settingsPanel.add(incrementalCheckbox);
+
+        sharedAssetsCheckbox = new JCheckBox("Shared CSS/JS", prefs.getBoolean("sharedAssets", false));
+        sharedAssetsCheckbox.setToolTipText("HTML pages link one stylesheet and script in an assets folder instead of each carrying a copy");
+        sharedAssetsCheckbox.addActionListener(e -> prefs.putBoolean("sharedAssets", sharedAssetsCheckbox.isSelected()));
+        settingsPanel.add(sharedAssetsCheckbox);
+
+        metricsCheckbox = new JCheckBox("Record metrics", prefs.getBoolean("metrics", false));
+        metricsCheckbox.setToolTipText("Time each conversion phase and save " + ConversionMetrics.FILE_NAME + ".json/.csv next to the outputs");
+        metricsCheckbox.addActionListener(e -> prefs.putBoolean("metrics", metricsCheckbox.isSelected()));
+        settingsPanel.add(metricsCheckbox);
+
+        saveLogCheckbox = new JCheckBox("Save log", prefs.getBoolean("saveLog", false));
+        saveLogCheckbox.setToolTipText("Write the complete log of each run to w121-log.txt next to the outputs; the window keeps only the latest lines");
+        saveLogCheckbox.addActionListener(e -> prefs.putBoolean("saveLog", saveLogCheckbox.isSelected()));
+        settingsPanel.add(saveLogCheckbox);
+
         JButton resetButton = new JButton("Reset Settings");
         settingsPanel.add(resetButton);
         
         bottomPanel.add(runPanel, BorderLayout.NORTH);
+        bottomPanel.add(progressBar, BorderLayout.CENTER);
         bottomPanel.add(settingsPanel, BorderLayout.SOUTH);
         
         add(formPanel, BorderLayout.NORTH);
         add(logScrollPane, BorderLayout.CENTER);
         add(bottomPanel, BorderLayout.SOUTH);
 
-        setupGroovyScripts();
         loadAppIcon();
         
         stringsField.getDocument().addDocumentListener(new DocumentListener() {
@@ -215,14 +263,12 @@ public class JsonConverterGui extends JFrame implements AboutHandler {
         });
         
         Runnable updateLanguageFieldVisibility = () -> {
-            boolean isDocx = docxRadioButton.isSelected();
+            boolean isDocx = docxCheckbox.isSelected();
             languageLabel.setVisible(isDocx);
             languageComboBox.setVisible(isDocx);
-            darkModeCheckbox.setVisible(!isDocx);
         };
         
-        htmlRadioButton.addActionListener(e -> updateLanguageFieldVisibility.run());
-        docxRadioButton.addActionListener(e -> updateLanguageFieldVisibility.run());
+        docxCheckbox.addActionListener(e -> updateLanguageFieldVisibility.run());
         updateLanguageFieldVisibility.run(); // Initial setup
 
         try {
@@ -272,11 +318,15 @@ public class JsonConverterGui extends JFrame implements AboutHandler {
         stringsBrowseButton.addActionListener(e -> openFileChooser(stringsField, "strings"));
         outputBrowseButton.addActionListener(e -> openFileChooser(outputField, "output"));
         runButton.addActionListener(e -> runConversion());
+        cancelButton.addActionListener(e -> cancelConversion());
+        watchToggle.addActionListener(e -> toggleWatch());
         
         updateFileChooserBehavior();
         updateOutputBrowseEnabled();
         setLocationRelativeTo(null);
         setVisible(true);
+        log("Window shown " + StartupClock.millisSinceJvmStart() + " ms after JVM start");
+        setupConverters();
     }
     
     private void resetSettings() {
@@ -297,6 +347,13 @@ public class JsonConverterGui extends JFrame implements AboutHandler {
                 FlatLaf.updateUI();
                 
                 themeComboBox.setSelectedIndex(0);
+                workersSpinner.setValue(BatchExecutor.defaultWorkers());
+                incrementalCheckbox.setSelected(false);
+                recursiveCheckbox.setSelected(false);
+                searchCheckbox.setSelected(false);
+                sharedAssetsCheckbox.setSelected(false);
+                metricsCheckbox.setSelected(false);
+                saveLogCheckbox.setSelected(false);
                 
                 lastUsedDirectory = System.getProperty("user.home");
                 inputField.setText("");
@@ -408,19 +465,10 @@ public class JsonConverterGui extends JFrame implements AboutHandler {
         SwingUtilities.invokeLater(JsonConverterGui::new);
     }
 
-    private static String guitxtToJson(String guitxt) {
-        Pattern pattern = Pattern.compile("Key:\\s*\"([^\"]+)\",\\s*Value:\\s*\"([^\"]+)\"\\s*;?");
-        Matcher matcher = pattern.matcher(guitxt);
-        Map<String, String> map = new LinkedHashMap<>();
-        while (matcher.find()) {
-            map.put(matcher.group(1), matcher.group(2));
-        }
-        Gson gson = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
-        return gson.toJson(map);
-    }
-    
     private void updateFileChooserBehavior() {
         inputBrowseButton.setText(processAllCheckbox.isSelected() ? "Select Folder..." : "Select File...");
+        recursiveCheckbox.setEnabled(processAllCheckbox.isSelected());
+        searchCheckbox.setEnabled(processAllCheckbox.isSelected());
     }
 
     private void openFileChooser(JTextField targetField, String fieldType) {
@@ -449,7 +497,7 @@ public class JsonConverterGui extends JFrame implements AboutHandler {
         if ("output".equals(fieldType) && !processAllCheckbox.isSelected() && !inputField.getText().trim().isEmpty()) {
             String inputFileName = new File(inputField.getText().trim()).getName();
             String baseName = FilenameUtils.getBaseName(inputFileName);
-            String extension = docxRadioButton.isSelected() ? ".docx" : ".html";
+            String extension = docxCheckbox.isSelected() || !(htmlCheckbox.isSelected() || htmlDarkCheckbox.isSelected()) ? ".docx" : ".html";
             chooser.setSelectedFile(new File(chooser.getCurrentDirectory(), baseName + extension));
         }
 
@@ -468,23 +516,34 @@ public class JsonConverterGui extends JFrame implements AboutHandler {
         }
     }
     
-    private void setupGroovyScripts() {
-        log("Locating compiled Groovy scripts...");
-        try {
-            docxScriptClass = Class.forName("JsonToDocxScript");
-            htmlScriptClass = Class.forName("JsonToHtmlScript");
-            log("Scripts located successfully.");
-        } catch (ClassNotFoundException e) {
-            String errorMsg = "FATAL ERROR: Could not find a required script class.\n" + e.getMessage();
-            log(errorMsg);
-            JOptionPane.showMessageDialog(this, errorMsg, "Fatal Error", JOptionPane.ERROR_MESSAGE);
-            runButton.setEnabled(false);
-        }
+    // Runs once the window is shown, off the EDT: locating the converters starts the Groovy runtime,
+    // which the window does not need. POI, XMLBeans and Batik are left for the first DOCX job.
+    private void setupConverters() {
+        log("Locating converters...");
+        Thread setup = new Thread(() -> {
+            try {
+                new ConversionRunner(EnumSet.allOf(ConversionRunner.Target.class), null, null, null).locateConverter();
+                log("Converters located successfully.");
+            } catch (IllegalStateException e) {
+                String errorMsg = "FATAL ERROR: " + e.getMessage();
+                log(errorMsg);
+                SwingUtilities.invokeLater(() -> {
+                    JOptionPane.showMessageDialog(this, errorMsg, "Fatal Error", JOptionPane.ERROR_MESSAGE);
+                    runButton.setEnabled(false);
+                });
+            }
+        }, "converter-setup");
+        setup.setDaemon(true);
+        setup.start();
     }
-    
+
     private void runConversion() {
         runButton.setEnabled(false);
-        logArea.setText("");
+        logConsole.clear();
+        batchProgress = null;
+        progressBar.setIndeterminate(false);
+        progressBar.setValue(0);
+        progressBar.setString("");
         log("--- Starting New Conversion ---");
 
         final String inputPath = inputField.getText().trim();
@@ -492,125 +551,284 @@ public class JsonConverterGui extends JFrame implements AboutHandler {
         final boolean saveStrings = saveStringsAsJsonCheckbox.isSelected();
         final String lang = (String) languageComboBox.getSelectedItem();
         final boolean isBatchMode = processAllCheckbox.isSelected();
-        final boolean isHtmlMode = htmlRadioButton.isSelected();
-        final boolean useDarkMode = darkModeCheckbox.isSelected();
+        final boolean recursive = recursiveCheckbox.isSelected();
+        final boolean searchIndex = searchCheckbox.isSelected();
+        final Set<ConversionRunner.Target> targets = selectedTargets();
         final boolean specifyOutput = enableOutputCheckbox.isSelected();
         final String outputDir = outputField.getText().trim();
+        final int workers = (Integer) workersSpinner.getValue();
+        final boolean incremental = incrementalCheckbox.isSelected();
+        final boolean recordMetrics = metricsCheckbox.isSelected();
 
         if (inputPath.isEmpty()) {
             log("ERROR: Input path must be provided.");
             runButton.setEnabled(true);
             return;
         }
+        if (targets.isEmpty()) {
+            log("ERROR: Select at least one conversion format.");
+            runButton.setEnabled(true);
+            return;
+        }
+
+        final ConversionRunner runner = new ConversionRunner(targets, lang, specifyOutput ? outputDir : null, this::log);
+        runner.setIncremental(incremental);
+        runner.setSharedAssets(sharedAssetsCheckbox.isSelected());
+        runner.setValidation(new ValidationReport(isBatchMode ? ConversionRunner.batchFolder(inputPath) : new File(inputPath).getAbsoluteFile().getParentFile()));
+        if (recordMetrics) runner.setMetrics(new ConversionMetrics());
+        if (saveLogCheckbox.isSelected() && !(specifyOutput && outputDir.isEmpty())) {
+            File logFile = new File(specifyOutput ? new File(outputDir) : ConversionRunner.batchFolder(inputPath), "w121-log.txt");
+            try {
+                logConsole.spillTo(logFile);
+            } catch (IOException e) {
+                log("Warning: Could not write the log to " + logFile.getPath() + ": " + e.getMessage());
+            }
+        }
 
         new Thread(() -> {
-            String effectiveStringsPath = initialStringsPath;
             try {
-                if (!initialStringsPath.isEmpty() && initialStringsPath.toLowerCase().endsWith(".txt")) {
-                    log("Converting strings file: " + new File(initialStringsPath).getName());
-                    String txtContent = new String(Files.readAllBytes(Paths.get(initialStringsPath)), StandardCharsets.UTF_8);
-                    String jsonContent = guitxtToJson(txtContent);
-
-                    File outputFile;
-                    if (saveStrings) {
-                        String jsonOutputPath = FilenameUtils.removeExtension(initialStringsPath) + ".json";
-                        outputFile = new File(jsonOutputPath);
-                        log("Saving converted strings to: " + outputFile.getName());
-                    } else {
-                        outputFile = File.createTempFile("temp_strings_", ".json");
-                        outputFile.deleteOnExit();
-                        log("Using temporary strings JSON: " + outputFile.getName());
-                    }
-                    
-                    try (Writer writer = new FileWriter(outputFile, StandardCharsets.UTF_8)) {
-                        writer.write(jsonContent);
-                    }
-                    effectiveStringsPath = outputFile.getAbsolutePath();
+                if (specifyOutput && outputDir.isEmpty()) {
+                    log("ERROR: Please specify an output directory when the checkbox is enabled.");
+                    return;
                 }
+                runner.locateConverter();
+                StringsRepository.Strings strings = runner.prepareStrings(initialStringsPath, saveStrings);
 
                 if (isBatchMode) {
-                    File inputFile = new File(inputPath);
-                    String dirPath = inputFile.isDirectory() ? inputFile.getAbsolutePath() : inputFile.getParent();
-                    File inputDir = new File(dirPath);
-
-                    File[] files = inputDir.listFiles((dir, name) -> name.toLowerCase().endsWith(".json"));
-                    if (files == null || files.length == 0) {
-                        log("No .json files found in the specified directory: " + dirPath);
+                    File inputDir = ConversionRunner.batchFolder(inputPath);
+                    InputDiscovery discovery = new InputDiscovery(inputDir, recursive,
+                            Collections.emptyList(), Collections.emptyList(), this::log);
+                    if (specifyOutput) discovery.skipFolder(new File(outputDir));
+                    discovery.skipStrings(initialStringsPath);
+                    if (recursive) runner.setInputRoot(inputDir);
+                    if (searchIndex) runner.setSearchIndex(SearchIndex.open(specifyOutput ? new File(outputDir) : inputDir, this::log));
+                    BatchExecutor executor = new BatchExecutor(workers, runner.holdsDocxInMemory(), this::log);
+                    executor.setProgressListener(p -> batchProgress = p);
+                    runningBatch = executor;
+                    SwingUtilities.invokeLater(() -> {
+                        cancelButton.setEnabled(true);
+                        progressBar.setIndeterminate(true);
+                        progressBar.setString("Looking for files...");
+                    });
+                    log("Converting JSON files in " + inputDir.getPath() + (recursive ? " and its subfolders" : "")
+                            + " as they are found (" + executor.getWorkers() + " parallel jobs"
+                            + (runner.holdsDocxInMemory() ? ", at most " + executor.getHeavyJobLimit() + " DOCX in memory" : "") + ")");
+                    BatchExecutor.Summary summary = executor.run(discovery, file -> runner.convert(file, strings),
+                            file -> runner.upToDateOutput(file, strings));
+                    if (summary.results.isEmpty() && !summary.cancelled) {
+                        log("No .json files found in the specified directory: " + inputDir.getPath());
                         return;
                     }
-                    log("Found " + files.length + " JSON files to process in " + dirPath);
-                    for (File file : files) {
-                        processSingleFile(file, effectiveStringsPath, lang, isHtmlMode, useDarkMode, specifyOutput, outputDir);
+                    log("Found " + discovery.found() + " JSON files in " + discovery.walkMillis() + " ms");
+                    log("Batch summary: " + summary);
+                    if (!runner.isHtml()) {
+                        log("Artwork cache: " + SvgRasterCache.shared().stats());
+                    }
+                    if (FragmentCache.shared() != null) {
+                        log("Fragment cache: " + FragmentCache.shared().stats());
+                    }
+                    if (runner.getSearchIndex() != null) {
+                        try {
+                            runner.getSearchIndex().save();
+                            log("Search page for " + runner.getSearchIndex().size() + " episodes written to " + runner.getSearchIndex().getPage().getPath());
+                        } catch (IOException e) {
+                            log("Warning: Could not write the search index: " + e.getMessage());
+                        }
                     }
                 } else {
-                    processSingleFile(new File(inputPath), effectiveStringsPath, lang, isHtmlMode, useDarkMode, specifyOutput, outputDir);
+                    processSingleFile(runner, new File(inputPath), strings);
+                }
+                if (runner.getValidation().hasProblems()) {
+                    log("Validation: " + runner.getValidation());
+                    for (String line : runner.getValidation().lines()) {
+                        log("  " + line);
+                    }
+                }
+                runner.saveManifests();
+                if (recordMetrics) {
+                    reportMetrics(runner.getMetrics(), specifyOutput ? new File(outputDir) : ConversionRunner.batchFolder(inputPath));
                 }
+                logFirstConversion();
                 log("--- Conversion Finished ---");
             } catch (Exception e) {
                 log("An unexpected error occurred: " + e.getMessage());
-                e.printStackTrace();
+                logStackTrace(e);
             } finally {
-                SwingUtilities.invokeLater(() -> runButton.setEnabled(true));
+                BatchExecutor finished = runningBatch;
+                runningBatch = null;
+                SwingUtilities.invokeLater(() -> {
+                    File logFile = logConsole.endSpill();
+                    if (logFile != null) log("Log saved to " + logFile.getPath());
+                    BatchExecutor.Progress last = batchProgress;
+                    batchProgress = null;
+                    progressBar.setIndeterminate(false);
+                    if (last != null) {
+                        showProgress(last, finished != null && finished.isCancelled());
+                    } else if (finished != null) {
+                        progressBar.setString(finished.isCancelled() ? "Cancelled" : "");
+                    }
+                    cancelButton.setEnabled(false);
+                    runButton.setEnabled(true);
+                });
             }
         }).start();
     }
-    
-    private void processSingleFile(File inputFile, String stringsPath, String lang, boolean isHtml, boolean useDarkMode, boolean specifyOutput, String outputDir) {
-        try {
-            Class<?> scriptClass = isHtml ? htmlScriptClass : docxScriptClass;
-            String extension = isHtml ? ".html" : ".docx";
 
-            if (scriptClass == null) {
-                log("ERROR: No script available for the selected format.");
-                return;
+    private void cancelConversion() {
+        BatchExecutor batch = runningBatch;
+        if (batch == null || batch.isCancelled()) return;
+        batch.cancel();
+        cancelButton.setEnabled(false);
+        log("--- Cancelling: finishing the files being converted, starting no new ones ---");
+    }
+
+    // Called by the log's timer on the EDT; shows the latest counts reported by the running batch
+    private void updateProgressBar() {
+        BatchExecutor.Progress p = batchProgress;
+        if (p != null) showProgress(p, false);
+    }
+
+    private void showProgress(BatchExecutor.Progress p, boolean cancelled) {
+        progressBar.setIndeterminate(false);
+        progressBar.setMaximum(Math.max(1, p.total));
+        progressBar.setValue(p.done);
+        String more = p.allFound ? "" : "+";
+        String text = p.done + " of " + p.total + more + " done, " + p.failed + " failed";
+        if (cancelled) {
+            text += ", cancelled with " + p.remaining() + more + " not converted";
+        } else if (p.allFound && p.remaining() == 0) {
+            text += " in " + formatDuration(p.elapsedMillis);
+        } else {
+            long eta = p.etaMillis();
+            text += ", " + p.remaining() + more + " remaining" + (eta >= 0 ? ", about " + formatDuration(eta) + " left" : "");
+        }
+        progressBar.setString(text);
+    }
+
+    private static String formatDuration(long millis) {
+        long seconds = (millis + 999) / 1000;
+        return seconds >= 3600
+                ? String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60)
+                : String.format("%d:%02d", seconds / 60, seconds % 60);
+    }
+    
+    private void toggleWatch() {
+        if (!watchToggle.isSelected()) {
+            if (watcher != null) {
+                watcher.close();
+                watcher = null;
+                log("--- Stopped watching ---");
             }
+            return;
+        }
+        final String inputPath = inputField.getText().trim();
+        final String stringsPath = stringsField.getText().trim();
+        final boolean isBatchMode = processAllCheckbox.isSelected();
+        final boolean recursive = isBatchMode && recursiveCheckbox.isSelected();
+        final Set<ConversionRunner.Target> targets = selectedTargets();
+        final boolean specifyOutput = enableOutputCheckbox.isSelected();
+        final String outputDir = outputField.getText().trim();
+        final int workers = (Integer) workersSpinner.getValue();
+        if (inputPath.isEmpty() || (specifyOutput && outputDir.isEmpty()) || targets.isEmpty()) {
+            log("ERROR: Input path, a conversion format (and the output directory, if enabled) must be provided to watch for changes.");
+            watchToggle.setSelected(false);
+            return;
+        }
 
-            String outputFilePath;
-            if (specifyOutput) {
-                if (outputDir.isEmpty()) {
-                    log("ERROR: Please specify an output directory when the checkbox is enabled.");
-                    return;
+        final ConversionRunner runner = new ConversionRunner(targets,
+                (String) languageComboBox.getSelectedItem(), specifyOutput ? outputDir : null, this::log);
+        runner.setIncremental(incrementalCheckbox.isSelected());
+        runner.setSharedAssets(sharedAssetsCheckbox.isSelected());
+        runner.setValidation(new ValidationReport(isBatchMode ? ConversionRunner.batchFolder(inputPath) : new File(inputPath).getAbsoluteFile().getParentFile()));
+        new Thread(() -> {
+            try {
+                runner.locateConverter();
+                StringsRepository.Strings strings = runner.prepareStrings(stringsPath, false);
+                File input = isBatchMode ? ConversionRunner.batchFolder(inputPath) : new File(inputPath);
+                InputDiscovery scope = null;
+                if (isBatchMode) {
+                    // The same files as a batch run: sub-folders when recursive, never the output folder
+                    scope = new InputDiscovery(input, recursive, Collections.emptyList(), Collections.emptyList(), this::log);
+                    if (specifyOutput) scope.skipFolder(new File(outputDir));
+                    scope.skipStrings(stringsPath);
+                    if (recursive) runner.setInputRoot(input);
                 }
-                String baseName = FilenameUtils.getBaseName(inputFile.getName());
-                outputFilePath = new File(outputDir, baseName + extension).getAbsolutePath();
-            } else {
-                outputFilePath = new File(inputFile.getParent(), FilenameUtils.getBaseName(inputFile.getName()) + extension).getAbsolutePath();
+                FolderWatcher started = new FolderWatcher(runner, input, scope, stringsPath, strings, workers, this::log);
+                started.start();
+                SwingUtilities.invokeLater(() -> {
+                    if (watchToggle.isSelected() && watcher == null) {
+                        watcher = started;
+                    } else {
+                        started.close();
+                    }
+                });
+            } catch (Exception e) {
+                log("Could not start watching: " + BatchExecutor.describe(e));
+                SwingUtilities.invokeLater(() -> watchToggle.setSelected(false));
             }
+        }, "watch-start").start();
+    }
 
-            log("Processing: " + inputFile.getName() + " -> " + new File(outputFilePath).getName());
-            Object scriptInstance = scriptClass.getDeclaredConstructor().newInstance();
-            setScriptField(scriptClass, scriptInstance, "inputPath", inputFile.getAbsolutePath());
-            setScriptField(scriptClass, scriptInstance, "stringsPath", stringsPath);
-            setScriptField(scriptClass, scriptInstance, "outputPath", outputFilePath);
-            
-            if (!isHtml) {
-                setScriptField(scriptClass, scriptInstance, "lang", lang);
-            } else {
-                setScriptField(scriptClass, scriptInstance, "darkMode", useDarkMode);
-            }
+    private Set<ConversionRunner.Target> selectedTargets() {
+        Set<ConversionRunner.Target> targets = EnumSet.noneOf(ConversionRunner.Target.class);
+        if (docxCheckbox.isSelected()) targets.add(ConversionRunner.Target.DOCX);
+        if (htmlCheckbox.isSelected()) targets.add(ConversionRunner.Target.HTML_LIGHT);
+        if (htmlDarkCheckbox.isSelected()) targets.add(ConversionRunner.Target.HTML_DARK);
+        return targets;
+    }
 
-            scriptClass.getMethod("run").invoke(scriptInstance);
+    private void processSingleFile(ConversionRunner runner, File inputFile, StringsRepository.Strings strings) {
+        try {
+            if (runner.upToDateOutput(inputFile, strings) != null) {
+                log("Unchanged, skipped: " + inputFile.getName());
+                return;
+            }
+            log("Processing: " + inputFile.getName() + " -> " + new File(runner.outputPathFor(inputFile)).getName());
+            runner.convert(inputFile, strings);
+            ConversionMetrics.FileMetrics metrics = runner.getMetrics().last();
+            if (metrics != null) {
+                log("Timings: " + metrics);
+            }
         } catch (Exception e) {
-            Throwable cause = e.getCause();
-            String errorMessage = (cause != null) ? cause.getMessage() : e.getMessage();
-            log("Failed to process " + inputFile.getName() + ": " + errorMessage);
-            e.printStackTrace();
+            log("Failed to process " + inputFile.getName() + ": " + BatchExecutor.describe(e));
+            if (!(e instanceof EpisodeValidator.InvalidEpisodeException)) logStackTrace(e);
         }
     }
-    
-    private void setScriptField(Class<?> scriptClass, Object instance, String fieldName, Object value) throws NoSuchFieldException, IllegalAccessException {
-        if (value != null) {
-            Field field = scriptClass.getDeclaredField(fieldName);
-            field.setAccessible(true);
-            field.set(instance, value);
+
+    // Percentiles into the log, per-file rows into .w121-metrics.json and .csv in the output folder
+    private void reportMetrics(ConversionMetrics metrics, File dir) {
+        for (String line : metrics.report()) {
+            log(line);
+        }
+        File json = new File(dir, ConversionMetrics.FILE_NAME + ".json");
+        try {
+            metrics.write(json.toPath());
+            metrics.write(new File(dir, ConversionMetrics.FILE_NAME + ".csv").toPath());
+            log("Metrics saved to " + json.getPath() + " (and .csv)");
+        } catch (IOException e) {
+            log("Warning: Could not save metrics: " + e.getMessage());
+        }
+    }
+
+    // Cold-start reference for comparing against the CLI; only reported for the first run of a session
+    private void logFirstConversion() {
+        if (!firstConversionLogged) {
+            firstConversionLogged = true;
+            log("First conversion finished " + StartupClock.millisSinceJvmStart() + " ms after JVM start");
         }
     }
     
     private void log(String message) {
-        SwingUtilities.invokeLater(() -> {
-            logArea.append(message + "\n");
-            logArea.setCaretPosition(logArea.getDocument().getLength());
-        });
+        logConsole.accept(message);
+    }
+
+    // Into the log and its file, where a GUI user can find it, instead of a console they never see
+    private void logStackTrace(Throwable e) {
+        StringWriter trace = new StringWriter();
+        e.printStackTrace(new PrintWriter(trace));
+        for (String line : trace.toString().split("\\R")) {
+            log(line);
+        }
     }
     
     private void updateOutputBrowseEnabled() {
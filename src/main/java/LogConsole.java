@@ -0,0 +1,147 @@
+import javax.swing.JTextArea;
+import javax.swing.Timer;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * The GUI log: lines can be added from any thread without touching Swing.
+ * <p>
+ * Lines wait in a lock-free queue that a Swing timer drains on the event thread a few times a second,
+ * appending everything that arrived since the last tick in one edit and scrolling once. The text area
+ * keeps the most recent lines only, so a batch of thousands of files neither floods the event thread
+ * nor grows the document without limit. While a log file is open, every line is also written there.
+ */
+public final class LogConsole implements Consumer<String> {
+
+    private static final int MAX_LINES = Integer.getInteger("w121.logLines", 5000);
+    private static final int DRAIN_MILLIS = 100;
+
+    private final JTextArea area;
+    private final int maxLines;
+    private final ConcurrentLinkedQueue<String> pending = new ConcurrentLinkedQueue<>();
+    private final Timer timer;
+    private final Runnable onDrain;
+    private BufferedWriter spill; // only touched on the EDT
+    private File spillFile;
+
+    /**
+     * @param onDrain runs on the event thread after every tick, for other views that refresh at the same pace;
+     *                may be {@code null}
+     */
+    public LogConsole(JTextArea area, Runnable onDrain) {
+        this(area, MAX_LINES, onDrain);
+    }
+
+    LogConsole(JTextArea area, int maxLines, Runnable onDrain) {
+        this.area = area;
+        this.maxLines = Math.max(1, maxLines);
+        this.onDrain = onDrain;
+        this.timer = new Timer(DRAIN_MILLIS, e -> drain());
+        this.timer.setCoalesce(true);
+        this.timer.start();
+    }
+
+    /** Queues a line; safe to call from any thread. */
+    @Override
+    public void accept(String line) {
+        pending.add(line);
+    }
+
+    /** Empties the text area and drops lines not shown yet. Call on the event thread. */
+    public void clear() {
+        pending.clear();
+        area.setText("");
+    }
+
+    /**
+     * Also writes every following line to {@code file}, replacing it, until {@link #endSpill()}.
+     * Call on the event thread.
+     */
+    public void spillTo(File file) throws IOException {
+        endSpill();
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null) Files.createDirectories(dir.toPath());
+        spill = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+        spillFile = file;
+    }
+
+    /** Writes the lines still queued, closes the log file and returns it, or {@code null} if none was open. Call on the event thread. */
+    public File endSpill() {
+        if (spill == null) return null;
+        drain();
+        File file = spillFile;
+        try {
+            spill.close();
+        } catch (IOException e) {
+            append("Warning: Could not finish the log file " + file.getPath() + ": " + e.getMessage());
+        }
+        spill = null;
+        spillFile = null;
+        return file;
+    }
+
+    private void drain() {
+        if (!pending.isEmpty()) {
+            // Only the last maxLines of a burst can stay visible; the rest go to the log file only
+            ArrayDeque<String> shown = new ArrayDeque<>();
+            String line;
+            while ((line = pending.poll()) != null) {
+                writeSpill(line);
+                if (shown.size() == maxLines) shown.removeFirst();
+                shown.addLast(line);
+            }
+            StringBuilder chunk = new StringBuilder();
+            for (String s : shown) {
+                chunk.append(s).append('\n');
+            }
+            append(chunk.toString());
+        }
+        if (onDrain != null) onDrain.run();
+    }
+
+    private void append(String text) {
+        area.append(text.endsWith("\n") ? text : text + "\n");
+        trim();
+        area.setCaretPosition(area.getDocument().getLength());
+    }
+
+    // Removes the oldest lines beyond maxLines; the last element is the empty line after the final newline
+    private void trim() {
+        Document doc = area.getDocument();
+        Element root = doc.getDefaultRootElement();
+        int excess = root.getElementCount() - 1 - maxLines;
+        if (excess <= 0) return;
+        try {
+            doc.remove(0, root.getElement(excess).getStartOffset());
+        } catch (BadLocationException e) {
+            area.setText("");
+        }
+    }
+
+    private void writeSpill(String line) {
+        if (spill == null) return;
+        try {
+            spill.write(line);
+            spill.newLine();
+        } catch (IOException e) {
+            File file = spillFile;
+            try {
+                spill.close();
+            } catch (IOException ignored) {
+                // already failing
+            }
+            spill = null;
+            spillFile = null;
+            pending.add("Warning: Stopped writing the log file " + file.getPath() + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,179 @@
+import com.google.gson.stream.JsonWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * A single ZIP file receiving every output of a batch instead of one file per document, with a
+ * {@value #MANIFEST_NAME} entry listing what each document was rendered from and how long it took.
+ * <p>
+ * Workers render into memory and hand over the finished bytes; entries are appended one at a time.
+ * A DOCX is itself a deflated ZIP, so it is stored as it is; HTML and the manifest are deflated.
+ * The archive is written to a temporary file and renamed into place by {@link #close()}, so an
+ * interrupted run never leaves a truncated archive behind.
+ */
+public final class OutputArchive implements Closeable {
+
+    public static final String MANIFEST_NAME = "manifest.json";
+
+    /** One document in the archive and what it was rendered from. */
+    static final class Entry {
+        final String name;
+        final String format;
+        final BuildManifest.Fingerprint fingerprint;
+        final long bytes;
+        final long renderMillis;
+
+        Entry(String name, String format, BuildManifest.Fingerprint fingerprint, long bytes, long renderMillis) {
+            this.name = name;
+            this.format = format;
+            this.fingerprint = fingerprint;
+            this.bytes = bytes;
+            this.renderMillis = renderMillis;
+        }
+    }
+
+    /** Collects one document in memory; {@link #size()} and the bytes are handed to {@link #add}. */
+    public static final class Buffer extends ByteArrayOutputStream {
+        Buffer() {
+            super(64 * 1024);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+
+    private final Path file;
+    private final Path tmp;
+    private final ZipOutputStream zip;
+    private final List<Entry> entries = new ArrayList<>();
+    private final Set<String> names = new HashSet<>();
+    private final long started = System.currentTimeMillis();
+    private boolean closed;
+
+    private OutputArchive(Path file, Path tmp, ZipOutputStream zip) {
+        this.file = file;
+        this.tmp = tmp;
+        this.zip = zip;
+    }
+
+    public static OutputArchive create(Path file) throws IOException {
+        Path target = file.toAbsolutePath();
+        Path tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            OutputStream out = Files.newOutputStream(tmp);
+            return new OutputArchive(target, tmp, new ZipOutputStream(out, StandardCharsets.UTF_8));
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /** A fresh in-memory buffer for rendering one document. */
+    public Buffer newBuffer() {
+        return new Buffer();
+    }
+
+    /** How the entry is shown in the log: {@code archive.zip!/name}. */
+    public String displayPath(String name) {
+        return file + "!/" + name;
+    }
+
+    /**
+     * Appends a rendered document. Safe to call from several workers; each entry is written whole
+     * before the next begins. Throws {@link IOException} when the name is already taken.
+     */
+    public void add(String name, String format, Buffer content, BuildManifest.Fingerprint fingerprint, long renderMillis) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        if ("docx".equals(format)) {
+            // Stored entries need their size and checksum up front
+            CRC32 crc = new CRC32();
+            crc.update(content.array(), 0, content.size());
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(content.size());
+            entry.setCompressedSize(content.size());
+            entry.setCrc(crc.getValue());
+        }
+        synchronized (this) {
+            if (closed) throw new IOException("Archive already closed: " + file);
+            if (!names.add(name)) throw new IOException("Two outputs would both be named " + name + " in the archive");
+            zip.putNextEntry(entry);
+            zip.write(content.array(), 0, content.size());
+            zip.closeEntry();
+            entries.add(new Entry(name, format, fingerprint, content.size(), renderMillis));
+        }
+    }
+
+    /** Adds the manifest and moves the archive into place. */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            zip.putNextEntry(new ZipEntry(MANIFEST_NAME));
+            JsonWriter json = new JsonWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8));
+            json.setIndent("  ");
+            writeManifest(json);
+            json.flush();
+            zip.closeEntry();
+            zip.close();
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** Closes and deletes the unfinished archive, e.g. when the batch could not start. */
+    public synchronized void discard() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            zip.close();
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private void writeManifest(JsonWriter json) throws IOException {
+        json.beginObject();
+        json.name("converter").value(BuildManifest.converterVersion());
+        json.name("created").value(Instant.ofEpochMilli(started).toString());
+        json.name("entries").beginArray();
+        for (Entry e : entries) {
+            json.beginObject();
+            json.name("name").value(e.name);
+            json.name("format").value(e.format);
+            json.name("bytes").value(e.bytes);
+            json.name("renderMillis").value(e.renderMillis);
+            if (e.fingerprint != null) {
+                json.name("source").value(e.fingerprint.input);
+                json.name("sourceSha256").value(e.fingerprint.inputHash);
+                json.name("stringsSha256").value(e.fingerprint.stringsHash);
+                json.name("options").value(e.fingerprint.options);
+            }
+            json.endObject();
+        }
+        json.endArray();
+        json.endObject();
+    }
+}
@@ -0,0 +1,38 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Writes the run reports, {@link ConversionMetrics} and {@link ValidationReport}, as CSV or JSON, so both
+ * choose the format and escape CSV fields the same way.
+ */
+final class ReportFiles {
+
+    @FunctionalInterface
+    interface Body {
+        void write(Writer out) throws IOException;
+    }
+
+    private ReportFiles() {
+    }
+
+    /** Writes {@code file} as UTF-8 with {@code csv} when its name ends in .csv, otherwise with {@code json}. */
+    static void write(Path file, Body csv, Body json) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            if (file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv")) {
+                csv.write(out);
+            } else {
+                json.write(out);
+            }
+        }
+    }
+
+    /** {@code value} as one CSV field: quoted, with doubled quotes, when it holds a comma, quote or line break. */
+    static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
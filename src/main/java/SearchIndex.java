@@ -0,0 +1,393 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Full-text index over the episodes of a batch, saved next to the outputs with an offline search page.
+ * <p>
+ * Episodes are added from the worker threads right after they are parsed for rendering, so indexing
+ * needs no second read. Every term records in which fields of which episode it occurs: the title,
+ * scripture references, verses, notes, conclusions and the recap. The index is written as
+ * {@value #DATA_NAME}: sorted terms, each sharing its prefix with the one before, followed by its
+ * delta-coded postings, all gzip-compressed and wrapped in a script, so that {@value #PAGE_NAME}
+ * can load it from a local folder where a browser would refuse to fetch a data file.
+ * <p>
+ * An existing index is read back first: episodes converted again replace their entries, skipped
+ * (unchanged) ones keep them, and episodes whose source file has gone are dropped when saving.
+ */
+public final class SearchIndex {
+
+    public static final String PAGE_NAME = "w121-search.html";
+    public static final String DATA_NAME = "w121-search-index.js";
+
+    public static final int TITLE = 1;
+    public static final int REFERENCE = 2;
+    public static final int VERSE = 4;
+    public static final int NOTES = 8;
+    public static final int CONCLUSIONS = 16;
+    public static final int RECAP = 32;
+
+    private static final byte[] MAGIC = "W121IDX1".getBytes(StandardCharsets.US_ASCII);
+    private static final String DATA_PREFIX = "window.W121_SEARCH_INDEX = \"";
+    private static final String DATA_SUFFIX = "\";\n";
+
+    // A chapter:verse reference stays one term ("3:16"); otherwise runs of letters and digits.
+    // The search page splits queries with the same expression.
+    private static final Pattern TOKEN = Pattern.compile("\\p{N}+(?::\\p{N}+)+|[\\p{L}\\p{N}]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private static final class Doc {
+        final String source; // relative to the index folder, with / separators
+        final String href;
+        final String title;
+        boolean live = true;
+
+        Doc(String source, String href, String title) {
+            this.source = source;
+            this.href = href;
+            this.title = title;
+        }
+    }
+
+    // Postings of one term: (document id, field mask) pairs in the order the documents were added
+    private static final class Postings {
+        int[] data = new int[4];
+        int size;
+
+        void add(int doc, int fields) {
+            if (size + 2 > data.length) data = Arrays.copyOf(data, data.length * 2);
+            data[size++] = doc;
+            data[size++] = fields;
+        }
+    }
+
+    private final Path dir;
+    private final List<Doc> docs = new ArrayList<>();
+    private final Map<String, Integer> docsBySource = new HashMap<>();
+    private final Map<String, Postings> terms = new HashMap<>();
+
+    private SearchIndex(Path dir) {
+        this.dir = dir.toAbsolutePath().normalize();
+    }
+
+    /** Opens the index of {@code dir}, reading the existing one if there is a readable one. */
+    public static SearchIndex open(File dir, Consumer<String> log) {
+        SearchIndex index = new SearchIndex(dir.toPath());
+        Path data = index.dir.resolve(DATA_NAME);
+        if (Files.isRegularFile(data)) {
+            try {
+                index.read(data);
+            } catch (IOException | RuntimeException e) {
+                // Rebuilt from the episodes of this run
+                index.docs.clear();
+                index.docsBySource.clear();
+                index.terms.clear();
+                if (log != null) log.accept("Warning: Could not read the search index " + data + ", starting a new one: " + e.getMessage());
+            }
+        }
+        return index;
+    }
+
+    public File getPage() {
+        return dir.resolve(PAGE_NAME).toFile();
+    }
+
+    /** True when the episode read from {@code source} is in the index, from this run or an earlier one. */
+    public synchronized boolean contains(File source) {
+        Integer id = docsBySource.get(relative(source));
+        return id != null && docs.get(id).live;
+    }
+
+    /** Adds or replaces an episode; safe to call from several workers. */
+    public void add(File source, Episode episode, File output) {
+        // Tokenized outside the lock; only the merge is serialized
+        Map<String, Integer> fields = new HashMap<>();
+        Episode.Bundle b = episode.bundle;
+        collect(fields, b.title, TITLE);
+        for (Episode.Spread spread : orEmpty(b.spreads)) {
+            if (spread == null) continue;
+            collect(fields, spread.callout, NOTES);
+            collect(fields, spread.subtitle, NOTES);
+            if (spread.scripture != null) {
+                collect(fields, spread.scripture.reference, REFERENCE);
+                collect(fields, spread.scripture.verse, VERSE);
+            }
+            for (Episode.Note note : orEmpty(spread.notes)) {
+                if (note != null) collect(fields, note.content, NOTES);
+            }
+        }
+        collect(fields, b.summaryIntro, CONCLUSIONS);
+        for (Episode.Conclusion c : orEmpty(b.conclusions)) {
+            if (c == null) continue;
+            collect(fields, c.statement, CONCLUSIONS);
+            collect(fields, c.excerpt, CONCLUSIONS | VERSE);
+        }
+        if (b.passage != null) {
+            collect(fields, b.passage.reference, REFERENCE);
+            collect(fields, b.passage.verse, VERSE);
+        }
+        collect(fields, b.recap, RECAP);
+        collect(fields, b.recapToThinkAbout, RECAP);
+
+        String title = b.title != null ? b.title : "";
+        if (episode.number != null) title = episode.number + " — " + title;
+        Doc doc = new Doc(relative(source), relative(output), title);
+        synchronized (this) {
+            Integer previous = docsBySource.get(doc.source);
+            if (previous != null) docs.get(previous).live = false;
+            int id = docs.size();
+            docs.add(doc);
+            docsBySource.put(doc.source, id);
+            for (Map.Entry<String, Integer> e : fields.entrySet()) {
+                terms.computeIfAbsent(e.getKey(), k -> new Postings()).add(id, e.getValue());
+            }
+        }
+    }
+
+    /** Number of episodes the saved index will hold. */
+    public synchronized int size() {
+        int live = 0;
+        for (Doc doc : docs) {
+            if (doc.live && exists(doc)) live++;
+        }
+        return live;
+    }
+
+    /** Writes the index and the search page; episodes whose source no longer exists are left out. */
+    public synchronized void save() throws IOException {
+        // Documents sorted by path, so that ids and the file do not depend on the order of the workers
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < docs.size(); i++) {
+            if (docs.get(i).live && exists(docs.get(i))) order.add(i);
+        }
+        order.sort((x, y) -> docs.get(x).href.compareTo(docs.get(y).href));
+        int[] newId = new int[docs.size()];
+        Arrays.fill(newId, -1);
+        for (int i = 0; i < order.size(); i++) newId[order.get(i)] = i;
+
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(1 << 16);
+        raw.write(MAGIC);
+        writeVarint(raw, order.size());
+        for (int id : order) {
+            Doc doc = docs.get(id);
+            writeString(raw, doc.source);
+            writeString(raw, doc.href);
+            writeString(raw, doc.title);
+        }
+        List<String> sorted = new ArrayList<>(terms.keySet());
+        sorted.sort(null);
+        List<String> kept = new ArrayList<>(sorted.size());
+        List<long[]> keptPostings = new ArrayList<>(sorted.size());
+        for (String term : sorted) {
+            long[] postings = remap(terms.get(term), newId);
+            if (postings.length == 0) continue;
+            kept.add(term);
+            keptPostings.add(postings);
+        }
+        writeVarint(raw, kept.size());
+        byte[] previous = new byte[0];
+        ByteArrayOutputStream list = new ByteArrayOutputStream();
+        for (int t = 0; t < kept.size(); t++) {
+            byte[] term = kept.get(t).getBytes(StandardCharsets.UTF_8);
+            int shared = 0;
+            int max = Math.min(previous.length, term.length);
+            while (shared < max && previous[shared] == term[shared]) shared++;
+            writeVarint(raw, shared);
+            writeVarint(raw, term.length - shared);
+            raw.write(term, shared, term.length - shared);
+            list.reset();
+            long[] postings = keptPostings.get(t);
+            writeVarint(list, postings.length);
+            int last = 0;
+            for (long p : postings) {
+                int doc = (int) (p >>> 32);
+                writeVarint(list, doc - last);
+                writeVarint(list, (int) p);
+                last = doc;
+            }
+            writeVarint(raw, list.size());
+            list.writeTo(raw);
+            previous = term;
+        }
+
+        ByteArrayOutputStream gz = new ByteArrayOutputStream(raw.size() / 3 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(gz)) {
+            raw.writeTo(out);
+        }
+        String script = DATA_PREFIX + Base64.getEncoder().encodeToString(gz.toByteArray()) + DATA_SUFFIX;
+        Files.createDirectories(dir);
+        write(dir.resolve(DATA_NAME), script.getBytes(StandardCharsets.US_ASCII));
+        try (InputStream page = SearchIndex.class.getResourceAsStream("/" + PAGE_NAME)) {
+            if (page == null) throw new IOException("The search page is missing from the application");
+            write(dir.resolve(PAGE_NAME), page.readAllBytes());
+        }
+    }
+
+    /** Splits text into index terms the way the search page splits queries: lower case, without accents. */
+    static List<String> tokenize(String text) {
+        List<String> out = new ArrayList<>();
+        if (text == null || text.isEmpty()) return out;
+        String plain = text.replace("{soft_break}", " ");
+        if (!isAscii(plain)) {
+            plain = MARKS.matcher(Normalizer.normalize(plain, Normalizer.Form.NFKD)).replaceAll("");
+        }
+        plain = plain.toLowerCase(Locale.ROOT);
+        Matcher m = TOKEN.matcher(plain);
+        while (m.find()) {
+            out.add(m.group());
+        }
+        return out;
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) return false;
+        }
+        return true;
+    }
+
+    private static <T> List<T> orEmpty(List<T> list) {
+        return list != null ? list : Collections.emptyList();
+    }
+
+    private static void collect(Map<String, Integer> fields, String text, int field) {
+        for (String term : tokenize(text)) {
+            fields.merge(term, field, (a, b) -> a | b);
+        }
+    }
+
+    // Live postings with their new ids, sorted by id, packed as (id << 32 | fields)
+    private static long[] remap(Postings p, int[] newId) {
+        long[] out = new long[p.size / 2];
+        int n = 0;
+        for (int i = 0; i < p.size; i += 2) {
+            int id = newId[p.data[i]];
+            if (id >= 0) out[n++] = ((long) id << 32) | (p.data[i + 1] & 0xFFFFFFFFL);
+        }
+        out = Arrays.copyOf(out, n);
+        Arrays.sort(out);
+        return out;
+    }
+
+    private boolean exists(Doc doc) {
+        return Files.isRegularFile(dir.resolve(doc.source));
+    }
+
+    private String relative(File file) {
+        Path path = file.getAbsoluteFile().toPath().normalize();
+        Path rel = path.getRoot() != null && path.getRoot().equals(dir.getRoot()) ? dir.relativize(path) : path;
+        return rel.toString().replace(File.separatorChar, '/');
+    }
+
+    private void read(Path data) throws IOException {
+        String script = new String(Files.readAllBytes(data), StandardCharsets.US_ASCII);
+        if (!script.startsWith(DATA_PREFIX) || !script.endsWith(DATA_SUFFIX)) throw new IOException("not a search index");
+        byte[] gz = Base64.getDecoder().decode(script.substring(DATA_PREFIX.length(), script.length() - DATA_SUFFIX.length()));
+        byte[] raw;
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gz))) {
+            raw = in.readAllBytes();
+        }
+        Reader r = new Reader(raw);
+        for (byte b : MAGIC) {
+            if (r.data[r.pos++] != b) throw new IOException("unknown search index format");
+        }
+        int docCount = r.varint();
+        for (int i = 0; i < docCount; i++) {
+            Doc doc = new Doc(r.string(), r.string(), r.string());
+            docs.add(doc);
+            docsBySource.put(doc.source, i);
+        }
+        int termCount = r.varint();
+        byte[] previous = new byte[0];
+        for (int t = 0; t < termCount; t++) {
+            int shared = r.varint();
+            int suffix = r.varint();
+            byte[] term = Arrays.copyOf(previous, shared + suffix);
+            System.arraycopy(r.data, r.pos, term, shared, suffix);
+            r.pos += suffix;
+            r.varint(); // byte length of the postings, for readers that skip them
+            int count = r.varint();
+            Postings p = new Postings();
+            int doc = 0;
+            for (int i = 0; i < count; i++) {
+                doc += r.varint();
+                p.add(doc, r.varint());
+            }
+            terms.put(new String(term, StandardCharsets.UTF_8), p);
+            previous = term;
+        }
+    }
+
+    private static final class Reader {
+        final byte[] data;
+        int pos;
+
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        int varint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                if (pos >= data.length) throw new EOFException();
+                int b = data[pos++];
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IOException("malformed number");
+        }
+
+        String string() throws IOException {
+            int length = varint();
+            if (pos + length > data.length) throw new EOFException();
+            String s = new String(data, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return s;
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String s) {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, b.length);
+        out.write(b, 0, b.length);
+    }
+
+    private static void write(Path target, byte[] content) throws IOException {
+        Path tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tmp, content);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
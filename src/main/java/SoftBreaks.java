@@ -0,0 +1,21 @@
+import java.util.regex.Pattern;
+
+/**
+ * Joins a two-line italic block ("*first line\nsecond line*") into one line with a {soft_break} marker,
+ * which the DOCX renderer turns into a line break inside the same italic run.
+ */
+public final class SoftBreaks {
+
+    private static final Pattern SPLIT_ITALIC = Pattern.compile("(?m)(^\\*[^\\r\\n]*)\\r?\\n([^\\r\\n]*\\*$)");
+
+    private SoftBreaks() {
+    }
+
+    public static String normalize(String text) {
+        // Cheap pre-check: most fields have no asterisk or no newline at all
+        if (text == null || text.indexOf('*') < 0 || text.indexOf('\n') < 0) {
+            return text;
+        }
+        return SPLIT_ITALIC.matcher(text).replaceAll("$1{soft_break}$2");
+    }
+}
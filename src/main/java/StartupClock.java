@@ -0,0 +1,20 @@
+import java.time.Instant;
+
+/**
+ * Measures time since the JVM was started, for cold-start reporting in the GUI and the CLI.
+ * Uses {@link ProcessHandle} so that it works in the trimmed jpackage runtime (no java.management).
+ */
+public final class StartupClock {
+
+    private static final long CLASS_INIT_MILLIS = System.currentTimeMillis();
+    private static final long JVM_START_MILLIS = ProcessHandle.current().info().startInstant()
+            .map(Instant::toEpochMilli)
+            .orElse(CLASS_INIT_MILLIS);
+
+    private StartupClock() {
+    }
+
+    public static long millisSinceJvmStart() {
+        return System.currentTimeMillis() - JVM_START_MILLIS;
+    }
+}
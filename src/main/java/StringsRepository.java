@@ -0,0 +1,232 @@
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses each app strings file once and hands the same immutable maps to every conversion.
+ * Entries are keyed by path and revalidated by modification time, size and content hash,
+ * so a batch of hundreds of episodes parses its strings file a single time.
+ * Strings converted from the app's .txt export are also kept as JSON in the cache folder for later runs.
+ */
+public final class StringsRepository {
+
+    private static final Pattern GUITXT_ENTRY = Pattern.compile("Key:\\s*\"([^\"]+)\",\\s*Value:\\s*\"([^\"]+)\"\\s*;?");
+    // The cache folder is only created once a .txt strings file needs it
+    private static final StringsRepository SHARED = new StringsRepository(() -> AppCache.dir("strings"));
+
+    /** One parsed strings file. Both maps are unmodifiable and safe to share between threads. */
+    public static final class Strings {
+        public final String path;
+        public final String contentHash;
+        /** Values as they appear in the file, used by the HTML renderer. */
+        public final Map<String, Object> raw;
+        /** Values with split italic lines joined by {soft_break}, used by the DOCX renderer. */
+        public final Map<String, Object> docx;
+
+        Strings(String path, String contentHash, Map<String, Object> raw) {
+            this.path = path;
+            this.contentHash = contentHash;
+            this.raw = raw;
+            this.docx = withSoftBreaks(raw);
+        }
+    }
+
+    private static final class Entry {
+        final long modified;
+        final long size;
+        final Strings strings;
+
+        Entry(long modified, long size, Strings strings) {
+            this.modified = modified;
+            this.size = size;
+            this.strings = strings;
+        }
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Supplier<Path> persistDirLookup;
+    // Guarded by this, like the parsing that needs it
+    private Path persistDir;
+    private boolean persistDirResolved;
+
+    /** @param persistDir where converted .txt files are kept, looked up on first use; may supply {@code null} */
+    StringsRepository(Supplier<Path> persistDir) {
+        this.persistDirLookup = persistDir;
+    }
+
+    public static StringsRepository shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the parsed strings for the given .json or .txt file, reusing the previous result
+     * while the file is unchanged.
+     */
+    public Strings load(String path) throws IOException {
+        File file = new File(path).getAbsoluteFile();
+        String key = file.getPath();
+        long modified = file.lastModified();
+        long size = file.length();
+
+        Entry cached = entries.get(key);
+        if (cached != null && cached.modified == modified && cached.size == size) {
+            return cached.strings;
+        }
+        synchronized (this) {
+            cached = entries.get(key);
+            if (cached != null && cached.modified == modified && cached.size == size) {
+                return cached.strings;
+            }
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            String hash = ContentHash.sha256(bytes);
+            Strings strings;
+            if (cached != null && cached.strings.contentHash.equals(hash)) {
+                // Touched but not edited
+                strings = cached.strings;
+            } else {
+                strings = new Strings(key, hash, Collections.unmodifiableMap(parse(file, bytes, hash)));
+            }
+            entries.put(key, new Entry(modified, size, strings));
+            return strings;
+        }
+    }
+
+    /** Drops the cached entry so the next {@link #load} re-reads the file. */
+    public void invalidate(String path) {
+        entries.remove(new File(path).getAbsoluteFile().getPath());
+    }
+
+    /** Converts the app's .txt strings export ({@code Key: "...", Value: "...";} lines) to a map. */
+    public static Map<String, Object> parseGuitxt(String guitxt) {
+        Matcher matcher = GUITXT_ENTRY.matcher(guitxt);
+        Map<String, Object> map = new LinkedHashMap<>();
+        while (matcher.find()) {
+            map.put(matcher.group(1), matcher.group(2));
+        }
+        return map;
+    }
+
+    /**
+     * Parses a JSON strings file the way the app always has (with Groovy's JsonSlurper): a key given twice
+     * keeps its last value, whole numbers become Integer, Long or BigInteger and others BigDecimal.
+     */
+    static Map<String, Object> parseJson(String json) throws IOException {
+        JsonReader reader = new JsonReader(new StringReader(json));
+        reader.setLenient(true);
+        if (reader.peek() == JsonToken.END_DOCUMENT) return new LinkedHashMap<>();
+        Object value = readValue(reader);
+        if (!(value instanceof Map)) throw new IOException("Expected a JSON object in the strings file");
+        @SuppressWarnings("unchecked")
+        Map<String, Object> map = (Map<String, Object>) value;
+        return map;
+    }
+
+    private static Object readValue(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                Map<String, Object> map = new LinkedHashMap<>();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    map.put(reader.nextName(), readValue(reader));
+                }
+                reader.endObject();
+                return map;
+            case BEGIN_ARRAY:
+                List<Object> list = new ArrayList<>();
+                reader.beginArray();
+                while (reader.hasNext()) list.add(readValue(reader));
+                reader.endArray();
+                return list;
+            case NUMBER:
+                return number(reader.nextString());
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return null;
+            default:
+                return reader.nextString();
+        }
+    }
+
+    private static Number number(String literal) {
+        if (literal.indexOf('.') >= 0 || literal.indexOf('e') >= 0 || literal.indexOf('E') >= 0) {
+            return new BigDecimal(literal);
+        }
+        BigInteger value = new BigInteger(literal);
+        if (value.bitLength() < 32) return value.intValue();
+        if (value.bitLength() < 64) return value.longValue();
+        return value;
+    }
+
+    private Map<String, Object> parse(File file, byte[] bytes, String hash) throws IOException {
+        if (!file.getName().toLowerCase().endsWith(".txt")) {
+            return parseJson(new String(bytes, StandardCharsets.UTF_8));
+        }
+
+        if (!persistDirResolved) {
+            persistDir = persistDirLookup.get();
+            persistDirResolved = true;
+        }
+        Path persisted = persistDir != null ? persistDir.resolve(hash + ".json") : null;
+        if (persisted != null && Files.isRegularFile(persisted)) {
+            try {
+                return parseJson(Files.readString(persisted, StandardCharsets.UTF_8));
+            } catch (RuntimeException | IOException e) {
+                // Corrupt cache entry; fall through and convert again
+            }
+        }
+        Map<String, Object> map = parseGuitxt(new String(bytes, StandardCharsets.UTF_8));
+        if (persisted != null) {
+            try {
+                Path tmp = Files.createTempFile(persistDir, "strings", ".tmp");
+                Files.writeString(tmp, new Gson().toJson(map), StandardCharsets.UTF_8);
+                Files.move(tmp, persisted, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // Persisting is only an optimisation for the next run
+            }
+        }
+        return map;
+    }
+
+    private static Map<String, Object> withSoftBreaks(Map<String, Object> map) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> e : map.entrySet()) {
+            out.put(e.getKey(), softBreakValue(e.getValue()));
+        }
+        return Collections.unmodifiableMap(out);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object softBreakValue(Object value) {
+        if (value instanceof String) {
+            return SoftBreaks.normalize((String) value);
+        } else if (value instanceof Map) {
+            return withSoftBreaks((Map<String, Object>) value);
+        } else if (value instanceof List) {
+            List<Object> out = new ArrayList<>();
+            for (Object o : (List<Object>) value) out.add(softBreakValue(o));
+            return Collections.unmodifiableList(out);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,216 @@
+import org.apache.batik.transcoder.TranscoderInput;
+import org.apache.batik.transcoder.TranscoderOutput;
+import org.apache.batik.transcoder.image.PNGTranscoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Two-level cache for the SVG artwork embedded into DOCX files: an in-memory LRU in front of
+ * an on-disk store, both keyed by a hash of the SVG bytes and the target width.
+ * A hit returns the PNG bytes and their dimensions without running Batik or ImageIO.
+ */
+public final class SvgRasterCache {
+
+    private static final int MEMORY_ENTRIES = Integer.getInteger("w121.svgCacheEntries", 64);
+    private static final SvgRasterCache SHARED = new SvgRasterCache(MEMORY_ENTRIES, AppCache.dir("svg"));
+
+    /** A rasterized image. The byte array must not be modified by callers. */
+    public static final class Raster {
+        public final byte[] png;
+        public final int width;
+        public final int height;
+
+        Raster(byte[] png, int width, int height) {
+            this.png = png;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    private final Map<String, Raster> memory;
+    private final Path diskDir;
+    // Local file URL, mtime and width -> content key, so repeated artwork is not even read again. Remote
+    // URLs are fetched every time, as they may change without notice; the LRU bound keeps stale mtimes
+    // from piling up in watch mode.
+    private final Map<String, String> urlKeys;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    SvgRasterCache(int memoryEntries, Path diskDir) {
+        this.memory = lru(memoryEntries);
+        this.urlKeys = lru(memoryEntries);
+        this.diskDir = diskDir;
+    }
+
+    private static <V> Map<String, V> lru(int entries) {
+        return new LinkedHashMap<String, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > entries;
+            }
+        };
+    }
+
+    public static SvgRasterCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the PNG rendering of the SVG at {@code svgUrl}.
+     *
+     * @param targetWidth width in pixels, or 0 for the SVG's own size
+     */
+    public Raster rasterize(String svgUrl, int targetWidth) throws Exception {
+        String urlKey = localFileKey(svgUrl, targetWidth);
+        String knownKey = null;
+        if (urlKey != null) {
+            synchronized (memory) {
+                knownKey = urlKeys.get(urlKey);
+            }
+        }
+        if (knownKey != null) {
+            Raster raster = fromMemory(knownKey);
+            if (raster != null) {
+                memoryHits.incrementAndGet();
+                return raster;
+            }
+        }
+
+        byte[] svgBytes;
+        try (InputStream in = new URL(svgUrl).openStream()) {
+            svgBytes = in.readAllBytes();
+        }
+        String key = contentKey(svgBytes, targetWidth);
+        if (urlKey != null) {
+            synchronized (memory) {
+                urlKeys.put(urlKey, key);
+            }
+        }
+
+        Raster raster = fromMemory(key);
+        if (raster != null) {
+            memoryHits.incrementAndGet();
+            return raster;
+        }
+        raster = fromDisk(key);
+        if (raster != null) {
+            diskHits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            byte[] png = Transcoder.toPng(svgBytes, targetWidth);
+            raster = new Raster(png, pngWidth(png), pngHeight(png));
+            toDisk(key, png);
+        }
+        synchronized (memory) {
+            memory.put(key, raster);
+        }
+        return raster;
+    }
+
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public String stats() {
+        return "memory hits " + memoryHits.get() + ", disk hits " + diskHits.get() + ", misses " + misses.get();
+    }
+
+    private Raster fromMemory(String key) {
+        synchronized (memory) {
+            return memory.get(key);
+        }
+    }
+
+    private Raster fromDisk(String key) {
+        if (diskDir == null) return null;
+        Path file = diskDir.resolve(key + ".png");
+        try {
+            if (!Files.isRegularFile(file)) return null;
+            byte[] png = Files.readAllBytes(file);
+            int width = pngWidth(png);
+            int height = pngHeight(png);
+            return width >= 0 && height >= 0 ? new Raster(png, width, height) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void toDisk(String key, byte[] png) {
+        if (diskDir == null) return;
+        try {
+            Path tmp = Files.createTempFile(diskDir, key, ".tmp");
+            Files.write(tmp, png);
+            Files.move(tmp, diskDir.resolve(key + ".png"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The disk tier is only an optimisation
+        }
+    }
+
+    // Local files may change while the app is open (watch mode), so their memo key includes the mtime;
+    // null for anything but an existing local file
+    private static String localFileKey(String svgUrl, int targetWidth) {
+        if (!svgUrl.startsWith("file:")) return null;
+        try {
+            long modified = new File(new URL(svgUrl).toURI()).lastModified();
+            return modified == 0 ? null : svgUrl + "#" + modified + "@" + targetWidth;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static String contentKey(byte[] svgBytes, int targetWidth) {
+        MessageDigest md = ContentHash.newDigest();
+        md.update(svgBytes);
+        md.update(("\n" + targetWidth).getBytes(StandardCharsets.US_ASCII));
+        return ContentHash.hex(md.digest());
+    }
+
+    // PNG dimensions live in the IHDR chunk right after the 8-byte signature: width at 16, height at 20
+    static int pngWidth(byte[] png) {
+        return png.length >= 24 ? readInt(png, 16) : -1;
+    }
+
+    static int pngHeight(byte[] png) {
+        return png.length >= 24 ? readInt(png, 20) : -1;
+    }
+
+    private static int readInt(byte[] b, int off) {
+        return ((b[off] & 0xFF) << 24) | ((b[off + 1] & 0xFF) << 16) | ((b[off + 2] & 0xFF) << 8) | (b[off + 3] & 0xFF);
+    }
+
+    // Kept in its own class so Batik is only loaded when something actually has to be transcoded
+    private static final class Transcoder {
+        static byte[] toPng(byte[] svgBytes, int targetWidth) throws Exception {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            PNGTranscoder transcoder = new PNGTranscoder();
+            if (targetWidth > 0) {
+                transcoder.addTranscodingHint(PNGTranscoder.KEY_WIDTH, (float) targetWidth);
+            }
+            transcoder.transcode(new TranscoderInput(new ByteArrayInputStream(svgBytes)), new TranscoderOutput(baos));
+            return baos.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+import com.google.gson.stream.JsonWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@link EpisodeValidator} findings of a run, collected from all workers into one report.
+ * <p>
+ * A file checked again, as in watch mode, replaces its earlier findings. The report lists every problem
+ * with its file and JSON path, invalid files first, and can be written as JSON or CSV.
+ */
+public final class ValidationReport {
+
+    private static final int MAX_LINES = 200;
+
+    private final Path root;
+    private final Map<String, EpisodeValidator.Result> results = new ConcurrentHashMap<>();
+
+    /** @param root folder that file names are shown relative to; {@code null} for absolute paths */
+    public ValidationReport(File root) {
+        this.root = root != null ? root.getAbsoluteFile().toPath().normalize() : null;
+    }
+
+    /** Checks {@code file} and records the result; safe to call from several workers. */
+    public EpisodeValidator.Result check(File file) {
+        EpisodeValidator.Result result = EpisodeValidator.validate(file);
+        results.put(file.getAbsolutePath(), result);
+        return result;
+    }
+
+    public int files() {
+        return results.size();
+    }
+
+    public int invalidFiles() {
+        int n = 0;
+        for (EpisodeValidator.Result r : results.values()) {
+            if (!r.isValid()) n++;
+        }
+        return n;
+    }
+
+    public int warnings() {
+        int n = 0;
+        for (EpisodeValidator.Result r : results.values()) n += r.warnings();
+        return n;
+    }
+
+    public boolean hasProblems() {
+        for (EpisodeValidator.Result r : results.values()) {
+            if (!r.problems.isEmpty()) return true;
+        }
+        return false;
+    }
+
+    /** One-line summary, e.g. "40 files checked in 95 ms: 2 invalid and skipped, 5 warnings in 3 files". */
+    @Override
+    public String toString() {
+        List<EpisodeValidator.Result> all = sorted();
+        int invalid = 0;
+        int warnings = 0;
+        int warned = 0;
+        long micros = 0;
+        for (EpisodeValidator.Result r : all) {
+            if (!r.isValid()) invalid++;
+            if (r.warnings() > 0) warned++;
+            warnings += r.warnings();
+            micros += r.micros;
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(all.size()).append(all.size() == 1 ? " file" : " files").append(" checked in ").append(micros / 1000).append(" ms: ");
+        sb.append(invalid == 0 ? "all valid" : invalid + " invalid and skipped");
+        if (warnings > 0) {
+            sb.append(", ").append(warnings).append(warnings == 1 ? " warning" : " warnings")
+                    .append(" in ").append(warned).append(warned == 1 ? " file" : " files");
+        }
+        return sb.toString();
+    }
+
+    /** The problems, one per line with file, severity, path and message; at most {@value #MAX_LINES} lines. */
+    public List<String> lines() {
+        List<String> lines = new ArrayList<>();
+        int total = 0;
+        for (EpisodeValidator.Result r : sorted()) {
+            for (EpisodeValidator.Problem p : r.problems) {
+                if (total++ < MAX_LINES) {
+                    lines.add(name(r.file) + "  " + p.severity + "  " + p.path + "  " + p.message);
+                }
+            }
+        }
+        if (total > MAX_LINES) lines.add("... and " + (total - MAX_LINES) + " more problems");
+        return lines;
+    }
+
+    /** Writes every problem; CSV when the name ends in .csv, otherwise JSON. */
+    public void write(Path file) throws IOException {
+        List<EpisodeValidator.Result> all = sorted();
+        ReportFiles.write(file, out -> writeCsv(all, out), out -> writeJson(all, out));
+    }
+
+    private void writeCsv(List<EpisodeValidator.Result> all, Writer out) throws IOException {
+        out.write("file,severity,path,message\n");
+        for (EpisodeValidator.Result r : all) {
+            for (EpisodeValidator.Problem p : r.problems) {
+                out.write(ReportFiles.csv(name(r.file)) + "," + p.severity + "," + ReportFiles.csv(p.path) + "," + ReportFiles.csv(p.message) + "\n");
+            }
+        }
+    }
+
+    private void writeJson(List<EpisodeValidator.Result> all, Writer out) throws IOException {
+        JsonWriter json = new JsonWriter(out);
+        json.setIndent("  ");
+        json.beginObject();
+        json.name("files").value(all.size());
+        json.name("invalid").value(invalidFiles());
+        json.name("warnings").value(warnings());
+        json.name("problems").beginArray();
+        for (EpisodeValidator.Result r : all) {
+            for (EpisodeValidator.Problem p : r.problems) {
+                json.beginObject();
+                json.name("file").value(name(r.file));
+                json.name("severity").value(p.severity.name().toLowerCase(Locale.ROOT));
+                json.name("path").value(p.path);
+                json.name("message").value(p.message);
+                json.endObject();
+            }
+        }
+        json.endArray();
+        json.endObject();
+        json.flush();
+    }
+
+    // Invalid files first, then by name
+    private List<EpisodeValidator.Result> sorted() {
+        List<EpisodeValidator.Result> all = new ArrayList<>(results.values());
+        all.sort(Comparator.comparing((EpisodeValidator.Result r) -> r.isValid()).thenComparing(r -> name(r.file)));
+        return all;
+    }
+
+    /** {@code file} as the report names it. */
+    public String name(File file) {
+        Path path = file.getAbsoluteFile().toPath().normalize();
+        if (root == null || !path.startsWith(root)) return path.toString();
+        return root.relativize(path).toString().replace(File.separatorChar, '/');
+    }
+}
@@ -0,0 +1,174 @@
+import org.w3c.dom.Element
+import org.w3c.dom.Node
+
+import javax.xml.parsers.DocumentBuilderFactory
+import java.util.zip.ZipEntry
+import java.util.zip.ZipInputStream
+
+/**
+ * Renders episodes with both DOCX writers, POI and {@link DocxStreamWriter}, and compares the
+ * documents part by part: document, styles and settings XML after normalisation, and the media bytes.
+ * <p>
+ * Normalisation drops what differs without changing the document: namespace prefixes and declarations,
+ * attribute order, relationship ids (replaced by their targets), the spelling of on/off values, empty
+ * property elements such as the {@code <w:pPr/>} POI leaves behind, and package parts only POI writes
+ * (document properties).
+ * <pre>
+ * DocxEquivalence [--strings FILE] [--lang TAG] &lt;episode.json or folder&gt;...
+ * </pre>
+ * Exits with 1 when any episode differs and prints the first difference of each. A development tool: it lives
+ * with the tests, which run it over the sample episodes ({@code DocxWritersTest}), and is not packaged.
+ */
+class DocxEquivalence {
+
+    static final List<String> COMPARED_PARTS = ['word/document.xml', 'word/styles.xml', 'word/settings.xml']
+    private static final String REL_NS = DocxStreamWriter.R
+    private static final Set<String> ON = ['on', 'true'] as Set
+    private static final Set<String> OFF = ['off', 'false'] as Set
+    private static final Set<String> PROPERTIES = ['pPr', 'rPr', 'tcPr', 'trPr'] as Set
+
+    static void main(String[] args) {
+        String stringsPath = null
+        String lang = 'en-GB'
+        List<File> inputs = []
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case '--strings': stringsPath = args[++i]; break
+                case '--lang': lang = args[++i]; break
+                default: inputs.add(new File(args[i]))
+            }
+        }
+        List<File> episodes = inputs.collectMany { f ->
+            f.isDirectory() ? (f.listFiles({ File x -> x.name.toLowerCase().endsWith('.json') } as FileFilter) as List).sort { it.name } : [f]
+        }
+        if (episodes.isEmpty()) {
+            System.err.println 'Usage: DocxEquivalence [--strings FILE] [--lang TAG] <episode.json or folder>...'
+            System.exit(2)
+        }
+        Map strings = stringsPath ? StringsRepository.shared().load(stringsPath).docx : [:]
+
+        int different = 0
+        for (File episode : episodes) {
+            String difference = compare(EpisodeReader.read(episode, true), strings, lang)
+            if (difference != null) {
+                different++
+                println "DIFFERENT ${episode.name}: ${difference}"
+            } else {
+                println "same      ${episode.name}"
+            }
+        }
+        println "${episodes.size() - different} of ${episodes.size()} episodes render the same with both writers"
+        System.exit(different == 0 ? 0 : 1)
+    }
+
+    /** The first difference between the two writers' documents for {@code episode}, or {@code null}. */
+    static String compare(Episode episode, Map strings, String lang) {
+        def script = new JsonToDocxScript()
+        def poi = new ByteArrayOutputStream()
+        script.renderDocx(episode, strings, lang).write(poi)
+        def streamed = new ByteArrayOutputStream()
+        script.streamDocx(episode, strings, streamed, lang)
+        return compareDocx(poi.toByteArray(), streamed.toByteArray())
+    }
+
+    static String compareDocx(byte[] expected, byte[] actual) {
+        Map<String, byte[]> a = unzip(expected)
+        Map<String, byte[]> b = unzip(actual)
+        Map<String, String> relsA = relationshipTargets(a)
+        Map<String, String> relsB = relationshipTargets(b)
+        for (String part : COMPARED_PARTS) {
+            if (!a.containsKey(part) || !b.containsKey(part)) {
+                if (a.containsKey(part) != b.containsKey(part)) return "${part} only in one document"
+                continue
+            }
+            List<String> left = normalise(a[part], relsA)
+            List<String> right = normalise(b[part], relsB)
+            int n = Math.min(left.size(), right.size())
+            for (int i = 0; i < n; i++) {
+                if (left[i] != right[i]) return "${part} line ${i + 1}: expected ${left[i]} but was ${right[i]}"
+            }
+            if (left.size() != right.size()) {
+                return "${part}: expected ${left.size()} lines but was ${right.size()}"
+            }
+        }
+        Set<String> mediaA = a.keySet().findAll { it.startsWith('word/media/') }
+        Set<String> mediaB = b.keySet().findAll { it.startsWith('word/media/') }
+        if (mediaA != mediaB) return "media parts differ: ${mediaA} vs ${mediaB}"
+        for (String media : mediaA) {
+            if (!Arrays.equals(a[media], b[media])) return "${media} differs"
+        }
+        return null
+    }
+
+    private static Map<String, byte[]> unzip(byte[] docx) {
+        Map<String, byte[]> parts = [:]
+        new ZipInputStream(new ByteArrayInputStream(docx)).withCloseable { zip ->
+            ZipEntry entry
+            while ((entry = zip.nextEntry) != null) {
+                parts[entry.name] = zip.readAllBytes()
+            }
+        }
+        return parts
+    }
+
+    // rId -> target of the main document's relationships
+    private static Map<String, String> relationshipTargets(Map<String, byte[]> parts) {
+        byte[] rels = parts['word/_rels/document.xml.rels']
+        if (rels == null) return [:]
+        Map<String, String> targets = [:]
+        def doc = parse(rels)
+        def list = doc.getElementsByTagNameNS('*', 'Relationship')
+        for (int i = 0; i < list.length; i++) {
+            Element rel = (Element) list.item(i)
+            targets[rel.getAttribute('Id')] = rel.getAttribute('Target')
+        }
+        return targets
+    }
+
+    // One line per element: its depth, name, sorted attributes and text
+    private static List<String> normalise(byte[] xml, Map<String, String> rels) {
+        List<String> lines = []
+        walk(parse(xml).documentElement, 0, rels, lines)
+        return lines
+    }
+
+    private static void walk(Element element, int depth, Map<String, String> rels, List<String> lines) {
+        def line = new StringBuilder('  ' * depth).append('{').append(element.namespaceURI).append('}').append(element.localName)
+        List<String> attributes = []
+        def map = element.attributes
+        for (int i = 0; i < map.length; i++) {
+            Node a = map.item(i)
+            if (a.namespaceURI == 'http://www.w3.org/2000/xmlns/') continue
+            String value = a.nodeValue
+            if (a.namespaceURI == REL_NS) value = rels[value] ?: value
+            else if (ON.contains(value)) value = 'on'
+            else if (OFF.contains(value)) value = 'off'
+            attributes.add("${a.localName}=${value}")
+        }
+        attributes.sort()
+        if (attributes) line.append(' ').append(attributes.join(' '))
+        def text = new StringBuilder()
+        for (Node child = element.firstChild; child != null; child = child.nextSibling) {
+            if (child.nodeType == Node.TEXT_NODE || child.nodeType == Node.CDATA_SECTION_NODE) text.append(child.nodeValue)
+        }
+        if (text.length() > 0) line.append(' "').append(text).append('"')
+        lines.add(line.toString())
+        for (Node child = element.firstChild; child != null; child = child.nextSibling) {
+            if (child instanceof Element && !isEmptyProperties((Element) child)) walk((Element) child, depth + 1, rels, lines)
+        }
+    }
+
+    private static boolean isEmptyProperties(Element element) {
+        if (!PROPERTIES.contains(element.localName) || element.attributes.length > 0) return false
+        for (Node child = element.firstChild; child != null; child = child.nextSibling) {
+            if (child instanceof Element || child.textContent.trim()) return false
+        }
+        return true
+    }
+
+    private static org.w3c.dom.Document parse(byte[] xml) {
+        def factory = DocumentBuilderFactory.newInstance()
+        factory.namespaceAware = true
+        return factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml))
+    }
+}
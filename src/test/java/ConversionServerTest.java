@@ -0,0 +1,165 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives {@link ConversionServer} over loopback HTTP with the JDK client, as an editor integration would.
+ */
+class ConversionServerTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(60);
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(TIMEOUT)
+            .build();
+    private ConversionServer server;
+
+    @TempDir
+    Path episodes;
+
+    @AfterEach
+    void stop() {
+        if (server != null) server.stop();
+    }
+
+    @Test
+    void convertsToHtml() throws Exception {
+        start(2, 4);
+        HttpResponse<String> response = client.send(post("/convert?format=html", episode()), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("text/html"));
+        assertTrue(response.headers().firstValue("X-Conversion-Millis").isPresent());
+        assertTrue(response.body().contains("The Good Shepherd"));
+    }
+
+    @Test
+    void convertsToDocx() throws Exception {
+        start(2, 4);
+        HttpResponse<byte[]> response = client.send(post("/convert?format=docx&lang=en-US", episode()), HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(200, response.statusCode());
+        assertEquals("application/vnd.openxmlformats-officedocument.wordprocessingml.document",
+                response.headers().firstValue("Content-Type").orElse(""));
+        byte[] zipMagic = {'P', 'K', 3, 4};
+        byte[] start = new byte[4];
+        System.arraycopy(response.body(), 0, start, 0, 4);
+        assertArrayEquals(zipMagic, start);
+    }
+
+    @Test
+    void rejectsOtherMethods() throws Exception {
+        start(2, 4);
+        HttpResponse<String> response = client.send(get("/convert"), HttpResponse.BodyHandlers.ofString());
+        assertEquals(405, response.statusCode());
+        assertEquals("POST", response.headers().firstValue("Allow").orElse(""));
+    }
+
+    @Test
+    void rejectsBadRequests() throws Exception {
+        start(2, 4);
+        assertEquals(400, client.send(post("/convert?format=pdf", episode()), HttpResponse.BodyHandlers.ofString()).statusCode());
+        assertEquals(400, client.send(post("/convert?format=html", bytes("{\"bundle\": [")), HttpResponse.BodyHandlers.ofString()).statusCode());
+        assertEquals(400, client.send(post("/convert?format=html&strings=/etc/passwd", episode()), HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    @Test
+    void answersBusyWithRetryAfter() throws Exception {
+        start(1, 0);
+        byte[] episode = episode();
+        // Holds the only slot: admitted as soon as its headers arrive, then waiting for the rest of its body
+        try (Socket holding = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            holding.setSoTimeout((int) TIMEOUT.toMillis());
+            OutputStream out = holding.getOutputStream();
+            out.write(bytes("POST /convert?format=html HTTP/1.1\r\nHost: 127.0.0.1:" + server.getPort()
+                    + "\r\nContent-Length: " + episode.length + "\r\n\r\n"));
+            out.write(episode, 0, episode.length / 2);
+            out.flush();
+
+            HttpResponse<String> busy = null;
+            long deadline = System.nanoTime() + TIMEOUT.toNanos();
+            while (busy == null && System.nanoTime() < deadline) {
+                HttpResponse<String> probe = client.send(post("/convert?format=html", episode), HttpResponse.BodyHandlers.ofString());
+                if (probe.statusCode() == 503) busy = probe;
+            }
+            assertTrue(busy != null, "no 503 while the only slot was taken");
+            assertEquals("1", busy.headers().firstValue("Retry-After").orElse(""));
+
+            out.write(episode, episode.length / 2, episode.length - episode.length / 2);
+            out.flush();
+            BufferedReader in = new BufferedReader(new InputStreamReader(holding.getInputStream(), StandardCharsets.ISO_8859_1));
+            assertEquals("HTTP/1.1 200 OK", in.readLine());
+        }
+    }
+
+    @Test
+    void previewsOnlyBelowTheEpisodeFolder() throws Exception {
+        Files.write(episodes.resolve("good-shepherd.json"), episode());
+        server = new ConversionServer(0, 2, 4, false, false, "en-GB", resource("strings.json").toString(), null);
+        server.setEpisodeRoot(episodes.toFile());
+        server.start();
+
+        HttpResponse<String> preview = client.send(get("/preview?path=good-shepherd.json&dark=true"), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, preview.statusCode());
+        assertTrue(preview.body().contains("The Good Shepherd"));
+        assertEquals(404, client.send(get("/preview?path=../good-shepherd.json"), HttpResponse.BodyHandlers.ofString()).statusCode());
+        assertEquals(404, client.send(get("/preview?path=" + resource("episodes/good-shepherd.json")), HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    @Test
+    void refusesForeignOrigins() throws Exception {
+        start(2, 4);
+        HttpRequest foreign = HttpRequest.newBuilder(uri("/health")).header("Origin", "http://example.com").timeout(TIMEOUT).build();
+        assertEquals(403, client.send(foreign, HttpResponse.BodyHandlers.ofString()).statusCode());
+        HttpRequest local = HttpRequest.newBuilder(uri("/health")).header("Origin", "http://localhost:" + server.getPort()).timeout(TIMEOUT).build();
+        assertEquals(200, client.send(local, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    private void start(int workers, int queue) throws Exception {
+        server = new ConversionServer(0, workers, queue, true, false, "en-GB", resource("strings.json").toString(), null);
+        server.start();
+    }
+
+    private URI uri(String pathAndQuery) {
+        return URI.create("http://127.0.0.1:" + server.getPort() + pathAndQuery);
+    }
+
+    private HttpRequest get(String pathAndQuery) {
+        return HttpRequest.newBuilder(uri(pathAndQuery)).timeout(TIMEOUT).GET().build();
+    }
+
+    private HttpRequest post(String pathAndQuery, byte[] body) {
+        return HttpRequest.newBuilder(uri(pathAndQuery)).timeout(TIMEOUT).POST(HttpRequest.BodyPublishers.ofByteArray(body)).build();
+    }
+
+    private static byte[] episode() throws IOException, URISyntaxException {
+        return Files.readAllBytes(resource("episodes/good-shepherd.json"));
+    }
+
+    private static Path resource(String name) throws URISyntaxException {
+        return Path.of(ConversionServerTest.class.getResource("/" + name).toURI());
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,80 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Renders every sample episode with the POI writer and with {@link DocxStreamWriter}, in both languages,
+ * and fails on the first difference {@link DocxEquivalence} finds.
+ */
+class DocxWritersTest {
+
+    @TempDir
+    Path dir;
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("episodes")
+    void streamingWriterMatchesPoi(File episode) throws Exception {
+        for (String lang : new String[]{"en-GB", "en-US"}) {
+            assertNull(DocxEquivalence.compare(EpisodeReader.read(episode, true), strings(), lang), episode.getName() + " " + lang);
+        }
+    }
+
+    // The picture paragraph, the media part and its relationship only exist when the episode has artwork
+    @Test
+    void streamingWriterMatchesPoiWithArtwork() throws Exception {
+        String json = new String(Files.readAllBytes(resource("episodes/good-shepherd.json")), StandardCharsets.UTF_8)
+                .replace("\"imageUrl\": \"\"", "\"imageUrl\": \"" + resource("svg/artwork.svg").toUri() + "\"");
+        Path episode = Files.write(dir.resolve("artwork.json"), json.getBytes(StandardCharsets.UTF_8));
+
+        JsonToDocxScript script = new JsonToDocxScript();
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        script.streamDocx(EpisodeReader.read(episode.toFile(), true), strings(), streamed, "en-GB");
+        assertTrue(script.getWarnings().isEmpty(), script.getWarnings().toString());
+        assertEquals(1, mediaParts(streamed.toByteArray()), "media parts");
+
+        assertNull(DocxEquivalence.compare(EpisodeReader.read(episode.toFile(), true), strings(), "en-GB"));
+    }
+
+    static List<File> episodes() throws URISyntaxException {
+        File[] files = resource("episodes").toFile().listFiles((d, name) -> name.endsWith(".json"));
+        assertTrue(files != null && files.length > 0, "no sample episodes");
+        Arrays.sort(files);
+        return Arrays.asList(files);
+    }
+
+    private static Map<String, Object> strings() throws Exception {
+        return StringsRepository.shared().load(resource("strings.json").toString()).docx;
+    }
+
+    private static int mediaParts(byte[] docx) throws Exception {
+        int n = 0;
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(docx))) {
+            for (ZipEntry entry; (entry = zip.getNextEntry()) != null; ) {
+                if (entry.getName().startsWith("word/media/")) n++;
+            }
+        }
+        return n;
+    }
+
+    private static Path resource(String name) throws URISyntaxException {
+        return Path.of(DocxWritersTest.class.getResource("/" + name).toURI());
+    }
+}
@@ -0,0 +1,55 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FragmentCacheTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void rendererVersionCoversClosureClasses() {
+        List<String> files = FragmentCache.classFiles(JsonToHtmlScript.class);
+        assertEquals("JsonToHtmlScript.class", files.get(0));
+        assertTrue(files.stream().anyMatch(name -> name.startsWith("JsonToHtmlScript$") && name.contains("closure")), files.toString());
+    }
+
+    @Test
+    void classFilesAreFoundInJarsToo() throws Exception {
+        List<String> fromFolder = FragmentCache.classFiles(InlineMarkup.class);
+        assertTrue(fromFolder.size() > 1, fromFolder.toString());
+
+        Path jar = dir.resolve("app.jar");
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            for (String name : fromFolder) {
+                out.putNextEntry(new JarEntry(name));
+                try (InputStream in = InlineMarkup.class.getClassLoader().getResourceAsStream(name)) {
+                    in.transferTo(out);
+                }
+                out.closeEntry();
+            }
+        }
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{jar.toUri().toURL()}, null)) {
+            Class<?> fromJar = Class.forName("InlineMarkup", false, loader);
+            assertEquals(fromFolder, FragmentCache.classFiles(fromJar));
+        }
+    }
+
+    @Test
+    void renderersHaveTheirOwnVersion() {
+        assertNotEquals(FragmentCache.rendererVersion(JsonToHtmlScript.class), FragmentCache.rendererVersion(JsonToDocxScript.class));
+        assertEquals(FragmentCache.rendererVersion(JsonToHtmlScript.class), FragmentCache.rendererVersion(JsonToHtmlScript.class));
+    }
+}
@@ -0,0 +1,290 @@
+import org.apache.commons.text.StringEscapeUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Golden tests for the hand-written scanners: each one must give exactly what the regular expressions
+ * of the scripts gave before {@link InlineMarkup} replaced them. {@link Regex} keeps those expressions.
+ */
+class InlineMarkupTest {
+
+    static List<String> texts() {
+        return List.of(
+                "",
+                "plain text",
+                "**bold** and *italic*",
+                "***a**",
+                "**a***",
+                "a **unclosed bold",
+                "**",
+                "****",
+                "* bullet with *italic* inside",
+                "   * indented bullet",
+                "*odd star line",
+                "two *stars* and one * more",
+                "- hyphen bullet with *emph* and * star",
+                "`1`In the beginning `12` was `the Word` and `1234`",
+                "`` empty ticks `a` and an unclosed `tick",
+                "` 7 ` and `x{soft_break}y` and `3{soft_break}`",
+                "soft{soft_break}break **bold{soft_break}bold** *it{soft_break}al*",
+                "**bold with `tick` and *italic* inside**",
+                "multi\nline **bold**\n*italic*\n- bullet",
+                "*first line of a split\nsecond line of a split*",
+                "**not\nbold** and *not\nitalic*",
+                "line one\r\nline two\rline three\n",
+                "### Heading **bold**\nA *definition* with `12` and `term`.\n\nSecond para.",
+                "untyped note with ** stray and * star",
+                "Key point <b>not html</b> & stuff");
+    }
+
+    @ParameterizedTest
+    @MethodSource("texts")
+    void tokenizerMatchesRegexes(String text) {
+        for (String line : text.split("\n", -1)) {
+            assertEquals(Regex.spans(line), describe(InlineMarkup.tokenizeLine(line)), "line: " + line);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("texts")
+    void findDelimitedMatchesRegexes(String text) {
+        for (String delim : new String[]{"**", "*"}) {
+            Matcher m = Pattern.compile(Pattern.quote(delim) + "(.+?)" + Pattern.quote(delim)).matcher(text);
+            int[] close = new int[1];
+            int from = 0;
+            while (m.find()) {
+                assertEquals(m.start(), InlineMarkup.findDelimited(text, from, delim, close), delim + " in " + text);
+                assertEquals(m.end() - delim.length(), close[0]);
+                from = m.end();
+            }
+            assertEquals(-1, InlineMarkup.findDelimited(text, from, delim, close), delim + " in " + text);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("texts")
+    void htmlMatchesRegexes(String text) {
+        String markers = Regex.markers(text);
+        assertEquals(markers, InlineMarkup.markersToHtml(text));
+        String ticks = Regex.ticks(markers);
+        assertEquals(ticks, InlineMarkup.ticksToHtml(markers));
+        assertEquals(Regex.unescape(ticks), InlineMarkup.unescapeSpecificHtml(ticks));
+    }
+
+    @Test
+    void goldenSpans() {
+        assertEquals(List.of("B[*a]"), describe(InlineMarkup.tokenizeLine("***a**")));
+        assertEquals(List.of("[a **unclosed bold]"), describe(InlineMarkup.tokenizeLine("a **unclosed bold")));
+        assertEquals(List.of("[•bullet ]", "I[x]"), describe(InlineMarkup.tokenizeLine("*bullet *x*")));
+        assertEquals(List.of("#[1]", "[ text ]", "`[x]/", "`[y]"), describe(InlineMarkup.tokenizeLine("`1` text `x{soft_break}y`")));
+    }
+
+    @Test
+    void goldenHtml() {
+        assertEquals("<p class=\"bullet\"><span class=\"b-mark\">•</span><span class=\"b-text\">bullet <em>x</em></span></p>",
+                InlineMarkup.markersToHtml("* bullet *x*"));
+        assertEquals("<em>split<br>italic</em>", InlineMarkup.markersToHtml("*split\nitalic*"));
+        assertEquals("<sup>3</sup> and <span class=\"tick-strong\">term &amp; more</span>",
+                InlineMarkup.ticksToHtml("`3` and `term & more`"));
+        assertEquals("<p class=\"bullet\"><em>&lt;b&gt;</em> & <h4>x</h4>",
+                InlineMarkup.unescapeSpecificHtml("&lt;p class=&quot;bullet&quot;&gt;&lt;em&gt;&lt;b&gt;&lt;/em&gt; &amp; &lt;h4 class=&quot;h&quot;&gt;x&lt;/h4&gt;"));
+    }
+
+    private static List<String> describe(List<InlineMarkup.Span> spans) {
+        return spans.stream().map(InlineMarkup.Span::toString).collect(Collectors.toList());
+    }
+
+    /** The regex implementations from the scripts, as they were before InlineMarkup. */
+    static final class Regex {
+
+        private static final Pattern BOLD = Pattern.compile("\\*\\*(.+?)\\*\\*");
+        private static final Pattern ITALIC = Pattern.compile("\\*(.+?)\\*");
+        private static final Pattern TICK = Pattern.compile("`([^`]+)`");
+
+        // JsonToDocxScript.parseLineToStyledSpans, splitTicks and the {soft_break} split of addInlineToParagraph
+        static List<String> spans(String line) {
+            List<Object[]> parts = new ArrayList<>();
+            Matcher mb = BOLD.matcher(line);
+            int cursor = 0;
+            while (mb.find()) {
+                if (mb.start() > cursor) parts.add(new Object[]{cursor, mb.start(), false});
+                parts.add(new Object[]{mb.start(1), mb.end(1), true});
+                cursor = mb.end();
+            }
+            if (cursor < line.length()) parts.add(new Object[]{cursor, line.length(), false});
+
+            List<Integer> singleIdx = new ArrayList<>();
+            char[] chars = line.toCharArray();
+            for (int i = 0; i < chars.length; i++) {
+                if (chars[i] == '*' && !(i + 1 < chars.length && chars[i + 1] == '*') && !(i - 1 >= 0 && chars[i - 1] == '*')) {
+                    singleIdx.add(i);
+                }
+            }
+            int firstNonWs = -1;
+            for (int i = 0; i < line.length(); i++) {
+                if (!Character.isWhitespace(line.charAt(i))) {
+                    firstNonWs = i;
+                    break;
+                }
+            }
+            int bulletPos = -1;
+            if (!singleIdx.isEmpty() && singleIdx.size() % 2 == 1 && firstNonWs != -1 && singleIdx.get(0) == firstNonWs) {
+                bulletPos = singleIdx.remove(0);
+            }
+            Set<Integer> starts = new HashSet<>();
+            Set<Integer> ends = new HashSet<>();
+            for (int k = singleIdx.size() - 2; k >= 0; k -= 2) {
+                starts.add(singleIdx.get(k));
+                ends.add(singleIdx.get(k + 1));
+            }
+
+            List<Object[]> out = new ArrayList<>();
+            for (Object[] seg : parts) {
+                boolean bold = (Boolean) seg[2];
+                StringBuilder current = new StringBuilder();
+                boolean italic = false;
+                for (int i = (Integer) seg[0]; i < (Integer) seg[1]; i++) {
+                    if (bulletPos == i) {
+                        append(out, current, bold, italic);
+                        append(out, new StringBuilder("•"), bold, false);
+                    } else if (starts.contains(i)) {
+                        append(out, current, bold, italic);
+                        italic = true;
+                    } else if (ends.contains(i)) {
+                        append(out, current, bold, italic);
+                        italic = false;
+                    } else {
+                        current.append(line.charAt(i));
+                    }
+                }
+                append(out, current, bold, italic);
+            }
+
+            List<String> described = new ArrayList<>();
+            for (Object[] span : out) {
+                String text = span[0].toString();
+                String style = ((Boolean) span[1] ? "B" : "") + ((Boolean) span[2] ? "I" : "");
+                Matcher m = TICK.matcher(text);
+                int last = 0;
+                while (m.find()) {
+                    if (m.start() > last) softBreaks(described, style, text.substring(last, m.start()));
+                    String inner = m.group(1);
+                    softBreaks(described, style + (inner.trim().matches("\\d{1,3}") ? "#" : "`"), inner);
+                    last = m.end();
+                }
+                if (last < text.length()) softBreaks(described, style, text.substring(last));
+            }
+            return described;
+        }
+
+        private static void append(List<Object[]> out, StringBuilder text, boolean bold, boolean italic) {
+            if (text.length() == 0) return;
+            Object[] last = out.isEmpty() ? null : out.get(out.size() - 1);
+            if (last != null && (Boolean) last[1] == bold && (Boolean) last[2] == italic) {
+                ((StringBuilder) last[0]).append(text);
+            } else {
+                out.add(new Object[]{new StringBuilder(text), bold, italic});
+            }
+            text.setLength(0);
+        }
+
+        private static void softBreaks(List<String> out, String style, String content) {
+            String[] parts = content.split("\\{soft_break\\}", -1);
+            for (int i = 0; i < parts.length; i++) {
+                out.add(style + "[" + parts[i] + "]" + (i < parts.length - 1 ? "/" : ""));
+            }
+        }
+
+        // JsonToHtmlScript.applyInlineMarkers
+        static String markers(String text) {
+            List<String> lines = text.lines().collect(Collectors.toList());
+            List<String> result = new ArrayList<>();
+            for (int i = 0; i < lines.size(); i++) {
+                String current = lines.get(i);
+                String trimmed = current.trim();
+                if (trimmed.endsWith("*") && count(trimmed) == 1 && i > 0) {
+                    String prevTrimmed = lines.get(i - 1).trim();
+                    if (prevTrimmed.startsWith("*") && count(prevTrimmed) == 1) {
+                        String inner = prevTrimmed.substring(1).trim() + "<br>" + trimmed.substring(0, trimmed.length() - 1).trim();
+                        result.remove(result.size() - 1);
+                        result.add("<em>" + inner + "</em>");
+                        continue;
+                    }
+                }
+                current = BOLD.matcher(current).replaceAll(m -> Matcher.quoteReplacement("<strong>" + m.group(1) + "</strong>"));
+                int stars = count(current);
+                if (trimmed.startsWith("-")) {
+                    String content = ITALIC.matcher(trimmed.substring(1).trim()).replaceAll(m -> Matcher.quoteReplacement("<em>" + m.group(1) + "</em>"));
+                    result.add("<p class=\"bullet\"><span class=\"b-mark\">•</span><span class=\"b-text\">" + content.replace('*', '•') + "</span></p>");
+                } else if (stars > 0 && stars % 2 != 0) {
+                    String content = current.replaceFirst("\\*", "").trim();
+                    StringBuilder sb = new StringBuilder();
+                    boolean inItalics = false;
+                    for (char c : content.toCharArray()) {
+                        if (c == '*') {
+                            sb.append(inItalics ? "</em>" : "<em>");
+                            inItalics = !inItalics;
+                        } else {
+                            sb.append(c);
+                        }
+                    }
+                    if (inItalics) sb.append("</em>");
+                    result.add("<p class=\"bullet\"><span class=\"b-mark\">•</span><span class=\"b-text\">" + sb + "</span></p>");
+                } else {
+                    result.add(ITALIC.matcher(current).replaceAll(m -> Matcher.quoteReplacement("<em>" + m.group(1) + "</em>")).replace('*', '•'));
+                }
+            }
+            return String.join("\n", result);
+        }
+
+        // JsonToHtmlScript.formatTicksPreservingText
+        static String ticks(String text) {
+            Matcher m = TICK.matcher(text);
+            int last = 0;
+            StringBuilder sb = new StringBuilder();
+            while (m.find()) {
+                sb.append(StringEscapeUtils.escapeHtml4(text.substring(last, m.start())));
+                String inner = m.group(1);
+                if (inner.trim().matches("\\d{1,3}")) {
+                    sb.append("<sup>").append(StringEscapeUtils.escapeHtml4(inner)).append("</sup>");
+                } else {
+                    sb.append("<span class=\"tick-strong\">").append(StringEscapeUtils.escapeHtml4(inner)).append("</span>");
+                }
+                last = m.end();
+            }
+            return sb.append(StringEscapeUtils.escapeHtml4(text.substring(last))).toString();
+        }
+
+        // JsonToHtmlScript.unescapeSpecificHtml
+        static String unescape(String html) {
+            if (html.isEmpty()) return "";
+            return html.replaceAll("&lt;h4(.*?)&gt;", "<h4>")
+                    .replaceAll("&lt;/h4&gt;", "</h4>")
+                    .replaceAll("&amp;", "&")
+                    .replaceAll("&lt;em&gt;", "<em>").replaceAll("&lt;/em&gt;", "</em>")
+                    .replaceAll("&lt;strong&gt;", "<strong>").replaceAll("&lt;/strong&gt;", "</strong>")
+                    .replaceAll("&lt;br&gt;", "<br>")
+                    .replaceAll("&lt;(p|span)\\s+(class\\=)&quot;(.*?)&quot;&gt;", "<$1 $2\"$3\">")
+                    .replaceAll("&lt;/(p|span)&gt;", "</$1>");
+        }
+
+        private static int count(String s) {
+            int n = 0;
+            for (int i = 0; i < s.length(); i++) {
+                if (s.charAt(i) == '*') n++;
+            }
+            return n;
+        }
+    }
+}
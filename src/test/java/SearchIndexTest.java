@@ -0,0 +1,115 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Saves indexes and opens them again: the prefix-coded, gzip/base64 data file must read back into an index
+ * that saves to the same bytes.
+ */
+class SearchIndexTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void savedIndexReadsBackUnchanged() throws Exception {
+        File a = episode("a.json", "good-shepherd.json");
+        File b = episode("b.json", "markup-edge-cases.json");
+        SearchIndex index = SearchIndex.open(dir.toFile(), null);
+        add(index, a);
+        add(index, b);
+        index.save();
+        byte[] saved = data();
+        assertTrue(Files.isRegularFile(dir.resolve(SearchIndex.PAGE_NAME)));
+
+        SearchIndex reopened = SearchIndex.open(dir.toFile(), failOnWarning());
+        assertTrue(reopened.contains(a));
+        assertTrue(reopened.contains(b));
+        assertEquals(2, reopened.size());
+        reopened.save();
+        assertArrayEquals(saved, data());
+    }
+
+    @Test
+    void readdedEpisodeReplacesItsEntries() throws Exception {
+        File a = episode("a.json", "good-shepherd.json");
+        SearchIndex fresh = SearchIndex.open(dir.toFile(), null);
+        add(fresh, a);
+        fresh.save();
+        byte[] once = data();
+
+        // Reopened and the same episode rendered again, as in watch mode or an incremental run
+        SearchIndex reopened = SearchIndex.open(dir.toFile(), failOnWarning());
+        add(reopened, a);
+        assertEquals(1, reopened.size());
+        reopened.save();
+        assertArrayEquals(once, data());
+    }
+
+    @Test
+    void deletedSourcesAreDropped() throws Exception {
+        File a = episode("a.json", "good-shepherd.json");
+        File b = episode("b.json", "markup-edge-cases.json");
+        SearchIndex index = SearchIndex.open(dir.toFile(), null);
+        add(index, a);
+        add(index, b);
+        index.save();
+
+        Files.delete(b.toPath());
+        SearchIndex reopened = SearchIndex.open(dir.toFile(), failOnWarning());
+        assertEquals(1, reopened.size());
+        reopened.save();
+        SearchIndex again = SearchIndex.open(dir.toFile(), failOnWarning());
+        assertTrue(again.contains(a));
+        assertFalse(again.contains(b));
+    }
+
+    @Test
+    void unreadableIndexStartsOver() throws Exception {
+        Files.write(dir.resolve(SearchIndex.DATA_NAME), "window.W121_SEARCH_INDEX = \"bm90IGd6aXA=\";\n".getBytes(StandardCharsets.US_ASCII));
+        List<String> warnings = new ArrayList<>();
+        SearchIndex index = SearchIndex.open(dir.toFile(), warnings::add);
+        assertEquals(1, warnings.size());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void termsMatchTheSearchPage() {
+        assertEquals(List.of("john", "3:16", "creme", "brulee", "2024"), SearchIndex.tokenize("John 3:16 — Crème brûlée, 2024!"));
+    }
+
+    private File episode(String name, String fixture) throws Exception {
+        return Files.copy(resource("episodes/" + fixture), dir.resolve(name)).toFile();
+    }
+
+    private void add(SearchIndex index, File source) throws Exception {
+        index.add(source, EpisodeReader.read(source, false), new File(source.getPath().replace(".json", ".html")));
+    }
+
+    private byte[] data() throws Exception {
+        return Files.readAllBytes(dir.resolve(SearchIndex.DATA_NAME));
+    }
+
+    private static Consumer<String> failOnWarning() {
+        return warning -> {
+            throw new AssertionError(warning);
+        };
+    }
+
+    private static Path resource(String name) throws URISyntaxException {
+        return Path.of(SearchIndexTest.class.getResource("/" + name).toURI());
+    }
+}
@@ -0,0 +1,64 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StringsRepositoryTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void duplicateKeysKeepTheLastValue() throws Exception {
+        Path file = write("strings.json", "{\"title\": \"first\", \"nested\": {\"a\": 1, \"a\": 2}, \"title\": \"second\"}");
+        Map<String, Object> raw = new StringsRepository(() -> null).load(file.toString()).raw;
+        assertEquals("second", raw.get("title"));
+        assertEquals(Map.of("a", 2), raw.get("nested"));
+        assertEquals(List.of("title", "nested"), List.copyOf(raw.keySet()));
+    }
+
+    @Test
+    void numbersAreTypedLikeJsonSlurper() throws Exception {
+        Map<String, Object> map = StringsRepository.parseJson("{\"i\": 12, \"l\": 12345678901, \"d\": 1.5, \"e\": 2e3, \"list\": [1, true, null, \"x\"]}");
+        assertEquals(Integer.valueOf(12), map.get("i"));
+        assertEquals(Long.valueOf(12345678901L), map.get("l"));
+        assertEquals(new BigDecimal("1.5"), map.get("d"));
+        assertEquals(new BigDecimal("2e3"), map.get("e"));
+        assertEquals(Arrays.asList(1, true, null, "x"), map.get("list"));
+    }
+
+    @Test
+    void cacheFolderIsOnlyLookedUpForTxtFiles() throws Exception {
+        AtomicInteger lookups = new AtomicInteger();
+        Path cache = Files.createDirectory(dir.resolve("cache"));
+        StringsRepository repository = new StringsRepository(() -> {
+            lookups.incrementAndGet();
+            return cache;
+        });
+        repository.load(write("strings.json", "{\"title\": \"x\"}").toString());
+        assertEquals(0, lookups.get());
+
+        Path txt = write("strings.txt", "Key: \"title\", Value: \"From txt\";\nKey: \"title\", Value: \"Last\";\n");
+        assertEquals("Last", repository.load(txt.toString()).raw.get("title"));
+        repository.invalidate(txt.toString());
+        assertEquals("Last", repository.load(txt.toString()).raw.get("title"));
+        assertEquals(1, lookups.get());
+        try (Stream<Path> files = Files.list(cache)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    private Path write(String name, String content) throws Exception {
+        return Files.write(dir.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
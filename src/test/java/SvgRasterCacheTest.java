@@ -0,0 +1,103 @@
+import org.apache.batik.transcoder.TranscoderInput;
+import org.apache.batik.transcoder.TranscoderOutput;
+import org.apache.batik.transcoder.image.PNGTranscoder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SvgRasterCacheTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void missThenMemoryHitThenDiskHit() throws Exception {
+        Path svg = fixture("artwork.svg");
+        Path cacheDir = Files.createDirectory(dir.resolve("cache"));
+        String url = svg.toUri().toString();
+
+        SvgRasterCache cache = new SvgRasterCache(8, cacheDir);
+        SvgRasterCache.Raster first = cache.rasterize(url, 0);
+        assertCounts(cache, 0, 0, 1);
+        SvgRasterCache.Raster second = cache.rasterize(url, 0);
+        assertSame(first, second);
+        assertCounts(cache, 1, 0, 1);
+
+        SvgRasterCache fresh = new SvgRasterCache(8, cacheDir);
+        SvgRasterCache.Raster fromDisk = fresh.rasterize(url, 0);
+        assertCounts(fresh, 0, 1, 0);
+        assertArrayEquals(first.png, fromDisk.png);
+        assertEquals(first.width, fromDisk.width);
+        assertEquals(first.height, fromDisk.height);
+    }
+
+    @Test
+    void dimensionsMatchBatik() throws Exception {
+        Path svg = fixture("artwork.svg");
+        SvgRasterCache cache = new SvgRasterCache(8, null);
+        for (int width : new int[]{0, 300}) {
+            SvgRasterCache.Raster raster = cache.rasterize(svg.toUri().toString(), width);
+            BufferedImage expected = ImageIO.read(new ByteArrayInputStream(batik(Files.readAllBytes(svg), width)));
+            assertEquals(expected.getWidth(), raster.width);
+            assertEquals(expected.getHeight(), raster.height);
+            BufferedImage actual = ImageIO.read(new ByteArrayInputStream(raster.png));
+            assertEquals(expected.getWidth(), actual.getWidth());
+            assertEquals(expected.getHeight(), actual.getHeight());
+        }
+    }
+
+    @Test
+    void changedFileIsReadAgain() throws Exception {
+        Path svg = fixture("artwork.svg");
+        String url = svg.toUri().toString();
+        SvgRasterCache cache = new SvgRasterCache(8, null);
+        FileTime saved = Files.getLastModifiedTime(svg);
+        SvgRasterCache.Raster before = cache.rasterize(url, 0);
+
+        // Same mtime: the remembered key is used and the file is not read
+        Files.copy(resource("artwork-square.svg"), svg, StandardCopyOption.REPLACE_EXISTING);
+        Files.setLastModifiedTime(svg, saved);
+        assertSame(before, cache.rasterize(url, 0));
+        assertCounts(cache, 1, 0, 1);
+
+        Files.setLastModifiedTime(svg, FileTime.fromMillis(saved.toMillis() + 2000));
+        SvgRasterCache.Raster after = cache.rasterize(url, 0);
+        assertCounts(cache, 1, 0, 2);
+        assertEquals(50, after.width);
+        assertEquals(50, after.height);
+    }
+
+    private Path fixture(String name) throws Exception {
+        return Files.copy(resource(name), dir.resolve(name));
+    }
+
+    private static Path resource(String name) throws Exception {
+        return Path.of(SvgRasterCacheTest.class.getResource("/svg/" + name).toURI());
+    }
+
+    private static byte[] batik(byte[] svg, int width) throws Exception {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        PNGTranscoder transcoder = new PNGTranscoder();
+        if (width > 0) transcoder.addTranscodingHint(PNGTranscoder.KEY_WIDTH, (float) width);
+        transcoder.transcode(new TranscoderInput(new ByteArrayInputStream(svg)), new TranscoderOutput(png));
+        return png.toByteArray();
+    }
+
+    private static void assertCounts(SvgRasterCache cache, long memoryHits, long diskHits, long misses) {
+        assertEquals(memoryHits, cache.getMemoryHits(), "memory hits");
+        assertEquals(diskHits, cache.getDiskHits(), "disk hits");
+        assertEquals(misses, cache.getMisses(), "misses");
+    }
+}